@@ -0,0 +1,141 @@
+package iuh.fit.se.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * So sánh kết quả JMH vừa chạy ({@code -rf json}) với baseline lưu trong repo
+ * ({@code src/jmh/baseline/jmh-baseline.json}), in bảng chênh lệch và trả exit code 1 nếu có hồi quy:
+ * điểm xấu đi quá {@code tolerance} (và quá tổng sai số của hai lần đo), hoặc
+ * {@code gc.alloc.rate.norm} (byte/op, khi chạy kèm {@code -prof gc}) tăng quá {@code tolerance}.
+ *
+ * <pre>mvn -Pbenchmark test-compile exec:exec@jmh-compare [-Djmh.tolerance=0.10] [-Djmh.require-baseline=true]</pre>
+ *
+ * Tham số: {@code <result.json> <baseline.json> [tolerance] [requireBaseline]}.
+ * Thiếu baseline: mặc định chỉ in hướng dẫn ghi baseline; khi {@code requireBaseline=true} thì exit 3 -
+ * bật cờ này trong CI sau khi đã commit baseline đo trên runner, để bước so sánh không "xanh" mà không so gì.
+ */
+public final class BaselineCheck {
+
+    private static final String ALLOC = "·gc.alloc.rate.norm";
+
+    private BaselineCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCheck <result.json> <baseline.json> [tolerance]");
+            System.exit(2);
+        }
+        File result = new File(args[0]);
+        File baseline = new File(args[1]);
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.10;
+        boolean requireBaseline = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+        if (!result.isFile()) {
+            System.err.println("No JMH result at " + result + " - run the benchmark profile first");
+            System.exit(2);
+        }
+        if (!baseline.isFile()) {
+            if (requireBaseline) {
+                System.err.println("No baseline at " + baseline + " - commit one before enforcing the regression check:");
+                System.err.println("  cp " + result + " " + baseline);
+                System.exit(3);
+            }
+            System.out.println("No baseline at " + baseline + " - nothing to compare. To record one:");
+            System.out.println("  cp " + result + " " + baseline);
+            return;
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> current = index(mapper.readTree(result));
+        Map<String, JsonNode> base = index(mapper.readTree(baseline));
+
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s %9s%n", "benchmark", "baseline", "current", "score", "alloc");
+        for (var e : current.entrySet()) {
+            JsonNode now = e.getValue();
+            JsonNode before = base.get(e.getKey());
+            if (before == null) {
+                System.out.printf("%-90s %14s %14.3f %9s %9s%n", e.getKey(), "(new)", score(now), "", "");
+                continue;
+            }
+
+            double delta = relativeChange(now, before);
+            double error = finite(now.path("primaryMetric").path("scoreError").asDouble())
+                    + finite(before.path("primaryMetric").path("scoreError").asDouble());
+            boolean slower = delta > tolerance && Math.abs(score(now) - score(before)) > error;
+
+            Double allocDelta = allocChange(now, before);
+            boolean moreAlloc = allocDelta != null && allocDelta > tolerance;
+
+            String flag = slower || moreAlloc ? "  <- REGRESSION" : "";
+            if (!flag.isEmpty()) regressions++;
+            System.out.printf("%-90s %14.3f %14.3f %+8.1f%% %9s%s%n", e.getKey(), score(before), score(now),
+                    delta * 100, allocDelta == null ? "" : String.format("%+.1f%%", allocDelta * 100), flag);
+        }
+        for (String missing : base.keySet()) {
+            if (!current.containsKey(missing)) {
+                System.out.printf("%-90s %14.3f %14s%n", missing, score(base.get(missing)), "(not run)");
+            }
+        }
+
+        if (regressions > 0) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%%n", regressions, tolerance * 100);
+            System.exit(1);
+        }
+        System.out.println("No regressions beyond " + Math.round(tolerance * 100) + "%");
+    }
+
+    /** Khoá = tên benchmark + tham số (sắp xếp) để so đúng từng biến thể @Param. */
+    private static Map<String, JsonNode> index(JsonNode results) {
+        Map<String, JsonNode> byKey = new LinkedHashMap<>();
+        for (JsonNode r : results) {
+            StringBuilder key = new StringBuilder(shortName(r.path("benchmark").asText()));
+            Map<String, String> params = new TreeMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = r.path("params").fields(); it.hasNext(); ) {
+                var p = it.next();
+                params.put(p.getKey(), p.getValue().asText());
+            }
+            if (!params.isEmpty()) key.append(' ').append(params);
+            byKey.put(key.toString(), r);
+        }
+        return byKey;
+    }
+
+    private static String shortName(String benchmark) {
+        return benchmark.startsWith("iuh.fit.se.benchmark.")
+                ? benchmark.substring("iuh.fit.se.benchmark.".length())
+                : benchmark;
+    }
+
+    private static double score(JsonNode r) {
+        return r.path("primaryMetric").path("score").asDouble();
+    }
+
+    /** Dương = xấu đi (thời gian tăng, hoặc throughput giảm). */
+    private static double relativeChange(JsonNode now, JsonNode before) {
+        double b = score(before);
+        if (b == 0) return 0;
+        double change = (score(now) - b) / b;
+        return "thrpt".equals(now.path("mode").asText()) ? -change : change;
+    }
+
+    private static Double allocChange(JsonNode now, JsonNode before) {
+        JsonNode a = now.path("secondaryMetrics").path(ALLOC).path("score");
+        JsonNode b = before.path("secondaryMetrics").path(ALLOC).path("score");
+        if (a.isMissingNode() || b.isMissingNode() || b.asDouble() <= 0) return null;
+        return (a.asDouble() - b.asDouble()) / b.asDouble();
+    }
+
+    private static double finite(double v) {
+        return Double.isFinite(v) ? v : 0;
+    }
+}
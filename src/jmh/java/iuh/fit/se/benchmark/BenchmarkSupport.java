@@ -0,0 +1,20 @@
+package iuh.fit.se.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Tiện ích chung cho các benchmark. */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Code được đo có log INFO mỗi lần gọi (emoji log); chạy ngoài Spring thì logback mặc định in ra console
+     * và sẽ lấn át số liệu → chỉ giữ WARN.
+     */
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+}
@@ -0,0 +1,78 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.service.intent.ChatIntentDetector;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh vòng lặp {@code toLowerCase + contains} cũ của ChatService.isProductSearchIntent
+ * với automaton của {@link ChatIntentDetector}. Nên chạy kèm {@code -prof gc} để thấy alloc/op.
+ * Tin nhắn gồm câu tìm sản phẩm, hỏi chính sách, small talk và một câu dài có dấu.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IntentMatcherBenchmark {
+
+    /** Danh sách từ khoá của phiên bản cũ (giữ nguyên để so sánh). */
+    private static final String[] LEGACY_KEYWORDS = {
+            "tìm", "search", "có", "show", "giới thiệu", "gợi ý",
+            "hiển thị", "xem", "cho tôi", "muốn mua", "mua ở đâu",
+            "áo", "quần", "giày", "váy", "đồ", "sản phẩm", "phụ kiện",
+            "giá", "bao nhiêu", "giá bao nhiêu", "bán", "mua", "đặt hàng",
+            "hoodie", "sneaker", "jacket", "shirt", "dress", "túi xách",
+            "đồng hồ", "kính", "mũ", "nón", "giày thể thao", "giày cao gót",
+            "quần jean", "áo thun", "áo sơ mi", "áo khoác", "váy cưới",
+            "váy dạ hội", "đồ ngủ", "đồ bơi", "đồ tập gym", "đồ thể thao",
+            "điện thoại", "laptop", "máy tính bảng", "tai nghe", "loa",
+            "tivi", "máy ảnh", "máy quay", "đồ gia dụng", "tủ lạnh",
+            "máy giặt", "bếp", "nồi cơm", "quạt", "đèn", "đồ chơi",
+            "sách", "văn phòng phẩm", "mỹ phẩm", "nước hoa", "chăm sóc da",
+            "chăm sóc tóc", "thực phẩm", "đồ uống", "đồ ăn vặt", "thời trang nam",
+            "thời trang nữ", "thời trang trẻ em", "đồ dùng học tập", "đồ dùng nhà bếp",
+            "balo", "vali", "dụng cụ thể thao", "xe đạp", "xe máy", "phụ tùng",
+            "đồ điện tử", "máy lọc nước", "máy hút bụi", "máy lạnh", "máy sưởi",
+            "đồ nội thất", "ghế", "bàn", "giường", "tủ", "trang trí nhà cửa",
+            "đồ làm vườn", "cây cảnh", "hạt giống", "phân bón", "dụng cụ làm bếp",
+            "nồi chiên không dầu", "máy xay sinh tố", "máy ép trái cây", "bình giữ nhiệt",
+            "bình nước", "bình sữa", "đồ dùng trẻ em", "xe đẩy", "ghế ăn", "đồ chơi giáo dục"
+    };
+
+    @Param({
+            "Tìm giúp mình áo hoodie màu đen size L dưới 500k",
+            "Chính sách hoàn tiền khi hàng bị lỗi như thế nào vậy shop?",
+            "Xin chào, hôm nay bạn khỏe không? Mình chỉ muốn hỏi thăm thôi",
+            "Cho mình hỏi là nếu đơn hàng giao trễ hơn 7 ngày thì mình có được bồi thường hay khiếu nại ở đâu không ạ, vì mình đã chờ rất lâu rồi"
+    })
+    public String message;
+
+    private final ChatIntentDetector detector = new ChatIntentDetector();
+
+    @Benchmark
+    public boolean legacyLoop() {
+        String lower = message.toLowerCase().trim();
+        for (String keyword : LEGACY_KEYWORDS) {
+            if (lower.contains(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public void automaton(Blackhole bh) {
+        bh.consume(detector.detect(message));
+    }
+
+    /** Toàn bộ bước phân loại route của ChatService (detectRoute): một lượt quét + kiểm tra bitmask. */
+    @Benchmark
+    public int route() {
+        int mask = detector.detect(message);
+        return detector.isProductSearch(mask) ? 0 : detector.isPolicy(mask) ? 1 : 2;
+    }
+}
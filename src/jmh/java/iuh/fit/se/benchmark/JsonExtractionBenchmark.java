@@ -0,0 +1,92 @@
+package iuh.fit.se.benchmark;
+
+import iuh.fit.se.util.StreamingJsonExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cắt khối product_list ra khỏi câu trả lời của LLM ({@link StreamingJsonExtractor}):
+ * <ul>
+ *   <li>{@code firstObject}: đường call() - cả câu trả lời đã có sẵn.</li>
+ *   <li>{@code streamedChunks}: đường stream - text tới theo từng chunk nhỏ như token của Gemini.</li>
+ * </ul>
+ * Câu trả lời có lời dẫn tiếng Việt, JSON {@code items} sản phẩm (tên/URL có ngoặc, dấu nháy escape) và nhận xét phía sau.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonExtractionBenchmark {
+
+    /** Số sản phẩm trong product_list (mặc định của tool là 4). */
+    @Param({"4", "20"})
+    public int items;
+
+    /** Độ dài trung bình một chunk stream (ký tự). */
+    @Param({"16"})
+    public int chunkSize;
+
+    private String response;
+    private List<String> chunks;
+
+    @Setup
+    public void setup() {
+        response = llmResponse(items);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < response.length(); i += chunkSize) {
+            chunks.add(response.substring(i, Math.min(response.length(), i + chunkSize)));
+        }
+    }
+
+    @Benchmark
+    public String firstObject() {
+        return StreamingJsonExtractor.firstObject(response);
+    }
+
+    @Benchmark
+    public void streamedChunks(Blackhole bh) {
+        StreamingJsonExtractor extractor = new StreamingJsonExtractor(new StreamingJsonExtractor.Listener() {
+            @Override
+            public void onText(String text) {
+                bh.consume(text);
+            }
+
+            @Override
+            public boolean onObject(String json) {
+                bh.consume(json);
+                return true;
+            }
+        });
+        for (String chunk : chunks) {
+            extractor.feed(chunk);
+        }
+        extractor.finish();
+    }
+
+    static String llmResponse(int count) {
+        StringBuilder sb = new StringBuilder(512 + count * 320);
+        sb.append("Mình tìm thấy sản phẩm phù hợp với bạn rồi đây:\n\n```json\n{\n")
+                .append("  \"type\": \"product_list\",\n")
+                .append("  \"message\": \"Tìm thấy ").append(count).append(" sản phẩm cho: \\\"áo hoodie đen {form rộng}\\\"\",\n")
+                .append("  \"items\": [\n");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(",\n");
+            sb.append("    {\n")
+                    .append("      \"id\": \"65f0c0ffee").append(String.format("%014d", i)).append("\",\n")
+                    .append("      \"name\": \"Áo hoodie nỉ bông {unisex} \\\"Basic\\\" mẫu ").append(i).append("\",\n")
+                    .append("      \"price\": ").append(199000 + i * 10000).append(".0,\n")
+                    .append("      \"discount\": ").append(i % 30).append(".0,\n")
+                    .append("      \"url\": \"/products/65f0c0ffee").append(String.format("%014d", i)).append("\",\n")
+                    .append("      \"imageUrl\": \"https://cdn.example.com/p/").append(i).append("/1.jpg?size=[480x480]\"\n")
+                    .append("    }");
+        }
+        sb.append("\n  ]\n}\n```\n\nNếu bạn cần thêm màu khác hoặc size lớn hơn thì cứ nói mình nhé! 😊");
+        return sb.toString();
+    }
+}
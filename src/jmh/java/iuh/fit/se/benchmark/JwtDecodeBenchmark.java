@@ -0,0 +1,59 @@
+package iuh.fit.se.benchmark;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import iuh.fit.se.config.CustomJwtDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CustomJwtDecoder#decode(String)} chạy trên mọi request có header Authorization
+ * (parse header + claims của token HS512 do user-service cấp).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtDecodeBenchmark {
+
+    private final CustomJwtDecoder decoder = new CustomJwtDecoder();
+    private String token;
+
+    @Setup
+    public void setup() throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("nguyenvanan@gmail.com")
+                .issuer("iuh.fit.se")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(1, ChronoUnit.HOURS)))
+                .jwtID(UUID.randomUUID().toString())
+                .claim("userId", UUID.randomUUID().toString())
+                .claim("fullName", "Nguyễn Văn An")
+                .claim("roles", List.of("ROLE_USER", "ROLE_SELLER"))
+                .claim("scopes", List.of("CREATE_ORDER", "VIEW_ORDER", "CHAT_AI", "UPDATE_PROFILE"))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), claims);
+        jwt.sign(new MACSigner("benchmark-secret-".repeat(4).getBytes(StandardCharsets.UTF_8)));
+        token = jwt.serialize();
+    }
+
+    @Benchmark
+    public Jwt decode() {
+        return decoder.decode(token);
+    }
+}
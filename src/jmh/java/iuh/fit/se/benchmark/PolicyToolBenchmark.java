@@ -0,0 +1,84 @@
+package iuh.fit.se.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iuh.fit.se.dto.PolicyPassage;
+import iuh.fit.se.entity.Policy;
+import iuh.fit.se.service.PolicySimpleService;
+import iuh.fit.se.service.PolicySimpleTool;
+import iuh.fit.se.service.tool.ToolResultEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dựng kết quả tool chính sách (oneAsMap / passageAsMap + encode) với service giả trả dữ liệu có sẵn,
+ * để chỉ đo phần serialize mà mỗi lượt gọi tool phải trả:
+ * {@code policy_listNewest} (danh sách policy) và {@code policy_search} (đoạn trích tiếng Việt).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PolicyToolBenchmark {
+
+    @Param({"5", "20"})
+    public int policies;
+
+    @Param({"compact", "table"})
+    public String encoding;
+
+    private PolicySimpleTool tool;
+
+    @Setup
+    public void setup() {
+        BenchmarkSupport.quietLogging();
+        List<Policy> newest = new ArrayList<>(policies);
+        List<PolicyPassage> passages = new ArrayList<>(policies);
+        LocalDateTime effective = LocalDateTime.of(2024, 6, 1, 0, 0);
+        for (int i = 0; i < policies; i++) {
+            String code = "BUYER_REFUND_" + i;
+            String title = "Chính sách hoàn tiền và trả hàng cho người mua (phần " + i + ")";
+            newest.add(Policy.builder()
+                    .id("pol-" + i)
+                    .code(code)
+                    .title(title)
+                    .version("v" + (i % 3 + 1) + ".0")
+                    .contentMarkdown("")
+                    .effectiveDate(effective.minusDays(i))
+                    .build());
+            passages.add(new PolicyPassage(code, title, "v1.0", "Điều " + (i + 1) + ". Thời hạn yêu cầu hoàn tiền",
+                    ("Người mua có thể gửi yêu cầu trả hàng/hoàn tiền trong vòng 7 ngày kể từ khi nhận hàng "
+                            + "nếu sản phẩm bị lỗi, giao sai mẫu mã, kích cỡ hoặc không đúng mô tả. ").repeat(3)));
+        }
+
+        // Không chạm repository / index: chỉ trả dữ liệu dựng sẵn
+        PolicySimpleService service = new PolicySimpleService(null, null, null) {
+            @Override
+            public List<Policy> listAllNewestFirst(int limit) {
+                return newest.subList(0, Math.min(limit, newest.size()));
+            }
+
+            @Override
+            public List<PolicyPassage> searchPassages(String q, int maxPassages, int tokenBudget) {
+                return passages.subList(0, Math.min(maxPassages, passages.size()));
+            }
+        };
+        tool = new PolicySimpleTool(service, new ToolResultEncoder(encoding, new SimpleMeterRegistry()),
+                policies, 4000);
+    }
+
+    @Benchmark
+    public String listNewest() {
+        return tool.listNewest(policies);
+    }
+
+    @Benchmark
+    public String searchPassages() {
+        return tool.search("hoàn tiền khi hàng bị lỗi", policies);
+    }
+}
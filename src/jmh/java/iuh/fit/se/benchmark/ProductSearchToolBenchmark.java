@@ -0,0 +1,104 @@
+package iuh.fit.se.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iuh.fit.se.dto.response.SearchResponse;
+import iuh.fit.se.service.ChatService;
+import iuh.fit.se.service.ProductSearchIndex;
+import iuh.fit.se.service.tool.ToolResultEncoder;
+import iuh.fit.se.util.SingleFlightCache;
+import iuh.fit.se.util.TextNormalizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chi phí phía chat-service của tool {@code searchProducts} khi semantic search đã có trong cache
+ * (chuẩn hoá query, lọc theo {@code normalizeSimilarity}, tìm từ khoá + gộp RRF, dựng payload, encode JSON) - tức phần
+ * không phụ thuộc mạng mà mọi request tìm sản phẩm đều trả.
+ * Dữ liệu là document sản phẩm lớn của {@link SearchResponseDeserializationBenchmark#syntheticResponse(int)}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSearchToolBenchmark {
+
+    private static final String QUERY = "Tìm giúp mình áo hoodie nỉ màu đen size L";
+
+    /** Số kết quả Flask trả về (topK của semantic search là 10). */
+    @Param({"10", "50"})
+    public int results;
+
+    private ChatService.SearchProductsTool tool;
+    private ProductSearchIndex productIndex;
+    private Double[] scores;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkSupport.quietLogging();
+        ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        SearchResponse response = mapper.readValue(
+                SearchResponseDeserializationBenchmark.syntheticResponse(results), SearchResponse.class);
+
+        SingleFlightCache<String, SearchResponse> cache =
+                SingleFlightCache.bySize("benchmark", 16, Duration.ofHours(1));
+        cache.get(TextNormalizer.normalizeQuery(QUERY), () -> response);
+
+        // Index từ khoá chứa chính các sản phẩm đó → đo cả nhánh hybrid (RRF) như khi catalog đã được nạp
+        productIndex = new ProductSearchIndex(mapper, new SimpleMeterRegistry(), true, "", "", false, 20, 60, 0.5);
+        Path catalog = Files.createTempFile("catalog-", ".json");
+        try {
+            List<JsonNode> products = new ArrayList<>();
+            mapper.readTree(SearchResponseDeserializationBenchmark.syntheticResponse(results))
+                    .path("results").forEach(r -> products.add(r.path("product")));
+            mapper.writeValue(catalog.toFile(), products);
+            productIndex.importCatalog(catalog);
+        } finally {
+            Files.deleteIfExists(catalog);
+        }
+
+        // Cache luôn hit → gateway / image cache không được dùng
+        tool = new ChatService.SearchProductsTool(null, cache, null,
+                new ToolResultEncoder("compact", new SimpleMeterRegistry()), productIndex);
+
+        // Flask trả cả cosine (0..1) lẫn khoảng cách L2 (> 1), đôi khi thiếu điểm
+        scores = new Double[results];
+        for (int i = 0; i < results; i++) {
+            scores[i] = switch (i % 4) {
+                case 0 -> 0.93 - i * 0.001;
+                case 1 -> 1.4 + i * 0.01;
+                case 2 -> null;
+                default -> -0.02;
+            };
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        productIndex.close();
+    }
+
+    @Benchmark
+    public String searchProductsCached() {
+        return tool.searchProducts(QUERY, 4);
+    }
+
+    @Benchmark
+    public void normalizeSimilarity(Blackhole bh) {
+        for (Double score : scores) {
+            bh.consume(ChatService.SearchProductsTool.normalizeSimilarity(score));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package iuh.fit.se.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import iuh.fit.se.dto.ProductSearchPayload;
+import iuh.fit.se.dto.response.SearchByImageResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh cách đọc phản hồi tìm kiếm bằng ảnh của Flask:
+ * DTO cũ ({@code Map<String, Object> product} rồi chuyển sang Item) với
+ * {@link iuh.fit.se.dto.response.ProductItemDeserializer} (streaming, bỏ qua subtree không dùng).
+ * {@code results} tương ứng số kết quả Flask trả về ({@code candidate_k=300} khi tìm bằng ảnh).
+ * Profile benchmark chạy kèm {@code -prof gc} để xem gc.alloc.rate.norm (byte/request):
+ * <pre>mvn -Pbenchmark test-compile exec:exec -Djmh.include=SearchResponseDeserializationBenchmark</pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchResponseDeserializationBenchmark {
+
+    @Param({"5", "50", "300"})
+    public int results;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private ObjectReader legacyReader;
+    private ObjectReader typedReader;
+    private byte[] body;
+
+    @Setup
+    public void setup() {
+        legacyReader = mapper.readerFor(LegacyResponse.class);
+        typedReader = mapper.readerFor(SearchByImageResponse.class);
+        body = syntheticResponse(results).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void legacyMap(Blackhole bh) throws IOException {
+        LegacyResponse resp = legacyReader.readValue(new ByteArrayInputStream(body));
+        List<ProductSearchPayload.Item> items = new ArrayList<>(resp.results.size());
+        for (LegacyResultItem r : resp.results) {
+            items.add(LegacyConverter.toItem(r.product));
+        }
+        bh.consume(items);
+    }
+
+    @Benchmark
+    public void typedStreaming(Blackhole bh) throws IOException {
+        SearchByImageResponse resp = typedReader.readValue(new ByteArrayInputStream(body));
+        List<ProductSearchPayload.Item> items = new ArrayList<>(resp.getResults().size());
+        for (SearchByImageResponse.ResultItem r : resp.getResults()) {
+            items.add(r.getProduct());
+        }
+        bh.consume(items);
+    }
+
+    /* ------------ Dữ liệu giả lập ------------ */
+
+    /** Document giống Mongo: nhiều variant/ảnh, mô tả dài, các field phụ mà chat không dùng. */
+    static String syntheticResponse(int count) {
+        String description = "Chất liệu cotton 100%, form rộng, phù hợp đi học và đi chơi. ".repeat(12);
+        StringBuilder sb = new StringBuilder(count * 4096);
+        sb.append("{\"success\":true,\"search_type\":\"image\",\"total_results\":").append(count).append(",\"results\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"product\":{")
+                    .append("\"_id\":{\"$oid\":\"65f0c0ffee").append(String.format("%014d", i)).append("\"},")
+                    .append("\"name\":\"Áo hoodie nỉ bông mẫu ").append(i).append("\",")
+                    .append("\"description\":\"").append(description).append("\",")
+                    .append("\"percentDiscount\":{\"$numberLong\":\"").append(i % 30).append("\"},")
+                    .append("\"status\":\"AVAILABLE\",\"sellerId\":\"seller-").append(i % 17).append("\",")
+                    .append("\"categories\":[\"ao\",\"hoodie\",\"unisex\"],");
+            sb.append("\"variants\":[");
+            for (int v = 0; v < 12; v++) {
+                if (v > 0) sb.append(',');
+                sb.append("{\"size\":\"").append("SMLX".charAt(v % 4)).append("\",\"color\":\"màu ").append(v)
+                        .append("\",\"price\":").append(199000 + v * 10000)
+                        .append(",\"stock\":").append(v * 3)
+                        .append(",\"sku\":\"SKU-").append(i).append('-').append(v).append("\"}");
+            }
+            sb.append("],\"images\":[");
+            sb.append("{\"url\":\"https://cdn.example.com/p/").append(i).append("/intro.mp4\",\"position\":0}");
+            for (int m = 1; m <= 8; m++) {
+                sb.append(",{\"url\":\"https://cdn.example.com/p/").append(i).append('/').append(m)
+                        .append(".jpg\",\"position\":").append(m).append('}');
+            }
+            sb.append("],\"createdTime\":\"2024-03-12T10:15:30\",\"modifiedTime\":\"2024-05-01T08:00:00\"},")
+                    .append("\"similarity_score\":").append(0.95 - i * 0.001)
+                    .append(",\"distance\":").append(0.05 + i * 0.001)
+                    .append(",\"matched_image\":{\"url\":\"https://cdn.example.com/p/").append(i)
+                    .append("/1.jpg\",\"position\":1}}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    /* ------------ DTO và chuyển đổi của phiên bản cũ (giữ nguyên để so sánh) ------------ */
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class LegacyResponse {
+        public Boolean success;
+        @JsonProperty("search_type")
+        public String searchType;
+        @JsonProperty("total_results")
+        public Integer totalResults;
+        public List<LegacyResultItem> results;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class LegacyResultItem {
+        public Map<String, Object> product;
+        @JsonProperty("similarity_score")
+        public Double similarityScore;
+        public Double distance;
+        @JsonProperty("matched_image")
+        public Map<String, Object> matchedImage;
+    }
+
+    static final class LegacyConverter {
+
+        static ProductSearchPayload.Item toItem(Map<String, Object> p) {
+            ProductSearchPayload.Item it = new ProductSearchPayload.Item();
+            it.id = extractId(p);
+            Object name = p.get("name");
+            it.name = name == null || String.valueOf(name).isEmpty() ? "(Chưa có tên)" : String.valueOf(name);
+            it.price = firstPrice(p.get("variants"));
+            it.discount = toDouble(p.get("percentDiscount"), 0.0);
+            it.url = "/products/" + it.id;
+            it.imageUrl = firstImage(p);
+            return it;
+        }
+
+        private static String extractId(Map<String, Object> p) {
+            Object id = p.get("_id");
+            if (id instanceof Map<?, ?> m && m.get("$oid") != null) return String.valueOf(m.get("$oid"));
+            return id == null ? "" : String.valueOf(id);
+        }
+
+        private static double firstPrice(Object variants) {
+            if (variants instanceof List<?> list && !list.isEmpty() && list.get(0) instanceof Map<?, ?> v) {
+                return toDouble(v.get("price"), 0.0);
+            }
+            return 0.0;
+        }
+
+        private static double toDouble(Object o, double def) {
+            if (o instanceof Number n) return n.doubleValue();
+            if (o instanceof Map<?, ?> m && m.get("$numberLong") != null) return toDouble(m.get("$numberLong"), def);
+            if (o instanceof String s) {
+                try {
+                    return Double.parseDouble(s.trim());
+                } catch (NumberFormatException e) {
+                    return def;
+                }
+            }
+            return def;
+        }
+
+        private static String firstImage(Map<String, Object> p) {
+            if (p.get("images") instanceof List<?> images) {
+                for (Object img : images) {
+                    Object url = img instanceof Map<?, ?> m ? m.get("url") : img;
+                    if (url instanceof String s && !s.toLowerCase().endsWith(".mp4")) return s;
+                }
+            }
+            return "/img/default.png";
+        }
+    }
+}
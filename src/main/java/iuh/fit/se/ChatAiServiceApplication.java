@@ -3,8 +3,10 @@ package iuh.fit.se;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 @EnableFeignClients(basePackages = "iuh.fit.se.repository.httpclient")
 public class ChatAiServiceApplication {
 
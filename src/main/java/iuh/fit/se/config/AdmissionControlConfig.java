@@ -0,0 +1,70 @@
+package iuh.fit.se.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.util.AdaptiveConcurrencyLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "chat-ai.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    private static final String PREFIX = "chat-ai.admission.";
+
+    /** Endpoint được kiểm soát: path → (tên cấu hình, giá mặc định). */
+    private static final Map<String, ChatAdmissionFilter.Endpoint> DEFAULT_ENDPOINTS = Map.of(
+            "/chat", new ChatAdmissionFilter.Endpoint("chat", 1),
+            "/chat/stream", new ChatAdmissionFilter.Endpoint("chat-stream", 1),
+            "/chat-with-image", new ChatAdmissionFilter.Endpoint("chat-with-image", 5)
+    );
+
+    /**
+     * Rate limit theo người dùng + giới hạn đồng thời tự điều chỉnh cho các endpoint chat.
+     * Đăng ký sau filter chain của Spring Security (order -100) để đọc được JWT.
+     */
+    @Bean
+    public FilterRegistrationBean<ChatAdmissionFilter> chatAdmissionFilter(Environment env,
+                                                                          MeterRegistry meterRegistry) {
+        Map<String, ChatAdmissionFilter.Endpoint> endpoints = new LinkedHashMap<>();
+        DEFAULT_ENDPOINTS.forEach((path, defaults) -> {
+            String p = PREFIX + "endpoints." + defaults.name() + ".";
+            if (!env.getProperty(p + "enabled", Boolean.class, true)) return;
+            endpoints.put(path, new ChatAdmissionFilter.Endpoint(defaults.name(),
+                    env.getProperty(p + "cost", Double.class, defaults.cost())));
+        });
+
+        var settings = new ChatAdmissionFilter.Settings(
+                env.getProperty(PREFIX + "rate-limit.capacity", Double.class, 20.0),
+                env.getProperty(PREFIX + "rate-limit.refill-per-minute", Double.class, 10.0) / 60.0,
+                env.getProperty(PREFIX + "rate-limit.idle-expiry", Duration.class, Duration.ofMinutes(10)),
+                env.getProperty(PREFIX + "rate-limit.max-clients", Long.class, 100_000L),
+                env.getProperty(PREFIX + "rate-limit.trust-forwarded-for", Boolean.class, false),
+                env.getProperty(PREFIX + "rate-limit.trusted-proxies", Integer.class, 1));
+
+        var limiterSettings = new AdaptiveConcurrencyLimiter.Settings(
+                env.getProperty(PREFIX + "concurrency.initial-limit", Integer.class, 50),
+                env.getProperty(PREFIX + "concurrency.min-limit", Integer.class, 5),
+                env.getProperty(PREFIX + "concurrency.max-limit", Integer.class, 400),
+                env.getProperty(PREFIX + "concurrency.latency-threshold", Duration.class, Duration.ofSeconds(15)),
+                env.getProperty(PREFIX + "concurrency.backoff-ratio", Double.class, 0.9));
+        log.info("🔧 Chat admission: endpoints={}, rateLimit={}, concurrency={}", endpoints.values(), settings, limiterSettings);
+
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("chat", limiterSettings)
+                .bindTo(meterRegistry, "chat.admission.concurrency");
+
+        FilterRegistrationBean<ChatAdmissionFilter> registration = new FilterRegistrationBean<>(
+                new ChatAdmissionFilter(endpoints, settings, limiter, meterRegistry));
+        registration.addUrlPatterns(endpoints.keySet().toArray(String[]::new));
+        registration.setOrder(0);
+        return registration;
+    }
+}
@@ -0,0 +1,29 @@
+package iuh.fit.se.config;
+
+import iuh.fit.se.dto.response.SearchResponse;
+import iuh.fit.se.util.SingleFlightCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Slf4j
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Cache kết quả semantic search theo truy vấn đã chuẩn hoá (chữ thường, bỏ dấu, gộp khoảng trắng).
+     */
+    @Bean
+    public SingleFlightCache<String, SearchResponse> semanticSearchCache(
+            MeterRegistry meterRegistry,
+            @Value("${chat-ai.search-cache.max-size:1000}") long maxSize,
+            @Value("${chat-ai.search-cache.ttl:10m}") Duration ttl) {
+        log.info("🔧 Semantic search cache: maxSize={}, ttl={}", maxSize, ttl);
+        return SingleFlightCache.<String, SearchResponse>bySize("semantic-search", maxSize, ttl)
+                .bindTo(meterRegistry);
+    }
+}
@@ -0,0 +1,217 @@
+package iuh.fit.se.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.dto.ApiResponse;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.util.AdaptiveConcurrencyLimiter;
+import iuh.fit.se.util.TokenBucket;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chốt chặn đầu vào cho các endpoint chat (mỗi request ở đây đều thành một lời gọi Gemini tính phí):
+ * <ol>
+ *   <li>Token bucket theo người dùng: subject của JWT (nếu có), nếu không thì theo IP. Sau gateway tin cậy,
+ *   IP lấy từ X-Forwarded-For theo số proxy tin cậy tính từ PHẢI (phần bên trái do client tự gửi, không tin).
+ *   Mỗi endpoint có "giá" riêng - chat kèm ảnh đắt hơn.</li>
+ *   <li>Giới hạn đồng thời toàn cục tự điều chỉnh ({@link AdaptiveConcurrencyLimiter}, AIMD theo độ trễ):
+ *   vượt giới hạn thì cắt tải ngay thay vì dồn thêm request vào quota LLM.</li>
+ * </ol>
+ * Cả hai trường hợp trả 429 {@link ErrorCode#RATE_LIMIT_EXCEEDED} kèm {@code Retry-After}.
+ * Chạy sau Spring Security nên đã có authentication của request.
+ */
+@Slf4j
+public class ChatAdmissionFilter extends OncePerRequestFilter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** @param cost số token mỗi request của endpoint tiêu tốn */
+    public record Endpoint(String name, double cost) {
+    }
+
+    /**
+     * @param capacity          số token tối đa của một người dùng (cho phép burst)
+     * @param refillPerSecond   tốc độ nạp lại
+     * @param idleExpiry        bucket không dùng quá thời gian này thì bị bỏ (đã đầy lại)
+     * @param maxClients        số bucket tối đa giữ trong bộ nhớ
+     * @param trustForwardedFor lấy IP từ X-Forwarded-For (chỉ bật khi đứng sau gateway tin cậy)
+     * @param trustedProxies    số proxy tin cậy phía trước, mỗi proxy nối một địa chỉ vào cuối header:
+     *                          IP client là phần tử thứ {@code trustedProxies} tính từ phải
+     */
+    public record Settings(double capacity, double refillPerSecond, Duration idleExpiry, long maxClients,
+                           boolean trustForwardedFor, int trustedProxies) {
+    }
+
+    private final Map<String, Endpoint> endpoints;
+    private final Settings settings;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Cache<String, TokenBucket> buckets;
+    private final MeterRegistry meterRegistry;
+
+    public ChatAdmissionFilter(Map<String, Endpoint> endpointsByPath, Settings settings,
+                               AdaptiveConcurrencyLimiter limiter, MeterRegistry meterRegistry) {
+        this.endpoints = Map.copyOf(endpointsByPath);
+        this.settings = settings;
+        this.limiter = limiter;
+        this.meterRegistry = meterRegistry;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(settings.maxClients())
+                .expireAfterAccess(settings.idleExpiry())
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || endpoint(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Endpoint endpoint = endpoint(request);
+        String client = clientKey(request);
+
+        TokenBucket bucket = buckets.get(client, k -> new TokenBucket(settings.capacity(), settings.refillPerSecond()));
+        if (!bucket.tryConsume(endpoint.cost())) {
+            count(endpoint, "rate_limited");
+            log.warn("🚦 Rate limited {} on {}", client, endpoint.name());
+            reject(response, bucket.nanosUntil(endpoint.cost()));
+            return;
+        }
+
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.tryAcquire();
+        if (permit == null) {
+            // Quá tải chung, không phải lỗi của người dùng → trả lại token
+            bucket.refund(endpoint.cost());
+            count(endpoint, "shed");
+            log.warn("🚦 Shedding {} (in flight {}, limit {})", endpoint.name(), limiter.inFlight(), limiter.limit());
+            reject(response, TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        count(endpoint, "accepted");
+
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // SSE: giữ permit tới khi stream kết thúc
+                async = true;
+                request.getAsyncContext().addListener(new PermitReleasingListener(permit));
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            permit.dropped();
+            throw e;
+        } finally {
+            if (!async) {
+                finish(permit, response.getStatus());
+            }
+        }
+    }
+
+    private static void finish(AdaptiveConcurrencyLimiter.Permit permit, int status) {
+        if (status >= 500 || status == 429) {
+            permit.dropped();
+        } else if (status >= 400) {
+            permit.ignore();
+        } else {
+            permit.success();
+        }
+    }
+
+    private Endpoint endpoint(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return endpoints.get(path);
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth instanceof JwtAuthenticationToken jwt && jwt.getToken().getSubject() != null) {
+            return "sub:" + jwt.getToken().getSubject();
+        }
+        if (settings.trustForwardedFor()) {
+            String client = forwardedClient(request.getHeader("X-Forwarded-For"), settings.trustedProxies());
+            if (client != null) return "ip:" + client;
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /**
+     * Địa chỉ do proxy tin cậy ngoài cùng ghi vào X-Forwarded-For: phần tử thứ {@code trustedProxies} tính từ phải.
+     * Các phần tử bên trái do client tự đặt (đổi tuỳ ý để lấy bucket mới) nên không dùng.
+     * Header ít hop hơn số proxy tin cậy → {@code null} (dùng địa chỉ kết nối).
+     */
+    static String forwardedClient(String forwarded, int trustedProxies) {
+        if (forwarded == null || forwarded.isBlank()) return null;
+        String[] hops = forwarded.split(",");
+        int index = hops.length - Math.max(1, trustedProxies);
+        if (index < 0) return null;
+        String hop = hops[index].trim();
+        return hop.isEmpty() ? null : hop;
+    }
+
+    private void count(Endpoint endpoint, String outcome) {
+        Counter.builder("chat.admission")
+                .tag("endpoint", endpoint.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static void reject(HttpServletResponse response, long retryAfterNanos) throws IOException {
+        ErrorCode errorCode = ErrorCode.RATE_LIMIT_EXCEEDED;
+        long retryAfter = Math.max(1, (long) Math.ceil(Math.min(retryAfterNanos, TimeUnit.HOURS.toNanos(1)) / 1e9));
+        response.setStatus(errorCode.getHttpStatusCode().value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        ApiResponse<?> apiResponse = ApiResponse.builder()
+                .code(errorCode.getCode())
+                .message(errorCode.getMessage())
+                .build();
+        response.getWriter().write(MAPPER.writeValueAsString(apiResponse));
+        response.flushBuffer();
+    }
+
+    private record PermitReleasingListener(AdaptiveConcurrencyLimiter.Permit permit) implements AsyncListener {
+
+        /** Thời gian của cả stream không phản ánh tải upstream → không dùng để điều chỉnh limit. */
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.ignore();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.dropped();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.dropped();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package iuh.fit.se.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.repository.memory.BoundedChatMemoryRepository;
+import iuh.fit.se.repository.memory.WriteBehindChatMemoryRepository;
+import iuh.fit.se.util.BlockingCallGuard;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.memory.MessageWindowChatMemory;
+import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+@Slf4j
+@Configuration
+public class ChatMemoryConfig {
+
+    @Bean
+    public ChatMemory chatMemory(JdbcChatMemoryRepository jdbcChatMemoryRepository,
+                                 BlockingCallGuard databaseGuard,
+                                 ObjectProvider<WriteBehindChatMemoryRepository> writeBehind) {
+        ChatMemoryRepository repository = writeBehind.getIfAvailable(
+                () -> new BoundedChatMemoryRepository(jdbcChatMemoryRepository, databaseGuard));
+        return MessageWindowChatMemory.builder()
+                .chatMemoryRepository(repository)
+                .maxMessages(2)
+                .build();
+    }
+
+    /**
+     * Ghi chat memory theo lô ở background + near cache; close() ghi nốt khi tắt ứng dụng.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "chat-ai.memory.write-behind", name = "enabled", havingValue = "true",
+            matchIfMissing = true)
+    public WriteBehindChatMemoryRepository writeBehindChatMemoryRepository(
+            JdbcChatMemoryRepository jdbcChatMemoryRepository,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            BlockingCallGuard databaseGuard,
+            MeterRegistry meterRegistry,
+            @Value("${chat-ai.memory.write-behind.flush-interval:200ms}") Duration flushInterval,
+            @Value("${chat-ai.memory.write-behind.batch-size:64}") int batchSize,
+            @Value("${chat-ai.memory.write-behind.max-pending:10000}") int maxPending,
+            @Value("${chat-ai.memory.write-behind.near-cache-size:10000}") long nearCacheSize,
+            @Value("${chat-ai.memory.write-behind.near-cache-ttl:30m}") Duration nearCacheTtl,
+            @Value("${chat-ai.memory.write-behind.enqueue-timeout:5s}") Duration enqueueTimeout) {
+        var settings = new WriteBehindChatMemoryRepository.Settings(
+                flushInterval, Math.max(1, batchSize), Math.max(1, maxPending),
+                nearCacheSize, nearCacheTtl, enqueueTimeout);
+        log.info("🔧 Write-behind chat memory: {}", settings);
+        return new WriteBehindChatMemoryRepository(
+                new BoundedChatMemoryRepository(jdbcChatMemoryRepository, databaseGuard),
+                jdbcTemplate,
+                new TransactionTemplate(transactionManager),
+                databaseGuard,
+                meterRegistry,
+                settings);
+    }
+}
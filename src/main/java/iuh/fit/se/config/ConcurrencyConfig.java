@@ -0,0 +1,28 @@
+package iuh.fit.se.config;
+
+import iuh.fit.se.util.BlockingCallGuard;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Slf4j
+@Configuration
+public class ConcurrencyConfig {
+
+    /**
+     * Chốt chặn cho các lời gọi JDBC (chat memory, policy).
+     * Mặc định bằng kích thước Hikari pool để thread thừa chờ ở đây thay vì trong pool.
+     */
+    @Bean
+    public BlockingCallGuard databaseGuard(
+            @Value("${chat-ai.concurrency.db.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+            @Value("${chat-ai.concurrency.db.acquire-timeout:5s}") Duration acquireTimeout,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        log.info("🔧 Database guard: maxConcurrent={}, acquireTimeout={}, virtualThreads={}",
+                maxConcurrent, acquireTimeout, virtualThreads);
+        return new BlockingCallGuard("database", maxConcurrent, acquireTimeout);
+    }
+}
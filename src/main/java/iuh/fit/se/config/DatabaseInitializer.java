@@ -39,7 +39,24 @@ public class DatabaseInitializer {
                 log.info("✅ FULLTEXT INDEX already exists");
             }
 
-            // 2. Modify SPRING_AI_CHAT_MEMORY column (luôn chạy, idempotent)
+            // 2. Index phục vụ keyset pagination (effective_date DESC, id DESC)
+            Integer keysetIndexCount = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*)
+                FROM information_schema.statistics
+                WHERE table_schema = DATABASE()
+                  AND table_name = 'policies'
+                  AND index_name = 'idx_policy_effective_id'
+                """, Integer.class);
+
+            if (keysetIndexCount == null || keysetIndexCount == 0) {
+                log.info("📌 Creating keyset INDEX for policies...");
+                jdbcTemplate.execute(
+                        "ALTER TABLE policies ADD INDEX idx_policy_effective_id (effective_date, id)"
+                );
+                log.info("✅ Keyset INDEX created successfully");
+            }
+
+            // 3. Modify SPRING_AI_CHAT_MEMORY column (luôn chạy, idempotent)
             log.info("📌 Modifying SPRING_AI_CHAT_MEMORY column...");
             jdbcTemplate.execute(
                     "ALTER TABLE SPRING_AI_CHAT_MEMORY MODIFY COLUMN content TEXT NULL"
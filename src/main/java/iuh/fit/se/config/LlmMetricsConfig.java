@@ -0,0 +1,159 @@
+package iuh.fit.se.config;
+
+import iuh.fit.se.service.metrics.ChatMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Đo từng lượt gọi Gemini chat completions: {@code chat.llm.request{mode, route, outcome}}.
+ * Mỗi lần gửi HTTP là một mẫu - vòng lặp tool của Spring AI và mỗi lần thử lại sau 429 đều được đếm riêng:
+ * với WebClient, lần thử lại đi lại qua cả chuỗi filter; với RestClient thì không ({@code InterceptingRequestExecution}
+ * chỉ duyệt danh sách interceptor một lần, lần {@code execute} thứ hai của limiter đi thẳng tới transport), nên
+ * {@link LlmRateLimitConfig} tự bọc các lần thử lại bằng {@link CallMetricsInterceptor}.
+ * <ul>
+ *   <li>{@code call}: từ lúc gửi tới khi đọc xong body (response đóng).</li>
+ *   <li>{@code stream}: từ lúc gửi tới khi có header phản hồi (≈ token đầu tiên);
+ *   thời gian sinh phần còn lại nằm trong {@code http.server.requests} của /chat/stream.</li>
+ * </ul>
+ * Customizer chạy sau {@link LlmRateLimitConfig} nên interceptor/filter nằm trong cùng,
+ * không tính thời gian chờ của limiter.
+ */
+@Configuration
+public class LlmMetricsConfig {
+
+    private final String completionsPath;
+
+    public LlmMetricsConfig(@Value("${spring.ai.openai.chat.completions-path:/v1/chat/completions}") String completionsPath) {
+        this.completionsPath = completionsPath;
+    }
+
+    @Bean
+    public CallMetricsInterceptor llmCallMetricsInterceptor(ChatMetrics metrics) {
+        return new CallMetricsInterceptor(metrics);
+    }
+
+    /** ChatClient.call() → RestClient (chạy trên thread gọi → route lấy từ ThreadLocal). */
+    @Bean
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public RestClientCustomizer llmMetricsRestClientCustomizer(CallMetricsInterceptor interceptor) {
+        return builder -> builder.requestInterceptor((request, body, execution) -> matches(request.getURI())
+                ? interceptor.intercept(request, body, execution)
+                : execution.execute(request, body));
+    }
+
+    /** ChatClient.stream() → WebClient (route lấy từ Reactor Context, xem ChatService#chatStream). */
+    @Bean
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public WebClientCustomizer llmMetricsWebClientCustomizer(ChatMetrics metrics) {
+        ExchangeFilterFunction filter = (request, next) -> {
+            if (!matches(request.url())) {
+                return next.exchange(request);
+            }
+            return Mono.deferContextual(ctx -> {
+                ChatMetrics.Route route = ChatMetrics.route(ctx);
+                long start = System.nanoTime();
+                return next.exchange(request)
+                        .doOnNext(response -> metrics.llmRequest("stream", route,
+                                outcome(response.statusCode()), System.nanoTime() - start))
+                        .doOnError(e -> metrics.llmRequest("stream", route,
+                                ChatMetrics.OUTCOME_ERROR, System.nanoTime() - start));
+            });
+        };
+        return builder -> builder.filter(filter);
+    }
+
+    private boolean matches(URI uri) {
+        return uri.getPath() != null && uri.getPath().endsWith(completionsPath);
+    }
+
+    private static String outcome(HttpStatusCode status) {
+        if (status.value() == HttpStatus.TOO_MANY_REQUESTS.value()) return "throttled";
+        return status.is2xxSuccessful() ? ChatMetrics.OUTCOME_SUCCESS : ChatMetrics.OUTCOME_ERROR;
+    }
+
+    /** Đo một lần gửi request chat completions qua RestClient (mode {@code call}). */
+    public static final class CallMetricsInterceptor implements ClientHttpRequestInterceptor {
+        private final ChatMetrics metrics;
+
+        CallMetricsInterceptor(ChatMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+                throws IOException {
+            ChatMetrics.Route route = ChatMetrics.currentRoute();
+            long start = System.nanoTime();
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException | RuntimeException e) {
+                metrics.llmRequest("call", route, ChatMetrics.OUTCOME_ERROR, System.nanoTime() - start);
+                throw e;
+            }
+            String outcome = outcome(response.getStatusCode());
+            return new RecordOnClose(response, () ->
+                    metrics.llmRequest("call", route, outcome, System.nanoTime() - start));
+        }
+    }
+
+    /** Ghi số liệu một lần khi response được đóng (RestClient đóng sau khi đọc xong body). */
+    private static final class RecordOnClose implements ClientHttpResponse {
+        private final ClientHttpResponse delegate;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        RecordOnClose(ClientHttpResponse delegate, Runnable onClose) {
+            this.delegate = delegate;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return delegate.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return delegate.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                delegate.close();
+            } finally {
+                if (closed.compareAndSet(false, true)) onClose.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package iuh.fit.se.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.util.OutboundRateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giới hạn tốc độ gọi Gemini chat completions (API tương thích OpenAI) phía client.
+ * Gắn vào RestClient (call) và WebClient (stream) mà Spring AI dùng, chỉ áp dụng cho
+ * request tới {@code spring.ai.openai.chat.completions-path}.
+ * Request bị 429 được thử lại (sau khi limiter đã dừng theo Retry-After + jitter) tối đa {@code max-retries} lần,
+ * sau đó 429 được trả nguyên cho Spring AI như trước.
+ * Lần thử lại qua RestClient không đi qua lại các interceptor phía trong nên được đo tại đây
+ * (xem {@link LlmMetricsConfig.CallMetricsInterceptor}).
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "chat-ai.llm-rate-limit", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LlmRateLimitConfig {
+
+    private static final String PREFIX = "chat-ai.llm-rate-limit.";
+
+    private final String completionsPath;
+
+    public LlmRateLimitConfig(@Value("${spring.ai.openai.chat.completions-path:/v1/chat/completions}") String completionsPath) {
+        this.completionsPath = completionsPath;
+    }
+
+    @Bean
+    public OutboundRateLimiter llmRateLimiter(Environment env, MeterRegistry meterRegistry) {
+        var settings = new OutboundRateLimiter.Settings(
+                env.getProperty(PREFIX + "initial-rate", Double.class, 5.0),
+                env.getProperty(PREFIX + "min-rate", Double.class, 0.5),
+                env.getProperty(PREFIX + "max-rate", Double.class, 15.0),
+                env.getProperty(PREFIX + "increase-per-success", Double.class, 0.05),
+                env.getProperty(PREFIX + "decrease-ratio", Double.class, 0.5),
+                env.getProperty(PREFIX + "max-wait", Duration.class, Duration.ofSeconds(10)),
+                env.getProperty(PREFIX + "max-queue", Integer.class, 200),
+                env.getProperty(PREFIX + "base-backoff", Duration.class, Duration.ofSeconds(1)),
+                env.getProperty(PREFIX + "jitter", Double.class, 0.3),
+                env.getProperty(PREFIX + "max-retries", Integer.class, 2));
+        log.info("🔧 LLM outbound rate limit: {} (path {})", settings, completionsPath);
+        return new OutboundRateLimiter("gemini-chat", settings).bindTo(meterRegistry, "chat.llm.limiter");
+    }
+
+    /** ChatClient.call() → RestClient. */
+    @Bean
+    @Order(0)
+    public RestClientCustomizer llmRateLimitRestClientCustomizer(OutboundRateLimiter llmRateLimiter,
+                                                                 LlmMetricsConfig.CallMetricsInterceptor callMetrics,
+                                                                 Environment env) {
+        int maxRetries = env.getProperty(PREFIX + "max-retries", Integer.class, 2);
+        return builder -> builder.requestInterceptor((request, body, execution) -> {
+            if (!matches(request.getURI())) {
+                return execution.execute(request, body);
+            }
+            for (int attempt = 0; ; attempt++) {
+                llmRateLimiter.acquire();
+                // Lần đầu đi qua chuỗi interceptor (có metrics); lần thử lại execution đi thẳng tới transport
+                ClientHttpResponse response = attempt == 0
+                        ? execution.execute(request, body)
+                        : callMetrics.intercept(request, body, execution);
+                if (response.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                    if (response.getStatusCode().is2xxSuccessful()) llmRateLimiter.onSuccess();
+                    return response;
+                }
+                llmRateLimiter.onThrottled(retryAfter(response.getHeaders()));
+                if (attempt >= maxRetries) {
+                    return response;
+                }
+                response.close();
+            }
+        });
+    }
+
+    /** ChatClient.stream() → WebClient. */
+    @Bean
+    @Order(0)
+    public WebClientCustomizer llmRateLimitWebClientCustomizer(OutboundRateLimiter llmRateLimiter,
+                                                               Environment env) {
+        int maxRetries = env.getProperty(PREFIX + "max-retries", Integer.class, 2);
+        ExchangeFilterFunction filter = (request, next) -> {
+            if (!matches(request.url())) {
+                return next.exchange(request);
+            }
+            AtomicInteger attempts = new AtomicInteger();
+            return Mono.defer(() -> Mono.fromRunnable(llmRateLimiter::acquire)
+                            // acquire() có thể ngủ → không chạy trên event loop
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(next.exchange(request)))
+                    .flatMap(response -> {
+                        if (response.statusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                            if (response.statusCode().is2xxSuccessful()) llmRateLimiter.onSuccess();
+                            return Mono.just(response);
+                        }
+                        llmRateLimiter.onThrottled(retryAfter(response.headers().asHttpHeaders()));
+                        if (attempts.incrementAndGet() > maxRetries) {
+                            return Mono.just(response);
+                        }
+                        return response.releaseBody().then(Mono.error(new Throttled()));
+                    })
+                    .retryWhen(Retry.indefinitely().filter(Throttled.class::isInstance));
+        };
+        return builder -> builder.filter(filter);
+    }
+
+    private boolean matches(URI uri) {
+        return uri.getPath() != null && uri.getPath().endsWith(completionsPath);
+    }
+
+    /** Retry-After dạng số giây hoặc HTTP-date; null nếu không có / không đọc được. */
+    static Duration retryAfter(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) return null;
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException ignore) {
+        }
+        try {
+            Duration d = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+            return d.isNegative() ? Duration.ZERO : d;
+        } catch (Exception ignore) {
+            return null;
+        }
+    }
+
+    /** Tín hiệu nội bộ để retryWhen gửi lại request bị 429. */
+    private static final class Throttled extends RuntimeException {
+        Throttled() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package iuh.fit.se.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.repository.httpclient.GeminiClient;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.httpclient.GeminiSearchGateway;
+import iuh.fit.se.repository.httpclient.StreamingImageUploader;
+import iuh.fit.se.service.metrics.ChatMetrics;
+import iuh.fit.se.util.BlockingCallGuard;
+import iuh.fit.se.util.ResilientOperation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Slf4j
+@Configuration
+public class ResilienceConfig {
+
+    private static final String PREFIX = "chat-ai.gemini-resilience.";
+
+    /**
+     * Circuit breaker + bulkhead + timeout cho từng thao tác của gemini-service;
+     * semantic search có thể bật hedged request (idempotent).
+     */
+    @Bean(destroyMethod = "close")
+    public GeminiSearchGateway geminiSearchGateway(GeminiClient geminiClient,
+                                                   MeterRegistry meterRegistry,
+                                                   ChatMetrics chatMetrics,
+                                                   ObjectMapper objectMapper,
+                                                   Environment env) {
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("gemini-call-", 0).factory());
+
+        var semantic = settings(env, "semantic-search", Duration.ofSeconds(8), 32, true);
+        var image = settings(env, "image-search", Duration.ofSeconds(30), 8, false);
+        log.info("🔧 Gemini resilience: semanticSearch={}, searchByImage={}", semantic, image);
+
+        return new GeminiSearchGateway(geminiClient,
+                new ResilientOperation(GeminiSearchGateway.SEMANTIC_SEARCH, semantic, executor).bindTo(meterRegistry),
+                new ResilientOperation(GeminiSearchGateway.IMAGE_SEARCH, image, executor).bindTo(meterRegistry),
+                executor,
+                chatMetrics,
+                imageUploader(env, objectMapper));
+    }
+
+    /**
+     * Upload ảnh dạng stream (không qua Feign), tắt bằng {@code chat-ai.image-upload.streaming=false}.
+     * Dùng chung URL / timeout của Feign client {@code gemini-service} và giới hạn kết nối của route ảnh.
+     */
+    private static StreamingImageUploader imageUploader(Environment env, ObjectMapper objectMapper) {
+        if (!env.getProperty("chat-ai.image-upload.streaming", Boolean.class, true)) return null;
+        String feign = "spring.cloud.openfeign.client.config.gemini-service.";
+        String url = env.getRequiredProperty(feign + "url");
+        int maxConcurrent = env.getProperty("chat-ai.gemini-transport.image.max-connections", Integer.class, 8);
+        Duration acquireTimeout = env.getProperty("chat-ai.gemini-transport.acquire-timeout", Duration.class,
+                Duration.ofSeconds(2));
+        log.info("🔧 Streaming image upload: url={}, maxConcurrent={}", url, maxConcurrent);
+        return new StreamingImageUploader(URI.create(url),
+                Duration.ofMillis(env.getProperty(feign + "connect-timeout", Long.class, 30_000L)),
+                Duration.ofMillis(env.getProperty(feign + "read-timeout", Long.class, 120_000L)),
+                new BlockingCallGuard("gemini-service-image-stream", maxConcurrent, acquireTimeout),
+                objectMapper);
+    }
+
+    private static ResilientOperation.Settings settings(Environment env, String operation,
+                                                        Duration defaultTimeout, int defaultMaxConcurrent,
+                                                        boolean hedgeSupported) {
+        String p = PREFIX + operation + ".";
+        CircuitBreakerConfig breaker = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(env.getProperty(p + "breaker.sliding-window", Integer.class, 20))
+                .minimumNumberOfCalls(env.getProperty(p + "breaker.minimum-calls", Integer.class, 10))
+                .failureRateThreshold(env.getProperty(p + "breaker.failure-rate", Float.class, 50f))
+                .slowCallDurationThreshold(env.getProperty(p + "breaker.slow-call", Duration.class,
+                        defaultTimeout.dividedBy(2)))
+                .slowCallRateThreshold(env.getProperty(p + "breaker.slow-call-rate", Float.class, 80f))
+                .waitDurationInOpenState(env.getProperty(p + "breaker.open-duration", Duration.class,
+                        Duration.ofSeconds(30)))
+                .permittedNumberOfCallsInHalfOpenState(
+                        env.getProperty(p + "breaker.half-open-calls", Integer.class, 3))
+                // 4xx là lỗi của request, không phải dấu hiệu upstream hỏng
+                .ignoreException(e -> e instanceof FeignException fe && fe.status() >= 400 && fe.status() < 500
+                        || e instanceof AppException ae && ae.getErrorCode() == ErrorCode.INVALID_REQUEST)
+                .build();
+
+        ResilientOperation.Hedge hedge = hedgeSupported && env.getProperty(p + "hedge.enabled", Boolean.class, false)
+                ? new ResilientOperation.Hedge(true,
+                        env.getProperty(p + "hedge.percentile", Double.class, 0.95),
+                        env.getProperty(p + "hedge.min-delay", Duration.class, Duration.ofMillis(50)),
+                        env.getProperty(p + "hedge.max-delay", Duration.class, Duration.ofSeconds(2)))
+                : ResilientOperation.Hedge.disabled();
+
+        return new ResilientOperation.Settings(
+                env.getProperty(p + "timeout", Duration.class, defaultTimeout),
+                env.getProperty(p + "bulkhead.max-concurrent", Integer.class, defaultMaxConcurrent),
+                env.getProperty(p + "bulkhead.max-wait", Duration.class, Duration.ofMillis(100)),
+                breaker,
+                hedge);
+    }
+}
@@ -0,0 +1,59 @@
+package iuh.fit.se.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import iuh.fit.se.service.metrics.ChatMetrics;
+import iuh.fit.se.service.tool.ParallelToolCallingManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.time.Duration;
+import java.util.Map;
+
+@Slf4j
+@Configuration
+public class ToolExecutionConfig {
+
+    private static final String PREFIX = "chat-ai.tool-execution.";
+
+    /**
+     * Thay {@code ToolCallingManager} mặc định của Spring AI (auto-config lùi lại khi đã có bean):
+     * các tool call trong cùng một tin nhắn assistant chạy song song, có timeout theo từng tool.
+     * Resolver / exception processor vẫn là bean của auto-config; observation {@code spring.ai.tool} của từng
+     * tool call vẫn được ghi (cùng ObservationRegistry).
+     */
+    @Bean(destroyMethod = "close")
+    public ParallelToolCallingManager toolCallingManager(ToolCallbackResolver toolCallbackResolver,
+                                                         ToolExecutionExceptionProcessor exceptionProcessor,
+                                                         ObjectProvider<ObservationRegistry> observationRegistry,
+                                                         ChatMetrics chatMetrics,
+                                                         MeterRegistry meterRegistry,
+                                                         Environment env) {
+        ObservationRegistry observations = observationRegistry.getIfUnique(() -> ObservationRegistry.NOOP);
+        DefaultToolCallingManager sequential = DefaultToolCallingManager.builder()
+                .observationRegistry(observations)
+                .toolCallbackResolver(toolCallbackResolver)
+                .toolExecutionExceptionProcessor(exceptionProcessor)
+                .build();
+
+        boolean parallel = env.getProperty(PREFIX + "parallel", Boolean.class, true);
+        int maxConcurrent = env.getProperty(PREFIX + "max-concurrent", Integer.class, 64);
+        Duration timeout = env.getProperty(PREFIX + "timeout", Duration.class, Duration.ofSeconds(20));
+        Map<String, Duration> timeouts = Binder.get(env)
+                .bind(PREFIX + "timeouts", Bindable.mapOf(String.class, Duration.class))
+                .orElse(Map.of());
+        log.info("🔧 Tool execution: parallel={}, maxConcurrent={}, timeout={}, perTool={}",
+                parallel, maxConcurrent, timeout, timeouts);
+
+        return new ParallelToolCallingManager(sequential, toolCallbackResolver, exceptionProcessor,
+                chatMetrics, meterRegistry, observations, parallel, maxConcurrent, timeout, timeouts);
+    }
+}
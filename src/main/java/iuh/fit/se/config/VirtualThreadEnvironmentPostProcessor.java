@@ -0,0 +1,23 @@
+package iuh.fit.se.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+/**
+ * Khi bật {@code spring.threads.virtual.enabled}, cho Reactor boundedElastic chạy trên virtual thread.
+ * Spring AI thực thi tool của luồng stream() trên boundedElastic, nên property này phải được
+ * set trước khi class {@code reactor.core.scheduler.Schedulers} được nạp.
+ */
+public class VirtualThreadEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String REACTOR_VIRTUAL_THREADS = "reactor.schedulers.defaultBoundedElasticOnVirtualThreads";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        boolean enabled = environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false);
+        if (enabled && System.getProperty(REACTOR_VIRTUAL_THREADS) == null) {
+            System.setProperty(REACTOR_VIRTUAL_THREADS, "true");
+        }
+    }
+}
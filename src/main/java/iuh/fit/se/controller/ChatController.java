@@ -2,15 +2,24 @@ package iuh.fit.se.controller;
 
 import iuh.fit.se.dto.ChatRequest;
 import iuh.fit.se.service.ChatService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+
+import java.io.IOException;
 
 @RestController
 public class ChatController {
     private final ChatService chatService;
+    private final long streamTimeoutMs;
 
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService,
+                          @Value("${chat-ai.stream.timeout-ms:120000}") long streamTimeoutMs) {
         this.chatService = chatService;
+        this.streamTimeoutMs = streamTimeoutMs;
     }
 
     @PostMapping("/chat")
@@ -19,6 +28,28 @@ public class ChatController {
         return chatService.chat(request);
     }
 
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    SseEmitter chatStream(@RequestBody ChatRequest request) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+
+        Disposable subscription = chatService.chatStream(request).subscribe(
+                ev -> {
+                    try {
+                        emitter.send(SseEmitter.event().name(ev.event()).data(ev.data()));
+                    } catch (IOException e) {
+                        // Client đã ngắt kết nối
+                        throw new IllegalStateException(e);
+                    }
+                },
+                emitter::completeWithError,
+                emitter::complete);
+
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        return emitter;
+    }
+
     @PostMapping("/chat-with-image")
     String chatWithImage(@RequestPart("file")MultipartFile file,
                          @RequestParam("message") String message,
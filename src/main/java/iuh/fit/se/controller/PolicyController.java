@@ -1,13 +1,18 @@
 package iuh.fit.se.controller;
 
 import iuh.fit.se.dto.ApiResponse;
+import iuh.fit.se.dto.response.PolicyPageResponse;
 import iuh.fit.se.entity.Policy;
 import iuh.fit.se.service.PolicySimpleService;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -16,12 +21,54 @@ import java.util.List;
 @FieldDefaults(level = AccessLevel.PRIVATE,makeFinal = true)
 public class PolicyController {
     PolicySimpleService policySimpleService;
+
     @GetMapping("/policies/latest")
-    ApiResponse<List<Policy>> getLatestPolicy() {
-        return ApiResponse.<List<Policy>>builder()
-                .code(200)
-                .result(policySimpleService.getAll())
-                .message("Latest policy retrieved successfully")
-                .build();
+    ResponseEntity<ApiResponse<List<Policy>>> getLatestPolicy(WebRequest request) {
+        // ✅ ETag tính từ COUNT/MAX(modified) → danh sách không đổi chỉ tốn 304, không đọc markdown
+        String etag = etag("latest");
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.<List<Policy>>builder()
+                        .code(200)
+                        .result(policySimpleService.getAll())
+                        .message("Latest policy retrieved successfully")
+                        .build());
+    }
+
+    /**
+     * Danh sách chính sách phân trang keyset, mới nhất trước.
+     * {@code view=summary} (mặc định) bỏ contentMarkdown; {@code view=full} trả cả nội dung.
+     */
+    @GetMapping("/policies")
+    ResponseEntity<ApiResponse<PolicyPageResponse<?>>> listPolicies(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "summary") String view,
+            WebRequest request) {
+        boolean full = "full".equalsIgnoreCase(view);
+        String etag = etag((full ? "full" : "summary") + "-" + limit + "-" + (cursor == null ? "" : cursor));
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        PolicyPageResponse<?> page = full
+                ? policySimpleService.pageFull(cursor, limit)
+                : policySimpleService.pageSummaries(cursor, limit);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(ApiResponse.<PolicyPageResponse<?>>builder()
+                        .code(200)
+                        .result(page)
+                        .message("Policies retrieved successfully")
+                        .build());
+    }
+
+    private String etag(String variant) {
+        return "\"" + policySimpleService.listVersion() + "-" + Integer.toHexString(variant.hashCode()) + "\"";
     }
 }
@@ -0,0 +1,12 @@
+package iuh.fit.se.dto;
+
+/**
+ * Một sự kiện SSE của /chat/stream.
+ * {@code event}: token | product_list | error | done; {@code data}: JSON một dòng.
+ */
+public record ChatStreamEvent(String event, String data) {
+    public static final String TOKEN = "token";
+    public static final String PRODUCT_LIST = "product_list";
+    public static final String ERROR = "error";
+    public static final String DONE = "done";
+}
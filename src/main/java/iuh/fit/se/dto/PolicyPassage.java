@@ -0,0 +1,7 @@
+package iuh.fit.se.dto;
+
+/**
+ * Một đoạn (chunk) của chính sách trả cho LLM, kèm code/title/version để trích dẫn.
+ */
+public record PolicyPassage(String code, String title, String version, String section, String text) {
+}
@@ -0,0 +1,9 @@
+package iuh.fit.se.dto.response;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dấu phiên bản của bảng policies (số dòng + mốc sửa/tạo mới nhất) - dùng để tính ETag.
+ */
+public record PolicyListVersion(Long count, LocalDateTime lastModified, LocalDateTime lastCreated) {
+}
@@ -0,0 +1,17 @@
+package iuh.fit.se.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Một trang keyset: truyền {@code nextCursor} vào tham số {@code cursor} để lấy trang kế tiếp.
+ */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PolicyPageResponse<T> {
+    private List<T> items;
+    private String nextCursor;
+    private int limit;
+}
@@ -0,0 +1,19 @@
+package iuh.fit.se.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection của Policy không kèm contentMarkdown (dùng cho danh sách).
+ * Thứ tự constructor phải khớp với JPQL "SELECT new ..." trong PolicyRepository.
+ */
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class PolicySummaryResponse {
+    private String id;
+    private String code;
+    private String title;
+    private String version;
+    private LocalDateTime effectiveDate;
+    private LocalDateTime modifiedTime;
+}
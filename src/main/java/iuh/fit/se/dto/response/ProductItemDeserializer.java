@@ -0,0 +1,184 @@
+package iuh.fit.se.dto.response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import iuh.fit.se.dto.ProductSearchPayload;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Đọc document "product" (Mongo) của Flask thẳng thành {@link ProductSearchPayload.Item} bằng streaming parser.
+ * Chỉ lấy _id, name, percentDiscount, giá của variant đầu tiên và ảnh (không phải .mp4) đầu tiên;
+ * mọi subtree khác (mô tả, các variant/ảnh còn lại...) được bỏ qua bằng {@link JsonParser#skipChildren()}
+ * nên không bị dựng thành Map trên heap.
+ */
+public class ProductItemDeserializer extends JsonDeserializer<ProductSearchPayload.Item> {
+
+    static final String DEFAULT_NAME = "(Chưa có tên)";
+    static final String DEFAULT_IMAGE = "/img/default.png";
+
+    @Override
+    public ProductSearchPayload.Item deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        ProductSearchPayload.Item item = new ProductSearchPayload.Item();
+        item.id = "";
+        item.price = 0.0;
+        item.discount = 0.0;
+
+        if (p.currentToken() != JsonToken.START_OBJECT) {
+            p.skipChildren();
+            return finish(item);
+        }
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "_id" -> item.id = readId(p, value);
+                case "name" -> item.name = readString(p, value);
+                case "percentDiscount" -> item.discount = readNumber(p, value, 0.0);
+                case "variants" -> item.price = readFirstVariantPrice(p, value);
+                case "images" -> item.imageUrl = readFirstImage(p, value);
+                default -> p.skipChildren();
+            }
+        }
+        return finish(item);
+    }
+
+    private static ProductSearchPayload.Item finish(ProductSearchPayload.Item item) {
+        if (item.name == null || item.name.isEmpty()) item.name = DEFAULT_NAME;
+        if (item.imageUrl == null) item.imageUrl = DEFAULT_IMAGE;
+        item.url = "/products/" + item.id;
+        return item;
+    }
+
+    /** {@code "_id": "..."} hoặc {@code "_id": {"$oid": "..."}}. */
+    private static String readId(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            String oid = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                p.nextToken();
+                if ("$oid".equals(name)) {
+                    oid = p.getValueAsString();
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return oid != null ? oid : "";
+        }
+        if (token == JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return "";
+        }
+        return token == JsonToken.VALUE_NULL ? "" : p.getValueAsString();
+    }
+
+    private static String readString(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) return null;
+        if (token.isScalarValue()) return p.getValueAsString();
+        p.skipChildren();
+        return null;
+    }
+
+    /** Số dạng number, chuỗi số hoặc {@code {"$numberLong": "..."}}. */
+    private static double readNumber(JsonParser p, JsonToken token, double def) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> {
+                return p.getDoubleValue();
+            }
+            case VALUE_STRING -> {
+                try {
+                    return Double.parseDouble(p.getText().trim());
+                } catch (NumberFormatException e) {
+                    return def;
+                }
+            }
+            case START_OBJECT -> {
+                double result = def;
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if ("$numberLong".equals(name) || "$numberDouble".equals(name) || "$numberDecimal".equals(name)) {
+                        result = readNumber(p, v, def);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                return result;
+            }
+            default -> {
+                p.skipChildren();
+                return def;
+            }
+        }
+    }
+
+    /** Giá của phần tử đầu tiên trong "variants"; các phần tử sau bị bỏ qua. */
+    private static double readFirstVariantPrice(JsonParser p, JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return 0.0;
+        }
+        double price = 0.0;
+        JsonToken first = p.nextToken();
+        if (first == JsonToken.START_OBJECT) {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String name = p.currentName();
+                JsonToken v = p.nextToken();
+                if ("price".equals(name)) {
+                    price = readNumber(p, v, 0.0);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        } else if (first != JsonToken.END_ARRAY) {
+            p.skipChildren();
+        }
+        if (first != JsonToken.END_ARRAY) {
+            skipRestOfArray(p);
+        }
+        return price;
+    }
+
+    /** URL đầu tiên không phải video trong "images" (phần tử là chuỗi hoặc {@code {"url": ...}}). */
+    private static String readFirstImage(JsonParser p, JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            p.skipChildren();
+            return null;
+        }
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+            String url = null;
+            if (t == JsonToken.VALUE_STRING) {
+                url = p.getText();
+            } else if (t == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if ("url".equals(name) && v != JsonToken.VALUE_NULL && v.isScalarValue()) {
+                        url = p.getValueAsString();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+            if (url != null && !url.toLowerCase(Locale.ROOT).endsWith(".mp4")) {
+                skipRestOfArray(p);
+                return url;
+            }
+        }
+        return null;
+    }
+
+    private static void skipRestOfArray(JsonParser p) throws IOException {
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+            p.skipChildren();
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package iuh.fit.se.dto.response;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import iuh.fit.se.dto.ProductSearchPayload;
 import lombok.*;
 
 import java.util.List;
-import java.util.Map;
 
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class SearchByImageResponse {
@@ -19,7 +20,8 @@ public class SearchByImageResponse {
 
     @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
     public static class ResultItem {
-        private Map<String, Object> product;
+        @JsonDeserialize(using = ProductItemDeserializer.class)
+        private ProductSearchPayload.Item product;
 
         @JsonProperty("similarity_score")
         private Double similarityScore;
@@ -2,14 +2,15 @@ package iuh.fit.se.dto.response;
 
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import iuh.fit.se.dto.ProductSearchPayload;
 import lombok.*;
 
-import java.util.Map;
-
 @Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
 public class SearchResultItem {
-    // Flask trả "product": {...} – để linh hoạt, map thẳng thành Map
-    private Map<String, Object> product;
+    // Flask trả "product": {...} (document Mongo đầy đủ) – chỉ đọc các field cần cho thẻ sản phẩm
+    @JsonDeserialize(using = ProductItemDeserializer.class)
+    private ProductSearchPayload.Item product;
 
     @JsonProperty("similarity_score")
     private Double similarityScore;
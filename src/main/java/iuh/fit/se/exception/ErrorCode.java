@@ -79,7 +79,8 @@ public enum ErrorCode {
     PRODUCT_NOT_FOUND(1046, "Product not found", HttpStatus.NOT_FOUND),
     CATEGORY_NOT_FOUND(1047, "Category not found", HttpStatus.NOT_FOUND),
     QUANTITY_INVALID(1048, "Quantity must be greater than zero", HttpStatus.BAD_REQUEST),
-    CONCURRENT_MODIFICATION(1049, "Concurrent Product update conflict", HttpStatus.CONFLICT),;
+    CONCURRENT_MODIFICATION(1049, "Concurrent Product update conflict", HttpStatus.CONFLICT),
+    SERVER_BUSY(1050, "Server is busy, please try again later", HttpStatus.SERVICE_UNAVAILABLE),;
 
     int code;
     String message;
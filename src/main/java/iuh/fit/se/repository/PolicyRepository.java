@@ -1,10 +1,15 @@
 package iuh.fit.se.repository;
 
+import iuh.fit.se.dto.response.PolicyListVersion;
+import iuh.fit.se.dto.response.PolicySummaryResponse;
 import iuh.fit.se.entity.Policy;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -41,8 +46,60 @@ public interface PolicyRepository extends JpaRepository<Policy, String> {
     List<Policy> searchLike(@Param("q") String q);
 
     /**
-     * Lấy tất cả chính sách, sắp xếp theo ngày hiệu lực giảm dần
+     * Lấy các chính sách mới nhất theo ngày hiệu lực (LIMIT ở phía DB)
+     */
+    @Query(value = "SELECT * FROM policies ORDER BY effective_date DESC LIMIT :limit", nativeQuery = true)
+    List<Policy> findAllOrderByEffectiveDateDesc(@Param("limit") int limit);
+
+    /**
+     * Keyset pagination - trang đầu (effective_date DESC, id DESC)
+     */
+    @Query("SELECT p FROM Policy p ORDER BY p.effectiveDate DESC, p.id DESC")
+    List<Policy> findPageFirst(Pageable page);
+
+    /**
+     * Keyset pagination - các trang sau cursor (effectiveDate, id)
+     */
+    @Query("""
+        SELECT p FROM Policy p
+        WHERE p.effectiveDate < :date OR (p.effectiveDate = :date AND p.id < :id)
+        ORDER BY p.effectiveDate DESC, p.id DESC
+        """)
+    List<Policy> findPageAfter(@Param("date") LocalDateTime date, @Param("id") String id, Pageable page);
+
+    /**
+     * Như findPageFirst nhưng chỉ lấy các cột tóm tắt (không đọc content_markdown)
+     */
+    @Query("""
+        SELECT new iuh.fit.se.dto.response.PolicySummaryResponse(
+            p.id, p.code, p.title, p.version, p.effectiveDate, p.modifiedTime)
+        FROM Policy p
+        ORDER BY p.effectiveDate DESC, p.id DESC
+        """)
+    List<PolicySummaryResponse> findSummaryPageFirst(Pageable page);
+
+    @Query("""
+        SELECT new iuh.fit.se.dto.response.PolicySummaryResponse(
+            p.id, p.code, p.title, p.version, p.effectiveDate, p.modifiedTime)
+        FROM Policy p
+        WHERE p.effectiveDate < :date OR (p.effectiveDate = :date AND p.id < :id)
+        ORDER BY p.effectiveDate DESC, p.id DESC
+        """)
+    List<PolicySummaryResponse> findSummaryPageAfter(@Param("date") LocalDateTime date, @Param("id") String id,
+                                                     Pageable page);
+
+    /**
+     * Dấu phiên bản rẻ của cả bảng - thay đổi khi có thêm/sửa/xoá dòng
+     */
+    @Query("""
+        SELECT new iuh.fit.se.dto.response.PolicyListVersion(COUNT(p), MAX(p.modifiedTime), MAX(p.createdTime))
+        FROM Policy p
+        """)
+    PolicyListVersion findListVersion();
+
+    /**
+     * Chính sách được tạo/sửa sau mốc thời gian - dùng cho refresh tăng dần của PolicySearchIndex
      */
-    @Query(value = "SELECT * FROM policies ORDER BY effective_date DESC", nativeQuery = true)
-    List<Policy> findAllOrderByEffectiveDateDesc();
+    @Query("SELECT p FROM Policy p WHERE p.modifiedTime > :since OR p.createdTime > :since")
+    List<Policy> findChangedSince(@Param("since") LocalDateTime since);
 }
@@ -0,0 +1,73 @@
+package iuh.fit.se.repository.httpclient;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Bọc một Feign {@link Client} không tự giải nén (JDK HttpClient): gửi {@code Accept-Encoding: gzip, deflate}
+ * và giải nén body theo {@code Content-Encoding} của response. Apache HttpClient 5 đã tự làm việc này.
+ */
+public class DecompressingClient implements Client {
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private final Client delegate;
+
+    public DecompressingClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        Response response = delegate.execute(withAcceptEncoding(request), options);
+        if (response.body() == null) return response;
+
+        String encoding = header(response.headers(), CONTENT_ENCODING);
+        if (encoding == null) return response;
+        encoding = encoding.trim().toLowerCase(Locale.ROOT);
+        if (!encoding.equals("gzip") && !encoding.equals("x-gzip") && !encoding.equals("deflate")) {
+            return response;
+        }
+
+        var raw = response.body().asInputStream();
+        var decoded = encoding.equals("deflate") ? new InflaterInputStream(raw) : new GZIPInputStream(raw);
+
+        // Độ dài sau giải nén chưa biết → bỏ Content-Length/Content-Encoding cũ
+        Map<String, Collection<String>> headers = new LinkedHashMap<>();
+        response.headers().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase(CONTENT_ENCODING) && !name.equalsIgnoreCase(CONTENT_LENGTH)) {
+                headers.put(name, values);
+            }
+        });
+        return response.toBuilder()
+                .headers(headers)
+                .body(decoded, null)
+                .build();
+    }
+
+    private static Request withAcceptEncoding(Request request) {
+        if (header(request.headers(), ACCEPT_ENCODING) != null) return request;
+
+        Map<String, Collection<String>> headers = new LinkedHashMap<>(request.headers());
+        headers.put(ACCEPT_ENCODING, List.of("gzip, deflate"));
+        return Request.create(request.httpMethod(), request.url(), headers, request.body(),
+                request.charset(), request.requestTemplate());
+    }
+
+    private static String header(Map<String, Collection<String>> headers, String name) {
+        for (Map.Entry<String, Collection<String>> e : headers.entrySet()) {
+            if (e.getKey() != null && e.getKey().equalsIgnoreCase(name) && !e.getValue().isEmpty()) {
+                return e.getValue().iterator().next();
+            }
+        }
+        return null;
+    }
+}
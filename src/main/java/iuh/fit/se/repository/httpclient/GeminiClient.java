@@ -19,15 +19,18 @@ import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.multipart.MultipartFile;
 
 @FeignClient(
-        name = "gemini-service",configuration = {GeminiClient.FormConfig.class}
+        name = "gemini-service",configuration = {GeminiClient.FormConfig.class, GeminiTransportConfig.class}
 )
 public interface GeminiClient {
 
+    String SEARCH_PATH = "/search/search";
+    String IMAGE_SEARCH_PATH = "/index/search-by-image-multi";
+
     // Full path đúng với Flask: /gemini/search/search
-    @PostMapping(value = "/search/search", consumes = "application/json")
+    @PostMapping(value = SEARCH_PATH, consumes = "application/json")
     SearchResponse semanticSearch(@RequestBody SearchRequest request);
 
-    @PostMapping(value = "/index/search-by-image-multi",
+    @PostMapping(value = IMAGE_SEARCH_PATH,
             consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     SearchByImageResponse searchByImageUpload(
             @RequestPart("image") MultipartFile image,
@@ -0,0 +1,65 @@
+package iuh.fit.se.repository.httpclient;
+
+import iuh.fit.se.dto.request.SearchRequest;
+import iuh.fit.se.dto.response.SearchByImageResponse;
+import iuh.fit.se.dto.response.SearchResponse;
+import iuh.fit.se.service.image.PreparedImage;
+import iuh.fit.se.service.metrics.ChatMetrics;
+import iuh.fit.se.util.ResilientOperation;
+
+/**
+ * {@link GeminiClient} với circuit breaker / bulkhead / timeout riêng cho từng thao tác
+ * (và hedged request cho semantic search nếu bật). Lỗi nhanh bằng {@code AppException}
+ * để tool trả {@code emptyPayload} thay vì giữ thread chat tới read-timeout.
+ * Mỗi phương thức được đo bằng {@code gemini.request{method, route, outcome}} (gồm cả thời gian chờ bulkhead / hedge).
+ * Upload ảnh đi qua {@link StreamingImageUploader} nếu có (body stream từ file), nếu không thì qua Feign.
+ */
+public class GeminiSearchGateway implements AutoCloseable {
+
+    public static final String SEMANTIC_SEARCH = "semanticSearch";
+    public static final String IMAGE_SEARCH = "searchByImage";
+
+    private final GeminiClient client;
+    private final ResilientOperation semanticSearch;
+    private final ResilientOperation imageSearch;
+    private final AutoCloseable executor;
+    private final ChatMetrics metrics;
+    private final StreamingImageUploader imageUploader;
+
+    /**
+     * @param imageUploader upload ảnh dạng stream; {@code null} → dùng {@link GeminiClient#searchByImageUpload}
+     */
+    public GeminiSearchGateway(GeminiClient client,
+                               ResilientOperation semanticSearch,
+                               ResilientOperation imageSearch,
+                               AutoCloseable executor,
+                               ChatMetrics metrics,
+                               StreamingImageUploader imageUploader) {
+        this.client = client;
+        this.semanticSearch = semanticSearch;
+        this.imageSearch = imageSearch;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.imageUploader = imageUploader;
+    }
+
+    public SearchResponse semanticSearch(SearchRequest request) {
+        return metrics.gemini(SEMANTIC_SEARCH, ChatMetrics.Route.PRODUCT,
+                () -> semanticSearch.call(() -> client.semanticSearch(request)));
+    }
+
+    public SearchByImageResponse searchByImageUpload(PreparedImage image, Integer topK, Integer candidateK,
+                                                     Integer perProductRerank, Double minSimilarity) {
+        return metrics.gemini(IMAGE_SEARCH, ChatMetrics.Route.VISION, () -> imageSearch.call(() ->
+                imageUploader != null
+                        ? imageUploader.searchByImage(image, topK, candidateK, perProductRerank, minSimilarity)
+                        : client.searchByImageUpload(image.asMultipartFile("image"), topK, candidateK,
+                                perProductRerank, minSimilarity)));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (imageUploader != null) imageUploader.close();
+        executor.close();
+    }
+}
@@ -0,0 +1,124 @@
+package iuh.fit.se.repository.httpclient;
+
+import feign.Client;
+import feign.hc5.ApacheHttp5Client;
+import feign.http2client.Http2Client;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import iuh.fit.se.util.BlockingCallGuard;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Transport của {@link GeminiClient} (chỉ áp dụng cho client này - không đánh dấu {@code @Configuration}
+ * để không bị component scan đưa vào context chung).
+ *
+ * <p>{@code chat-ai.gemini-transport.mode}:
+ * <ul>
+ *   <li>{@code hc5} (mặc định): Apache HttpClient 5, mỗi route một connection pool riêng có keep-alive,
+ *   tự giải nén gzip/deflate; metric pool {@code httpcomponents.httpclient.pool.*} theo tag {@code httpclient}.</li>
+ *   <li>{@code http2}: JDK HttpClient ưu tiên HTTP/2 (multiplex trên một kết nối), giải nén qua
+ *   {@link DecompressingClient}. Keep-alive do JDK quản lý ({@code jdk.httpclient.keepalive.timeout}).</li>
+ *   <li>{@code default}: HttpURLConnection của Feign như trước, không giới hạn theo route.</li>
+ * </ul>
+ * Ở hai chế độ đầu, {@code /search/search} và {@code /index/search-by-image-multi} có giới hạn số kết nối
+ * (số request đồng thời) riêng, xem {@link RoutedFeignClient}.
+ * Timeout connect/read vẫn lấy từ {@code spring.cloud.openfeign.client.config.gemini-service}.
+ */
+@Slf4j
+public class GeminiTransportConfig {
+
+    private static final String CLIENT = "gemini-service";
+
+    @Bean
+    public Client geminiFeignClient(
+            @Value("${chat-ai.gemini-transport.mode:hc5}") String mode,
+            @Value("${chat-ai.gemini-transport.search.max-connections:32}") int searchMax,
+            @Value("${chat-ai.gemini-transport.image.max-connections:8}") int imageMax,
+            @Value("${chat-ai.gemini-transport.keep-alive:30s}") Duration keepAlive,
+            @Value("${chat-ai.gemini-transport.idle-timeout:30s}") Duration idleTimeout,
+            @Value("${chat-ai.gemini-transport.acquire-timeout:2s}") Duration acquireTimeout,
+            @Value("${spring.cloud.openfeign.client.config.gemini-service.connect-timeout:30000}") long connectTimeoutMs,
+            MeterRegistry meterRegistry) {
+        String m = mode.trim().toLowerCase(Locale.ROOT);
+        log.info("🔧 Gemini transport: mode={}, search.maxConnections={}, image.maxConnections={}, keepAlive={}",
+                m, searchMax, imageMax, keepAlive);
+
+        RoutedFeignClient.Route search;
+        RoutedFeignClient.Route image;
+        switch (m) {
+            case "default" -> {
+                return new Client.Default(null, null);
+            }
+            case "http2" -> {
+                HttpClient jdk = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .build();
+                // Một HttpClient dùng chung: HTTP/2 multiplex các route trên cùng kết nối, guard giới hạn từng route
+                Client shared = new DecompressingClient(new Http2Client(jdk));
+                search = new RoutedFeignClient.Route("search", GeminiClient.SEARCH_PATH, shared,
+                        guard("search", searchMax, acquireTimeout), null);
+                image = new RoutedFeignClient.Route("image", GeminiClient.IMAGE_SEARCH_PATH, shared,
+                        guard("image", imageMax, acquireTimeout), null);
+            }
+            case "hc5" -> {
+                search = pooledRoute("search", GeminiClient.SEARCH_PATH, searchMax,
+                        keepAlive, idleTimeout, acquireTimeout, connectTimeoutMs, meterRegistry);
+                image = pooledRoute("image", GeminiClient.IMAGE_SEARCH_PATH, imageMax,
+                        keepAlive, idleTimeout, acquireTimeout, connectTimeoutMs, meterRegistry);
+            }
+            default -> throw new IllegalArgumentException("Unknown chat-ai.gemini-transport.mode: " + mode);
+        }
+
+        // Path lạ (endpoint mới chưa khai báo) đi chung pool với tìm kiếm JSON
+        return new RoutedFeignClient(List.of(search, image), search).bindTo(meterRegistry);
+    }
+
+    private static RoutedFeignClient.Route pooledRoute(String name, String path, int maxConnections,
+                                                       Duration keepAlive, Duration idleTimeout,
+                                                       Duration acquireTimeout, long connectTimeoutMs,
+                                                       MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager pool = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        // Server (gunicorn/werkzeug) có thể đóng kết nối rảnh sớm hơn keep-alive của mình
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(1))
+                        .build())
+                .build();
+
+        TimeValue keepAliveValue = TimeValue.of(keepAlive);
+        CloseableHttpClient http = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setKeepAliveStrategy((response, context) -> keepAliveValue)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                // POST không idempotent - không tự gửi lại
+                .disableAutomaticRetries()
+                .build();
+
+        new PoolingHttpClientConnectionManagerMetricsBinder(pool, CLIENT + "-" + name).bindTo(meterRegistry);
+        return new RoutedFeignClient.Route(name, path, new ApacheHttp5Client(http),
+                guard(name, maxConnections, acquireTimeout), http);
+    }
+
+    private static BlockingCallGuard guard(String route, int maxConcurrent, Duration acquireTimeout) {
+        return new BlockingCallGuard(CLIENT + "-" + route, maxConcurrent, acquireTimeout);
+    }
+}
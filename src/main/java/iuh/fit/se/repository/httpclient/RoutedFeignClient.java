@@ -0,0 +1,100 @@
+package iuh.fit.se.repository.httpclient;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.util.BlockingCallGuard;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Feign {@link Client} chọn transport theo path của request, để mỗi endpoint có giới hạn kết nối riêng
+ * (VD: upload ảnh multipart chậm không chiếm hết socket của tìm kiếm JSON).
+ *
+ * <p>Mỗi route có một {@link BlockingCallGuard} cùng kích thước với pool của nó: request thừa chờ ở guard
+ * (tối đa acquire-timeout, sau đó {@code SERVER_BUSY}) thay vì xếp hàng vô hạn trong connection pool.
+ * Request không khớp route nào đi qua route {@code fallback}.
+ */
+@Slf4j
+public class RoutedFeignClient implements Client, AutoCloseable {
+
+    /**
+     * @param name       tên route (tag của metric)
+     * @param pathSuffix path của endpoint, so khớp với phần cuối path của URL
+     * @param client     transport của route
+     * @param guard      giới hạn số request đồng thời của route
+     * @param resource   pool cần đóng khi tắt (có thể null)
+     */
+    public record Route(String name, String pathSuffix, Client client, BlockingCallGuard guard,
+                        AutoCloseable resource) {
+    }
+
+    private final List<Route> routes;
+    private final Route fallback;
+    private final List<Route> all;
+
+    public RoutedFeignClient(List<Route> routes, Route fallback) {
+        this.routes = List.copyOf(routes);
+        this.fallback = fallback;
+        this.all = this.routes.contains(fallback)
+                ? this.routes
+                : Stream.concat(this.routes.stream(), Stream.of(fallback)).toList();
+    }
+
+    /** Gauge số request đang chạy / đang chờ của từng route ({@code gemini.transport.in.flight|queued}). */
+    public RoutedFeignClient bindTo(MeterRegistry registry) {
+        for (Route route : all) {
+            Gauge.builder("gemini.transport.in.flight", route.guard(), BlockingCallGuard::inFlight)
+                    .tag("route", route.name())
+                    .register(registry);
+            Gauge.builder("gemini.transport.queued", route.guard(), BlockingCallGuard::queued)
+                    .tag("route", route.name())
+                    .register(registry);
+        }
+        return this;
+    }
+
+    @Override
+    public Response execute(Request request, Request.Options options) throws IOException {
+        Route route = route(request.url());
+        try {
+            return route.guard().call(() -> {
+                try {
+                    return route.client().execute(request, options);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Giữ IOException để Feign vẫn xử lý như lỗi I/O (RetryableException)
+            throw e.getCause();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Route route : all) {
+            if (route.resource() == null) continue;
+            try {
+                route.resource().close();
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to close transport for route '{}': {}", route.name(), e.getMessage());
+            }
+        }
+    }
+
+    private Route route(String url) {
+        int query = url.indexOf('?');
+        String path = query >= 0 ? url.substring(0, query) : url;
+        for (Route route : routes) {
+            if (path.endsWith(route.pathSuffix())) return route;
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,148 @@
+package iuh.fit.se.repository.httpclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.dto.response.SearchByImageResponse;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.service.image.PreparedImage;
+import iuh.fit.se.util.BlockingCallGuard;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Upload ảnh lên {@code /index/search-by-image-multi} bằng JDK HttpClient, body multipart được stream:
+ * ảnh trong file tạm đi thẳng từ file channel ({@link HttpRequest.BodyPublishers#ofFile}) ra socket theo từng
+ * đoạn nhỏ, không dựng lại cả body trên heap như Feign + {@code SpringFormEncoder} (Feign luôn cần {@code byte[]}).
+ *
+ * <p>Số upload đồng thời bị chặn bởi {@code guard} (cùng giới hạn với route ảnh của Feign). Lỗi được đổi sang
+ * {@link AppException} như các lời gọi Feign đi qua {@code ResilientOperation}: 4xx → {@code INVALID_REQUEST}
+ * (không tính cho circuit breaker), còn lại → {@code EXTERNAL_SERVICE_*}.
+ */
+@Slf4j
+public class StreamingImageUploader implements AutoCloseable {
+
+    private final URI endpoint;
+    private final HttpClient http;
+    private final Duration readTimeout;
+    private final BlockingCallGuard guard;
+    private final ObjectMapper mapper;
+
+    public StreamingImageUploader(URI baseUrl, Duration connectTimeout, Duration readTimeout,
+                                  BlockingCallGuard guard, ObjectMapper mapper) {
+        String base = baseUrl.toString();
+        this.endpoint = URI.create((base.endsWith("/") ? base.substring(0, base.length() - 1) : base)
+                + GeminiClient.IMAGE_SEARCH_PATH);
+        this.http = HttpClient.newBuilder()
+                // Flask/gunicorn: HTTP/1.1, body có Content-Length (không chunked)
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.readTimeout = readTimeout;
+        this.guard = guard;
+        this.mapper = mapper;
+    }
+
+    public SearchByImageResponse searchByImage(PreparedImage image, Integer topK, Integer candidateK,
+                                               Integer perProductRerank, Double minSimilarity) {
+        String boundary = "----chat-ai-" + UUID.randomUUID();
+        List<String[]> fields = new ArrayList<>(4);
+        if (topK != null) fields.add(new String[]{"top_k", topK.toString()});
+        if (candidateK != null) fields.add(new String[]{"candidate_k", candidateK.toString()});
+        if (perProductRerank != null) fields.add(new String[]{"per_product_rerank", perProductRerank.toString()});
+        if (minSimilarity != null) fields.add(new String[]{"min_similarity", minSimilarity.toString()});
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(endpoint)
+                    .timeout(readTimeout)
+                    .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                    .header("Accept", "application/json")
+                    .POST(body(boundary, image, fields))
+                    .build();
+        } catch (FileNotFoundException e) {
+            log.error("❌ Spooled image disappeared before upload: {}", e.getMessage());
+            throw new AppException(ErrorCode.FILE_PROCESSING_ERROR);
+        }
+
+        return guard.call(() -> send(request, image.size()));
+    }
+
+    private SearchByImageResponse send(HttpRequest request, long imageBytes) {
+        HttpResponse<InputStream> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpTimeoutException e) {
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_TIMEOUT);
+        } catch (IOException e) {
+            log.warn("⚠️ Image upload ({} bytes) failed: {}", imageBytes, e.toString());
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        }
+
+        try (InputStream in = response.body()) {
+            int status = response.statusCode();
+            if (status >= 200 && status < 300) {
+                return mapper.readValue(in, SearchByImageResponse.class);
+            }
+            in.transferTo(OutputStream.nullOutputStream());
+            log.warn("⚠️ Image search returned HTTP {}", status);
+            throw new AppException(status >= 400 && status < 500
+                    ? ErrorCode.INVALID_REQUEST
+                    : ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        } catch (IOException e) {
+            log.warn("⚠️ Failed to read image search response: {}", e.toString());
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        }
+    }
+
+    /** Phần đầu/cuối multipart nằm trên heap (vài trăm byte), ảnh là publisher riêng. */
+    private static HttpRequest.BodyPublisher body(String boundary, PreparedImage image, List<String[]> fields)
+            throws FileNotFoundException {
+        String filename = image.filename() == null || image.filename().isBlank() ? "image.jpg" : image.filename();
+        String contentType = image.contentType() == null ? "application/octet-stream" : image.contentType();
+        String head = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"" + quote(filename) + "\"\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n";
+
+        StringBuilder tail = new StringBuilder("\r\n");
+        for (String[] field : fields) {
+            tail.append("--").append(boundary).append("\r\n")
+                    .append("Content-Disposition: form-data; name=\"").append(field[0]).append("\"\r\n\r\n")
+                    .append(field[1]).append("\r\n");
+        }
+        tail.append("--").append(boundary).append("--\r\n");
+
+        return HttpRequest.BodyPublishers.concat(
+                HttpRequest.BodyPublishers.ofByteArray(head.getBytes(StandardCharsets.UTF_8)),
+                image.inMemory()
+                        ? HttpRequest.BodyPublishers.ofByteArray(image.bytes())
+                        : HttpRequest.BodyPublishers.ofFile(image.file()),
+                HttpRequest.BodyPublishers.ofByteArray(tail.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String quote(String filename) {
+        return filename.replace("\r", "").replace("\n", "").replace("\"", "%22");
+    }
+
+    @Override
+    public void close() {
+        http.close();
+    }
+}
@@ -0,0 +1,41 @@
+package iuh.fit.se.repository.memory;
+
+import iuh.fit.se.util.BlockingCallGuard;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/**
+ * Bọc {@link ChatMemoryRepository} để mọi truy cập DB đi qua {@link BlockingCallGuard}.
+ */
+public class BoundedChatMemoryRepository implements ChatMemoryRepository {
+
+    private final ChatMemoryRepository delegate;
+    private final BlockingCallGuard guard;
+
+    public BoundedChatMemoryRepository(ChatMemoryRepository delegate, BlockingCallGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        return guard.call(delegate::findConversationIds);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        return guard.call(() -> delegate.findByConversationId(conversationId));
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        guard.run(() -> delegate.saveAll(conversationId, messages));
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        guard.run(() -> delegate.deleteByConversationId(conversationId));
+    }
+}
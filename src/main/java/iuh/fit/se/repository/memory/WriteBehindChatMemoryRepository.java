@@ -0,0 +1,278 @@
+package iuh.fit.se.repository.memory;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.util.BlockingCallGuard;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemoryRepository;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chat memory ghi sau (write-behind) với near cache cho các hội thoại đang hoạt động.
+ *
+ * <ul>
+ *   <li>Đọc: near cache (LRU) → thay đổi chưa ghi → DB. Lượt chat liên tiếp không chạm DB.</li>
+ *   <li>Ghi: {@code saveAll} chỉ cập nhật cache và đánh dấu hội thoại "dirty" (giữ snapshot MỚI NHẤT,
+ *   vì saveAll luôn thay toàn bộ danh sách). Một thread flusher duy nhất định kỳ ghi theo lô:
+ *   một câu DELETE ... IN (...) + một batch INSERT trong cùng transaction.</li>
+ *   <li>Thứ tự theo hội thoại: mỗi hội thoại có tối đa một snapshot chờ ghi và một snapshot đang ghi;
+ *   flusher chạy tuần tự nên DB luôn đi theo đúng thứ tự các lần saveAll.</li>
+ *   <li>Hàng đợi có giới hạn (số hội thoại dirty): khi đầy, người gọi chờ flusher giải phóng chỗ,
+ *   quá thời gian thì trả {@link ErrorCode#SERVER_BUSY}.</li>
+ *   <li>{@link #close()} dừng flusher và ghi hết phần còn lại khi tắt ứng dụng.</li>
+ * </ul>
+ *
+ * Định dạng bảng giống {@code JdbcChatMemoryRepository} (MySQL/MariaDB dialect) nên có thể bật/tắt qua lại.
+ */
+@Slf4j
+public class WriteBehindChatMemoryRepository implements ChatMemoryRepository, AutoCloseable {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO SPRING_AI_CHAT_MEMORY (conversation_id, content, type, `timestamp`) VALUES (?, ?, ?, ?)";
+    private static final String DELETE_SQL_PREFIX =
+            "DELETE FROM SPRING_AI_CHAT_MEMORY WHERE conversation_id IN ";
+
+    private final ChatMemoryRepository reader;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingCallGuard databaseGuard;
+    private final Settings settings;
+
+    private final Cache<String, List<Message>> nearCache;
+    /** Snapshot mới nhất chưa ghi của từng hội thoại (list rỗng = xoá). */
+    private final ConcurrentHashMap<String, List<Message>> dirty = new ConcurrentHashMap<>();
+    /** Snapshot flusher đang ghi - vẫn phải đọc được nếu near cache đã evict. */
+    private final ConcurrentHashMap<String, List<Message>> inFlight = new ConcurrentHashMap<>();
+
+    private final Object capacityLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final Counter flushFailures;
+
+    public WriteBehindChatMemoryRepository(ChatMemoryRepository reader,
+                                           JdbcTemplate jdbcTemplate,
+                                           TransactionTemplate transactionTemplate,
+                                           BlockingCallGuard databaseGuard,
+                                           MeterRegistry meterRegistry,
+                                           Settings settings) {
+        this.reader = reader;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.databaseGuard = databaseGuard;
+        this.settings = settings;
+        this.nearCache = Caffeine.newBuilder()
+                .maximumSize(settings.nearCacheSize())
+                .expireAfterAccess(settings.nearCacheTtl())
+                .build();
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("chat-memory-flusher").daemon().factory());
+        long interval = settings.flushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        Gauge.builder("chat.memory.pending", dirty, Map::size)
+                .description("Conversations waiting to be written to SPRING_AI_CHAT_MEMORY")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("chat.memory.flush.failures").register(meterRegistry);
+    }
+
+    @Override
+    public List<String> findConversationIds() {
+        Set<String> ids = new LinkedHashSet<>(reader.findConversationIds());
+        applyPending(ids, inFlight);
+        applyPending(ids, dirty);
+        return new ArrayList<>(ids);
+    }
+
+    @Override
+    public List<Message> findByConversationId(String conversationId) {
+        return nearCache.get(conversationId, this::loadUncached);
+    }
+
+    @Override
+    public void saveAll(String conversationId, List<Message> messages) {
+        enqueue(conversationId, List.copyOf(messages));
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        enqueue(conversationId, List.of());
+    }
+
+    /** Ghi hết phần đang chờ rồi dừng flusher. */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(settings.enqueueTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("⚠️ Chat memory flusher did not stop in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (int round = 0; round < 3 && !dirty.isEmpty(); round++) {
+            flushQuietly();
+        }
+        if (!dirty.isEmpty()) {
+            log.error("❌ {} conversations could not be written to chat memory on shutdown", dirty.size());
+        } else {
+            log.info("✅ Chat memory flushed on shutdown");
+        }
+    }
+
+    /* ------------ Write path ------------ */
+
+    private void enqueue(String conversationId, List<Message> snapshot) {
+        if (!dirty.containsKey(conversationId)) {
+            awaitCapacity();
+        }
+        // Cache và hàng đợi được cập nhật trong cùng một compute để hai lời gọi trùng hội thoại không xen kẽ
+        dirty.compute(conversationId, (id, previous) -> {
+            nearCache.put(id, snapshot);
+            return snapshot;
+        });
+        if (dirty.size() >= settings.batchSize()) {
+            requestFlush();
+        }
+    }
+
+    /** Giới hạn mềm: vài lời gọi đồng thời có thể vượt {@code maxPending} một chút. */
+    private void awaitCapacity() {
+        if (dirty.size() < settings.maxPending()) return;
+
+        long deadline = System.nanoTime() + settings.enqueueTimeout().toNanos();
+        synchronized (capacityLock) {
+            while (dirty.size() >= settings.maxPending()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    log.warn("⚠️ Chat memory write queue full ({} conversations)", dirty.size());
+                    throw new AppException(ErrorCode.SERVER_BUSY);
+                }
+                requestFlush();
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(capacityLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AppException(ErrorCode.SERVER_BUSY);
+                }
+            }
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RuntimeException e) {
+                // Flusher đã dừng (đang tắt ứng dụng) - close() sẽ ghi nốt
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            while (flushBatch() >= settings.batchSize()) {
+                // còn nhiều hơn một lô → ghi tiếp ngay
+            }
+        } catch (Exception e) {
+            flushFailures.increment();
+            log.error("❌ Chat memory flush failed, will retry: {}", e.getMessage());
+        }
+    }
+
+    /** Ghi tối đa {@code batchSize} hội thoại, trả về số hội thoại đã lấy ra. */
+    private int flushBatch() {
+        Map<String, List<Message>> batch = new LinkedHashMap<>();
+        for (String id : dirty.keySet()) {
+            if (batch.size() >= settings.batchSize()) break;
+            List<Message> snapshot = dirty.get(id);
+            if (snapshot == null) continue;
+            inFlight.put(id, snapshot);
+            if (dirty.remove(id, snapshot)) {
+                batch.put(id, snapshot);
+            } else {
+                // Vừa có saveAll mới hơn - để lần flush sau ghi bản mới
+                inFlight.remove(id, snapshot);
+            }
+        }
+        if (batch.isEmpty()) return 0;
+
+        synchronized (capacityLock) {
+            capacityLock.notifyAll();
+        }
+
+        try {
+            databaseGuard.run(() -> transactionTemplate.executeWithoutResult(status -> write(batch)));
+        } catch (RuntimeException e) {
+            // Trả lại hàng đợi, trừ khi đã có snapshot mới hơn
+            batch.forEach((id, snapshot) -> {
+                dirty.putIfAbsent(id, snapshot);
+                inFlight.remove(id, snapshot);
+            });
+            throw e;
+        }
+
+        batch.forEach(inFlight::remove);
+        log.debug("💾 Flushed chat memory for {} conversations", batch.size());
+        return batch.size();
+    }
+
+    private void write(Map<String, List<Message>> batch) {
+        String placeholders = String.join(",", Collections.nCopies(batch.size(), "?"));
+        jdbcTemplate.update(DELETE_SQL_PREFIX + "(" + placeholders + ")", batch.keySet().toArray());
+
+        // Timestamp tăng dần giữ thứ tự tin nhắn trong hội thoại (giống JdbcChatMemoryRepository)
+        long sequence = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<String, List<Message>> e : batch.entrySet()) {
+            for (Message m : e.getValue()) {
+                rows.add(new Object[]{e.getKey(), m.getText(), m.getMessageType().name(), new Timestamp(sequence++)});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+    }
+
+    /* ------------ Read path ------------ */
+
+    private List<Message> loadUncached(String conversationId) {
+        List<Message> pending = dirty.get(conversationId);
+        if (pending == null) pending = inFlight.get(conversationId);
+        if (pending != null) return pending;
+        return List.copyOf(reader.findByConversationId(conversationId));
+    }
+
+    private static void applyPending(Set<String> ids, Map<String, List<Message>> pending) {
+        pending.forEach((id, snapshot) -> {
+            if (snapshot.isEmpty()) {
+                ids.remove(id);
+            } else {
+                ids.add(id);
+            }
+        });
+    }
+
+    public record Settings(Duration flushInterval, int batchSize, int maxPending,
+                           long nearCacheSize, Duration nearCacheTtl, Duration enqueueTimeout) {
+    }
+}
@@ -1,33 +1,60 @@
 package iuh.fit.se.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import iuh.fit.se.dto.ChatRequest;
+import iuh.fit.se.dto.ChatStreamEvent;
 import iuh.fit.se.dto.ProductSearchPayload;
-import iuh.fit.se.repository.httpclient.GeminiClient;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.repository.httpclient.GeminiSearchGateway;
+import iuh.fit.se.service.image.ImagePreprocessor;
+import iuh.fit.se.service.image.ImageSearchCache;
+import iuh.fit.se.service.image.PreparedImage;
+import iuh.fit.se.service.intent.ChatIntentDetector;
+import iuh.fit.se.service.intent.ProductQueryExtractor;
+import iuh.fit.se.service.metrics.ChatMetrics;
+import iuh.fit.se.service.tool.PassThroughToolCallback;
+import iuh.fit.se.service.tool.ProductListSplicer;
+import iuh.fit.se.service.tool.TimedToolCallback;
+import iuh.fit.se.service.tool.ToolResultEncoder;
+import iuh.fit.se.service.tool.ToolResultStash;
+import iuh.fit.se.util.SingleFlightCache;
+import iuh.fit.se.util.StreamingJsonExtractor;
+import iuh.fit.se.util.TextNormalizer;
 import iuh.fit.se.dto.request.SearchRequest;
+import iuh.fit.se.dto.response.SearchByImageResponse;
 import iuh.fit.se.dto.response.SearchResponse;
+import iuh.fit.se.dto.response.SearchResultItem;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.MessageWindowChatMemory;
-import org.springframework.ai.chat.memory.repository.jdbc.JdbcChatMemoryRepository;
 import org.springframework.ai.chat.messages.SystemMessage;
 import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.content.Media;
+import org.springframework.ai.support.ToolCallbacks;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Service;
-import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
 import java.util.*;
 
 @Service
 @Slf4j
 public class ChatService {
 
-    private static final String SYSTEM_PROMPT = """
+    private static final String BASE_PROMPT = """
             Bạn là Shopping AI Assistant - trợ lý mua sắm thông minh cho sàn thương mại điện tử.
             
             ## Khả năng của bạn:
@@ -39,6 +66,7 @@ public class ChatService {
                - Sử dụng policy_getByCode() khi biết mã chính sách (VD: PROHIBITED_ITEMS, SELLER_TOS)
                - Sử dụng policy_search() để tìm chính sách theo từ khóa
                - Sử dụng policy_listNewest() để liệt kê chính sách mới nhất
+               - Kết quả là các đoạn trích (code, title, version, section); ghi rõ code và version khi trích dẫn
             
             3. **Trò chuyện tự nhiên**: Trả lời các câu hỏi thường không cần dùng công cụ
             
@@ -56,6 +84,9 @@ public class ChatService {
             - "Có sản phẩm nào giống cái này không?" (kèm ảnh) → searchProductsByImage()
             - "Hàng cấm là gì?" → policy_search(q="hàng cấm", limit=3)
             
+            """;
+
+    private static final String PRODUCT_JSON_RULES = """
             ## ⚠️ QUAN TRỌNG - Định dạng trả về khi dùng searchProducts hoặc searchProductsByImage:
             
             **Khi tool trả về kết quả sản phẩm:**
@@ -113,161 +144,409 @@ public class ChatService {
             ❌ Tóm tắt thành text
             ❌ Thay đổi bất kỳ field nào trong JSON
             
+            """;
+
+    /** Chế độ pass-through: hệ thống tự hiển thị kết quả tool sản phẩm, model không cần chép JSON. */
+    private static final String PRODUCT_PASS_THROUGH_RULES = """
+            ## Kết quả sản phẩm:
+            - Kết quả của searchProducts / searchProductsByImage được hệ thống hiển thị trực tiếp cho người dùng
+            - KHÔNG chép lại, tóm tắt hay liệt kê sản phẩm; nếu cần chỉ viết tối đa 1 câu nhận xét ngắn
+            
+            """;
+
+    private static final String POLICY_RULES = """
             ## Định dạng trả về cho chính sách:
             - Khi trả về chính sách: tóm tắt nội dung chính + trích dẫn chi tiết nếu cần
             - Luôn thân thiện và hữu ích
             """;
 
+    private static final String SYSTEM_PROMPT = BASE_PROMPT + PRODUCT_JSON_RULES + POLICY_RULES;
+    private static final String PASS_THROUGH_SYSTEM_PROMPT = BASE_PROMPT + PRODUCT_PASS_THROUGH_RULES + POLICY_RULES;
+
+    /** Metadata Spring AI gắn vào generation khi trả thẳng kết quả tool (ToolExecutionResult.METADATA_TOOL_ID). */
+    private static final String METADATA_TOOL_ID = "toolId";
+
+    private static final String PRODUCT_LIST_FORMAT_ERROR =
+            "{\"type\":\"product_list\",\"message\":\"Lỗi định dạng kết quả\",\"items\":[]}";
+    private static final String PRODUCT_LIST_PROCESSING_ERROR =
+            "{\"type\":\"product_list\",\"message\":\"Lỗi xử lý\",\"items\":[]}";
+    private static final String PRODUCT_LIST_BUSY =
+            "{\"type\":\"product_list\",\"message\":\"Hệ thống đang bận, vui lòng thử lại sau ít phút\",\"items\":[]}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
     private final ChatClient chatClient;
+    private final ChatClient smallTalkClient;
     private final ChatMemory chatMemory;
     private final SearchProductsTool searchProductsTool;
     private final PolicySimpleTool policyTool;
+    private final ChatIntentDetector intentDetector;
+    private final ProductQueryExtractor queryExtractor;
+    private final boolean fastPathEnabled;
+    private final double fastPathMinConfidence;
+    private final Counter fastRoute;
+    private final Counter llmRoute;
+    private final ChatMetrics metrics;
+    private final ImagePreprocessor imagePreprocessor;
+    private final boolean toolPassThrough;
+    private final String systemPrompt;
 
     public ChatService(ChatClient.Builder chatClientBuilder,
-                       JdbcChatMemoryRepository jdbcChatMemoryRepository,
+                       ChatMemory chatMemory,
                        SearchProductsTool searchProductsTool,
-                       PolicySimpleTool policyTool) {
+                       PolicySimpleTool policyTool,
+                       ChatIntentDetector intentDetector,
+                       ProductQueryExtractor queryExtractor,
+                       MeterRegistry meterRegistry,
+                       ChatMetrics metrics,
+                       ImagePreprocessor imagePreprocessor,
+                       @Value("${chat-ai.fast-path.enabled:true}") boolean fastPathEnabled,
+                       @Value("${chat-ai.fast-path.min-confidence:0.8}") double fastPathMinConfidence,
+                       @Value("${chat-ai.tool-pass-through.enabled:true}") boolean toolPassThrough) {
         this.searchProductsTool = searchProductsTool;
         this.policyTool = policyTool;
+        this.intentDetector = intentDetector;
+        this.queryExtractor = queryExtractor;
+        this.fastPathEnabled = fastPathEnabled;
+        this.fastPathMinConfidence = fastPathMinConfidence;
+        // Tỉ lệ request đi đường tắt / qua LLM: chat.route{path=fast|llm}
+        this.fastRoute = Counter.builder("chat.route").tag("path", "fast").register(meterRegistry);
+        this.llmRoute = Counter.builder("chat.route").tag("path", "llm").register(meterRegistry);
+        this.metrics = metrics;
+        this.imagePreprocessor = imagePreprocessor;
+        this.toolPassThrough = toolPassThrough;
+        this.systemPrompt = toolPassThrough ? PASS_THROUGH_SYSTEM_PROMPT : SYSTEM_PROMPT;
 
         log.info("🔧 Initializing ChatClient with tools: {}, {}",
                 searchProductsTool.getClass().getSimpleName(),
                 policyTool.getClass().getSimpleName());
 
-        // ✅ Khởi tạo ChatMemory (sẽ dùng có điều kiện)
-        this.chatMemory = MessageWindowChatMemory.builder()
-                .chatMemoryRepository(jdbcChatMemoryRepository)
-                .maxMessages(2)
-                .build();
+        // ✅ ChatMemory (sẽ dùng có điều kiện) - xem ChatMemoryConfig
+        this.chatMemory = chatMemory;
+
+        // Small talk không cần tool: client riêng không gửi định nghĩa tool (prompt ngắn hơn, không có lượt gọi tool)
+        this.smallTalkClient = chatClientBuilder.clone().build();
 
         // ✅ QUAN TRỌNG: Đăng ký tools với ChatClient (KHÔNG đăng ký memory advisor mặc định)
-        this.chatClient = chatClientBuilder
-                .defaultTools(searchProductsTool, policyTool)
-                .build();
+        // Mọi tool được đo thời gian gọi: chat.tool{tool, route, outcome}
+        ToolCallback[] productTools = TimedToolCallback.wrap(metrics, ToolCallbacks.from(searchProductsTool));
+        ToolCallback[] policyTools = TimedToolCallback.wrap(metrics, ToolCallbacks.from(policyTool));
+        if (toolPassThrough) {
+            // Tool sản phẩm trả thẳng kết quả (returnDirect) - model không phải chép lại JSON
+            chatClientBuilder
+                    .defaultToolCallbacks(PassThroughToolCallback.wrap(productTools))
+                    .defaultToolCallbacks(policyTools);
+        } else {
+            chatClientBuilder.defaultToolCallbacks(productTools).defaultToolCallbacks(policyTools);
+        }
+        this.chatClient = chatClientBuilder.build();
+
+        log.info("✅ ChatClient initialized successfully with {} tools (pass-through: {})", 2, toolPassThrough);
+    }
+
+    /**
+     * Phân loại route của tin nhắn (một lượt quét automaton, xem ChatIntentDetector):
+     * tìm sản phẩm → PRODUCT, hỏi chính sách → POLICY, còn lại (kể cả small talk) → CHAT.
+     */
+    private ChatMetrics.Route detectRoute(String message) {
+        if (message == null || message.isBlank()) return ChatMetrics.Route.CHAT;
+
+        long start = System.nanoTime();
+        int intents = intentDetector.detect(message);
+        ChatMetrics.Route route = intentDetector.isProductSearch(intents) ? ChatMetrics.Route.PRODUCT
+                : intentDetector.isPolicy(intents) ? ChatMetrics.Route.POLICY
+                : ChatMetrics.Route.CHAT;
+        metrics.stage("intent", route, System.nanoTime() - start);
+
+        if (route == ChatMetrics.Route.PRODUCT) {
+            log.info("🔍 Detected product search intent (mask={})", intents);
+        }
+        return route;
+    }
 
-        log.info("✅ ChatClient initialized successfully with {} tools", 2);
+    /**
+     * Đường tắt không qua LLM: tin nhắn tìm sản phẩm rõ ràng → tách query tất định và gọi thẳng
+     * searchProducts. Trả về rỗng nếu tắt hoặc độ tin cậy thấp (khi đó để LLM xử lý).
+     */
+    private Optional<ProductQueryExtractor.Extraction> fastPathQuery(String message, boolean isProductSearch) {
+        if (!fastPathEnabled || !isProductSearch) return Optional.empty();
+        return queryExtractor.extract(message)
+                .filter(x -> x.confidence() >= fastPathMinConfidence);
     }
 
-    private static String extractFirstJsonObject(String text) {
-        if (text == null) return null;
-        int start = text.indexOf('{');
-        if (start < 0) return null;
-        int depth = 0;
-        boolean inStr = false;
-        char prev = 0;
+    /**
+     * Chat với văn bản - để LLM tự quyết định dùng tool nào
+     */
+    public String chat(ChatRequest request) {
+        String conversationId = resolveConversationId(request.conversationId());
 
-        for (int i = start; i < text.length(); i++) {
-            char c = text.charAt(i);
+        log.info("💬 Chat request: conversationId={}, message='{}'", conversationId, request.message());
 
-            if (c == '"' && prev != '\\') {
-                inStr = !inStr;
+        // ✅ Kiểm tra xem có phải tìm kiếm sản phẩm không
+        ChatMetrics.Route route = detectRoute(request.message());
+        boolean isProductSearch = route == ChatMetrics.Route.PRODUCT;
+
+        var fast = fastPathQuery(request.message(), isProductSearch);
+        if (fast.isPresent()) {
+            fastRoute.increment();
+            log.info("⚡ Fast path: searchProducts(query='{}', limit={})", fast.get().query(), fast.get().limit());
+            return metrics.tool("searchProducts", route,
+                    () -> searchProductsTool.searchProducts(fast.get().query(), fast.get().limit()));
+        }
+        llmRoute.increment();
+
+        // Route gắn vào thread để interceptor HTTP của LLM gắn tag (call() chạy trên thread này)
+        try (ChatMetrics.Scope ignored = metrics.route(route)) {
+            ToolResultStash stash = new ToolResultStash();
+            ChatResponse response = textPrompt(conversationId, request.message(), route, stash)
+                    .call()
+                    .chatResponse();
+
+            log.info("✅ Chat response generated successfully (memory: {})", !isProductSearch);
+            return metrics.stage("postprocess", route, () -> postProcess(response, stash));
+
+        } catch (Exception e) {
+            if (isRateLimited(e)) {
+                log.warn("🚦 Chat API rate limited: {}", e.getMessage());
+                return PRODUCT_LIST_BUSY;
             }
-            if (!inStr) {
-                if (c == '{') depth++;
-                else if (c == '}') {
-                    depth--;
-                    if (depth == 0) {
-                        return text.substring(start, i + 1);
-                    }
-                }
+            log.error("❌ Error calling Chat API: {}", e.getMessage(), e);
+            return PRODUCT_LIST_PROCESSING_ERROR;
+        }
+    }
+
+    /** Chuyển ChatResponse thành chuỗi trả cho FE. */
+    private String postProcess(ChatResponse response, ToolResultStash stash) {
+        // ✅ Pass-through: kết quả tool sản phẩm lấy từ server, không parse lại từ lời model
+        Optional<String> passThrough = passThroughResult(response, stash);
+        if (passThrough.isPresent()) {
+            return passThrough.get();
+        }
+
+        String raw = response == null || response.getResult() == null
+                ? null
+                : response.getResult().getOutput().getText();
+
+        // ✅ Xử lý response chứa product_list JSON
+        if (raw != null && raw.contains("\"type\"") && raw.contains("product_list")) {
+            String json = StreamingJsonExtractor.firstObject(raw);
+            if (json != null) {
+                return json;
             }
-            prev = c;
+            // fallback: nếu không cắt được thì trả stub JSON để FE không lỗi
+            return PRODUCT_LIST_FORMAT_ERROR;
         }
-        return null;
+
+        // Không phải product_list (vd: trả lời chính sách / small talk)
+        return raw;
     }
 
     /**
-     * Phát hiện xem có phải intent tìm kiếm sản phẩm không
+     * Kết quả tool sản phẩm của lượt chat: ưu tiên generation trả thẳng (theo tool-call id),
+     * nếu model vẫn sinh tiếp thì ghép kết quả gần nhất trong stash vào câu trả lời (xem {@link ProductListSplicer}).
      */
-    private boolean isProductSearchIntent(String message) {
-        if (message == null || message.isBlank()) return false;
-
-        String lower = message.toLowerCase().trim();
-
-        // Danh sách từ khóa trigger tìm kiếm sản phẩm
-        String[] searchKeywords = {
-                "tìm", "search", "có", "show", "giới thiệu", "gợi ý",
-                "hiển thị", "xem", "cho tôi", "muốn mua", "mua ở đâu",
-                "áo", "quần", "giày", "váy", "đồ", "sản phẩm", "phụ kiện",
-                "giá", "bao nhiêu", "giá bao nhiêu", "bán", "mua", "đặt hàng",
-                "hoodie", "sneaker", "jacket", "shirt", "dress", "túi xách",
-                "đồng hồ", "kính", "mũ", "nón", "giày thể thao", "giày cao gót",
-                "quần jean", "áo thun", "áo sơ mi", "áo khoác", "váy cưới",
-                "váy dạ hội", "đồ ngủ", "đồ bơi", "đồ tập gym", "đồ thể thao",
-                "điện thoại", "laptop", "máy tính bảng", "tai nghe", "loa",
-                "tivi", "máy ảnh", "máy quay", "đồ gia dụng", "tủ lạnh",
-                "máy giặt", "bếp", "nồi cơm", "quạt", "đèn", "đồ chơi",
-                "sách", "văn phòng phẩm", "mỹ phẩm", "nước hoa", "chăm sóc da",
-                "chăm sóc tóc", "thực phẩm", "đồ uống", "đồ ăn vặt", "thời trang nam",
-                "thời trang nữ", "thời trang trẻ em", "đồ dùng học tập", "đồ dùng nhà bếp",
-                "balo", "vali", "dụng cụ thể thao", "xe đạp", "xe máy", "phụ tùng",
-                "đồ điện tử", "máy lọc nước", "máy hút bụi", "máy lạnh", "máy sưởi",
-                "đồ nội thất", "ghế", "bàn", "giường", "tủ", "trang trí nhà cửa",
-                "đồ làm vườn", "cây cảnh", "hạt giống", "phân bón", "dụng cụ làm bếp",
-                "nồi chiên không dầu", "máy xay sinh tố", "máy ép trái cây", "bình giữ nhiệt",
-                "bình nước", "bình sữa", "đồ dùng trẻ em", "xe đẩy", "ghế ăn", "đồ chơi giáo dục"
-        };
-
-        for (String keyword : searchKeywords) {
-            if (lower.contains(keyword)) {
-                log.info("🔍 Detected product search intent with keyword: '{}'", keyword);
-                return true;
+    private Optional<String> passThroughResult(ChatResponse response, ToolResultStash stash) {
+        if (!toolPassThrough || stash.isEmpty()) return Optional.empty();
+
+        if (response != null) {
+            for (Generation g : response.getResults()) {
+                Object toolId = g.getMetadata().get(METADATA_TOOL_ID);
+                Optional<ToolResultStash.Entry> direct = stash.get(toolId == null ? null : toolId.toString());
+                if (direct.isPresent()) {
+                    log.info("↩️ Returning tool result directly (tool={}, id={})", direct.get().toolName(), toolId);
+                    return Optional.of(direct.get().result());
+                }
             }
         }
-
-        return false;
+        // Lượt không trả thẳng (VD: policy_search + searchProducts) → giữ câu trả lời của model, chỉ ghép khối JSON
+        String text = response == null || response.getResult() == null
+                ? null
+                : response.getResult().getOutput().getText();
+        return stash.last().map(e -> {
+            log.info("🧩 Splicing stashed tool result into response (tool={}, id={})", e.toolName(), e.toolCallId());
+            return ProductListSplicer.splice(text, e.result());
+        });
     }
 
     /**
-     * Chat với văn bản - để LLM tự quyết định dùng tool nào
+     * Chat dạng streaming (SSE) - đẩy token ngay khi Gemini sinh ra.
+     * Khối JSON product_list được gom lại và gửi thành một event riêng khi đã đủ.
      */
-    public String chat(ChatRequest request) {
-        String conversationId = (request.conversationId() == null || request.conversationId().isBlank())
-                ? UUID.randomUUID().toString()
-                : request.conversationId();
+    public Flux<ChatStreamEvent> chatStream(ChatRequest request) {
+        String conversationId = resolveConversationId(request.conversationId());
+
+        log.info("🌊 Chat stream request: conversationId={}, message='{}'", conversationId, request.message());
+
+        ChatMetrics.Route route = detectRoute(request.message());
+        boolean isProductSearch = route == ChatMetrics.Route.PRODUCT;
+        StreamAssembler assembler = new StreamAssembler();
+
+        var fast = fastPathQuery(request.message(), isProductSearch);
+        if (fast.isPresent()) {
+            fastRoute.increment();
+            log.info("⚡ Fast path (stream): searchProducts(query='{}', limit={})",
+                    fast.get().query(), fast.get().limit());
+            return Flux.defer(() -> Flux.just(assembler.productList(metrics.tool("searchProducts", route,
+                            () -> searchProductsTool.searchProducts(fast.get().query(), fast.get().limit())))))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .concatWith(Flux.just(new ChatStreamEvent(ChatStreamEvent.DONE, "{}")));
+        }
+        llmRoute.increment();
+
+        ToolResultStash stash = new ToolResultStash();
+        return Flux.defer(() -> textPrompt(conversationId, request.message(), route, stash).stream().content())
+                .concatMapIterable(assembler::onChunk)
+                .concatWith(Flux.defer(() -> Flux.fromIterable(assembler.onComplete(toolPassThrough ? stash : null))))
+                .doOnComplete(() -> {
+                    // Hậu xử lý của stream = tổng thời gian tách JSON trên các chunk
+                    metrics.stage("postprocess", route, assembler.processingNanos());
+                    log.info("✅ Chat stream completed (memory: {})", !isProductSearch);
+                })
+                // Route cho filter WebClient của LLM (stream không chạy trên thread gọi)
+                .contextWrite(ChatMetrics.routeContext(route))
+                .onErrorResume(e -> {
+                    if (isRateLimited(e)) {
+                        log.warn("🚦 Chat API rate limited (stream): {}", e.getMessage());
+                        return Flux.just(new ChatStreamEvent(ChatStreamEvent.ERROR, PRODUCT_LIST_BUSY));
+                    }
+                    log.error("❌ Error streaming Chat API: {}", e.getMessage(), e);
+                    return Flux.just(new ChatStreamEvent(ChatStreamEvent.ERROR, PRODUCT_LIST_PROCESSING_ERROR));
+                })
+                .concatWith(Flux.just(new ChatStreamEvent(ChatStreamEvent.DONE, "{}")));
+    }
 
-        log.info("💬 Chat request: conversationId={}, message='{}'", conversationId, request.message());
+    /** Limiter phía client từ chối, hoặc Gemini vẫn trả 429 sau khi đã thử lại. */
+    private static boolean isRateLimited(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof AppException app && app.getErrorCode() == ErrorCode.RATE_LIMIT_EXCEEDED) return true;
+            if (t.getMessage() != null && t.getMessage().startsWith("HTTP 429")) return true;
+        }
+        return false;
+    }
 
-        // ✅ Kiểm tra xem có phải tìm kiếm sản phẩm không
-        boolean isProductSearch = isProductSearchIntent(request.message());
+    private static String resolveConversationId(String conversationId) {
+        return (conversationId == null || conversationId.isBlank())
+                ? UUID.randomUUID().toString()
+                : conversationId;
+    }
 
+    /**
+     * Dựng request văn bản dùng chung cho call() và stream().
+     * Memory advisor chỉ được gắn khi KHÔNG phải search product; với stream(),
+     * advisor tự gom các chunk và lưu lượt chat khi Flux hoàn tất.
+     * Small talk rõ ràng (chào hỏi, cảm ơn...) đi qua client không đăng ký tool.
+     */
+    private ChatClient.ChatClientRequestSpec textPrompt(String conversationId, String message, ChatMetrics.Route route,
+                                                        ToolResultStash stash) {
         Prompt prompt = new Prompt(
-                new SystemMessage(SYSTEM_PROMPT),
-                new UserMessage(request.message())
+                new SystemMessage(systemPrompt),
+                new UserMessage(message)
         );
 
+        boolean smallTalk = route == ChatMetrics.Route.CHAT
+                && intentDetector.isSmallTalk(intentDetector.detect(message));
+        if (smallTalk) {
+            log.info("👋 Small talk detected, calling LLM without tools");
+        }
+
+        var chatBuilder = (smallTalk ? smallTalkClient : chatClient).prompt(prompt);
+        chatBuilder.toolContext(toolPassThrough
+                ? Map.of(ToolResultStash.KEY, stash, ChatMetrics.TOOL_CONTEXT_KEY, route)
+                : Map.of(ChatMetrics.TOOL_CONTEXT_KEY, route));
+
+        // ✅ CHỈ thêm memory advisor khi KHÔNG phải search product
+        if (route != ChatMetrics.Route.PRODUCT) {
+            log.info("📝 Using chat memory for conversation: {}", conversationId);
+            chatBuilder.advisors(MessageChatMemoryAdvisor.builder(metrics.timed(chatMemory, route)).build())
+                    .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId));
+        } else {
+            log.info("🚫 Skipping chat memory for product search");
+        }
+        return chatBuilder;
+    }
+
+    private String toJsonLine(Object value) {
         try {
-            var chatBuilder = chatClient.prompt(prompt);
-
-            // ✅ CHỈ thêm memory advisor khi KHÔNG phải search product
-            if (!isProductSearch) {
-                log.info("📝 Using chat memory for conversation: {}", conversationId);
-                chatBuilder.advisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
-                        .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, conversationId));
-            } else {
-                log.info("🚫 Skipping chat memory for product search");
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize stream event", e);
+        }
+    }
+
+    /**
+     * Chuyển các chunk text thành event SSE qua {@link StreamingJsonExtractor}:
+     * text được đẩy ngay khi tới; object product_list đầu tiên được gửi thành event product_list
+     * ngay khi dấu '}' đóng xuất hiện (không chờ model viết xong phần nhận xét phía sau).
+     * Object khác (VD: ví dụ JSON trong câu trả lời) được đẩy như text và tiếp tục tìm product_list phía sau.
+     */
+    private final class StreamAssembler implements StreamingJsonExtractor.Listener {
+        private final StreamingJsonExtractor extractor = new StreamingJsonExtractor(this);
+        private List<ChatStreamEvent> out;
+        private boolean productListSent;
+        private boolean skipLeadingBlank;
+        private long processingNanos;
+
+        List<ChatStreamEvent> onChunk(String chunk) {
+            if (chunk == null || chunk.isEmpty()) return List.of();
+            long start = System.nanoTime();
+            out = new ArrayList<>(2);
+            extractor.feed(chunk);
+            processingNanos += System.nanoTime() - start;
+            return out;
+        }
+
+        /**
+         * @param stash kết quả tool của request (chế độ pass-through) hoặc {@code null}:
+         *              nếu model không tự trả product_list thì ghép kết quả tool vào cuối stream.
+         */
+        List<ChatStreamEvent> onComplete(ToolResultStash stash) {
+            long start = System.nanoTime();
+            out = new ArrayList<>(2);
+            extractor.finish();
+            if (!productListSent && stash != null) {
+                stash.last().ifPresent(e -> out.add(productList(e.result())));
             }
+            processingNanos += System.nanoTime() - start;
+            return out;
+        }
 
-            String raw = chatBuilder.call().content();
+        long processingNanos() {
+            return processingNanos;
+        }
 
-            log.info("✅ Chat response generated successfully (memory: {})", !isProductSearch);
+        @Override
+        public void onText(String text) {
+            if (skipLeadingBlank) {
+                text = text.stripLeading();
+                if (text.isEmpty()) return;
+                skipLeadingBlank = false;
+            }
+            out.add(token(text));
+        }
 
-            // ✅ Xử lý response chứa product_list JSON
-            if (raw != null && raw.contains("\"type\"") && raw.contains("product_list")) {
-                String json = extractFirstJsonObject(raw);
-                if (json != null) {
-                    return json;
-                }
-                // fallback: nếu không cắt được thì trả stub JSON để FE không lỗi
-                return "{\"type\":\"product_list\",\"message\":\"Lỗi định dạng kết quả\",\"items\":[]}";
+        @Override
+        public boolean onObject(String json) {
+            if (!json.contains("\"type\"") || !json.contains("product_list")) {
+                out.add(token(json));
+                return false;
             }
+            out.add(productList(json));
+            productListSent = true;
+            skipLeadingBlank = true;
+            return true;
+        }
 
-            // Không phải product_list (vd: trả lời chính sách / small talk)
-            return raw;
+        private ChatStreamEvent token(String text) {
+            return new ChatStreamEvent(ChatStreamEvent.TOKEN, toJsonLine(Map.of("text", text)));
+        }
 
-        } catch (Exception e) {
-            log.error("❌ Error calling Chat API: {}", e.getMessage(), e);
-            return "{\"type\":\"product_list\",\"message\":\"Lỗi xử lý\",\"items\":[]}";
+        ChatStreamEvent productList(String json) {
+            try {
+                // Nén về một dòng để không vỡ framing của SSE
+                return new ChatStreamEvent(ChatStreamEvent.PRODUCT_LIST, mapper.readTree(json).toString());
+            } catch (JsonProcessingException e) {
+                log.warn("⚠️ Streamed product_list is not valid JSON: {}", e.getOriginalMessage());
+                return new ChatStreamEvent(ChatStreamEvent.PRODUCT_LIST, PRODUCT_LIST_FORMAT_ERROR);
+            }
         }
     }
 
@@ -275,51 +554,60 @@ public class ChatService {
      * Chat với hình ảnh - ưu tiên tìm kiếm sản phẩm tương tự
      */
     public String chatWithImage(MultipartFile file, String message, String conversationId) {
-        String cid = (conversationId == null || conversationId.isBlank())
-                ? UUID.randomUUID().toString()
-                : conversationId;
+        String cid = resolveConversationId(conversationId);
 
         log.info("🖼️ Chat with image: conversationId={}, message='{}', fileSize={}",
                 cid, message, file.getSize());
 
         // ✅ Ưu tiên tìm kiếm sản phẩm theo ảnh
         boolean isProductSearchIntent = message == null || message.isBlank() ||
-                message.toLowerCase().contains("tìm") ||
-                message.toLowerCase().contains("giống") ||
-                message.toLowerCase().contains("tương tự") ||
-                message.toLowerCase().contains("search") ||
-                message.toLowerCase().contains("find");
+                metrics.stage("intent", ChatMetrics.Route.VISION, () -> intentDetector.isImageSearch(message));
 
+        // ✅ Đọc ảnh gốc một lần; ảnh đã tìm trước đó (cùng SHA-256) trả từ cache, không cần thu nhỏ lại
+        PreparedImage image = metrics.stage("image_read", ChatMetrics.Route.VISION, () -> imagePreprocessor.load(file));
+        try {
+            if (isProductSearchIntent) {
+                String cached = searchProductsTool.cachedSearchByImage(image, 5, 0.8);
+                if (cached != null) {
+                    log.info("♻️ Image search cache hit before preprocessing");
+                    return cached;
+                }
+            }
+            // ✅ Thu nhỏ một lần, dùng chung cho image search và vision LLM (prepare nhận quyền sở hữu ảnh gốc)
+            PreparedImage original = image;
+            image = metrics.stage("image_preprocess", ChatMetrics.Route.VISION, () -> imagePreprocessor.prepare(original));
+            return chatWithImage(image, message, cid, isProductSearchIntent);
+        } finally {
+            // Đóng để xoá file tạm / trả ngân sách heap
+            image.close();
+        }
+    }
+
+    private String chatWithImage(PreparedImage image, String message, String cid, boolean isProductSearchIntent) {
         if (isProductSearchIntent) {
             try {
                 log.info("🔍 Attempting image-based product search (no memory)...");
-                return searchProductsTool.searchProductsByImage(file, 5, 0.8);
+                return metrics.tool("searchProductsByImage", ChatMetrics.Route.VISION,
+                        () -> searchProductsTool.searchProductsByImage(image, 5, 0.8));
             } catch (Exception ex) {
                 log.warn("⚠️ Image search failed, falling back to vision chat. Error: {}", ex.getMessage());
             }
         }
 
         // ✅ Fallback: gửi ảnh + text cho LLM phân tích (có memory)
-        org.springframework.util.MimeType mime = MimeTypeUtils.APPLICATION_OCTET_STREAM;
-        try {
-            if (file.getContentType() != null) {
-                mime = MimeTypeUtils.parseMimeType(file.getContentType());
-            }
-        } catch (Exception ignore) {
-        }
-
         Media media = Media.builder()
-                .mimeType(mime)
-                .data(file.getResource())
+                .mimeType(image.mimeType())
+                .data(image.asResource())
                 .build();
 
-        try {
+        try (ChatMetrics.Scope ignored = metrics.route(ChatMetrics.Route.VISION)) {
             log.info("📝 Using chat memory for vision chat: {}", cid);
 
             String response = chatClient.prompt()
-                    .system(SYSTEM_PROMPT)
+                    .system(systemPrompt)
                     .user(u -> u.media(media).text(message))
-                    .advisors(MessageChatMemoryAdvisor.builder(chatMemory).build())
+                    .toolContext(Map.of(ChatMetrics.TOOL_CONTEXT_KEY, ChatMetrics.Route.VISION))
+                    .advisors(MessageChatMemoryAdvisor.builder(metrics.timed(chatMemory, ChatMetrics.Route.VISION)).build())
                     .advisors(a -> a.param(ChatMemory.CONVERSATION_ID, cid))
                     .call()
                     .content();
@@ -337,11 +625,23 @@ public class ChatService {
     @Component
     public static class SearchProductsTool {
         private static final double SIM_THRESHOLD = 0.7;
-        private final ObjectMapper mapper = new ObjectMapper();
-        private final GeminiClient geminiClient;
-
-        public SearchProductsTool(GeminiClient geminiClient) {
+        private static final int SEMANTIC_TOP_K = 10;
+        private final GeminiSearchGateway geminiClient;
+        private final SingleFlightCache<String, SearchResponse> semanticSearchCache;
+        private final ImageSearchCache imageSearchCache;
+        private final ToolResultEncoder encoder;
+        private final ProductSearchIndex productIndex;
+
+        public SearchProductsTool(GeminiSearchGateway geminiClient,
+                                  SingleFlightCache<String, SearchResponse> semanticSearchCache,
+                                  ImageSearchCache imageSearchCache,
+                                  ToolResultEncoder encoder,
+                                  ProductSearchIndex productIndex) {
             this.geminiClient = geminiClient;
+            this.semanticSearchCache = semanticSearchCache;
+            this.imageSearchCache = imageSearchCache;
+            this.encoder = encoder;
+            this.productIndex = productIndex;
         }
 
         @org.springframework.ai.tool.annotation.Tool(
@@ -358,54 +658,72 @@ public class ChatService {
             log.info("🔍 TOOL CALLED: searchProducts(query='{}', limit={}, threshold={})",
                     query, resultLimit, SIM_THRESHOLD);
 
+            // Kết quả semantic đã qua ngưỡng (theo thứ tự của Flask); rỗng khi không có / dịch vụ lỗi
+            List<ProductSearchPayload.Item> semantic = List.of();
+            String missReason = "độ tương đồng < " + SIM_THRESHOLD;
             try {
-                SearchResponse resp = geminiClient.semanticSearch(
-                        SearchRequest.builder()
-                                .query(query)
-                                .topK(10)
-                                .build()
-                );
+                // ✅ Read-through cache: truy vấn trùng (sau chuẩn hoá) chỉ gọi Flask một lần
+                SearchResponse resp = semanticSearchCache.get(TextNormalizer.normalizeQuery(query), () -> {
+                    SearchResponse r = geminiClient.semanticSearch(
+                            SearchRequest.builder()
+                                    .query(query)
+                                    .topK(SEMANTIC_TOP_K)
+                                    .build()
+                    );
+                    // Chỉ cache phản hồi hợp lệ
+                    if (r == null || Boolean.FALSE.equals(r.getSuccess()) || r.getResults() == null) return null;
+                    // Sản phẩm Flask trả về được ghi vào index từ khoá (thread nền)
+                    productIndex.learn(r.getResults().stream()
+                            .map(SearchResultItem::getProduct)
+                            .filter(Objects::nonNull)
+                            .toList());
+                    return r;
+                });
 
                 if (resp == null || Boolean.FALSE.equals(resp.getSuccess()) || resp.getResults() == null) {
                     log.warn("⚠️ No results from semantic search");
-                    return emptyPayload(query, "không có kết quả từ dịch vụ tìm kiếm");
+                    missReason = "không có kết quả từ dịch vụ tìm kiếm";
+                } else {
+                    semantic = resp.getResults().stream()
+                            .filter(r -> r.getProduct() != null)
+                            .map(r -> new ResultWrap(r.getProduct(), normalizeSimilarity(r.getSimilarityScore()), r.getMatchedText()))
+                            .filter(x -> x.sim >= SIM_THRESHOLD)
+                            .map(x -> x.product)
+                            .toList();
+                    if (semantic.isEmpty()) {
+                        log.warn("⚠️ No results passed similarity threshold ({})", SIM_THRESHOLD);
+                    }
                 }
+            } catch (AppException e) {
+                // Breaker mở / bulkhead đầy / quá thời gian → không chờ Flask, chỉ dùng index từ khoá
+                log.warn("⚠️ Semantic search unavailable: {}", e.getErrorCode());
+                missReason = unavailableReason(e);
+            } catch (Exception e) {
+                log.error("❌ Semantic search error: {}", e.getMessage(), e);
+                missReason = "lỗi xử lý kết quả semantic";
+            }
 
-                var passed = resp.getResults().stream()
-                        .map(r -> new ResultWrap(r.getProduct(), normalizeSimilarity(r.getSimilarityScore()), r.getMatchedText()))
-                        .filter(x -> x.sim >= SIM_THRESHOLD)
-                        .limit(resultLimit)
-                        .toList();
-
-                if (passed.isEmpty()) {
-                    log.warn("⚠️ No results passed similarity threshold ({})", SIM_THRESHOLD);
-                    return emptyPayload(query, "độ tương đồng < " + SIM_THRESHOLD);
+            try {
+                // Hybrid: gộp semantic với kết quả từ khoá (RRF); semantic rỗng → chỉ còn từ khoá
+                List<ProductSearchPayload.Item> items = productIndex.rank(query, semantic, resultLimit);
+                if (items.isEmpty()) {
+                    return emptyPayload(query, missReason);
                 }
 
                 ProductSearchPayload payload = new ProductSearchPayload();
                 payload.type = "product_list";
                 payload.message = (query == null || query.isBlank()) ? null
-                        : ("Tìm thấy " + passed.size() + " sản phẩm cho: \"" + query + "\"");
-
-                payload.items = passed.stream().map(x -> {
-                    Map<String, Object> p = x.product;
-
-                    ProductSearchPayload.Item it = new ProductSearchPayload.Item();
-                    it.id = extractId(p);
-                    it.name = strOrDefault(p.get("name"), "(Chưa có tên)");
-                    it.price = extractFirstPriceFromSizes(p.get("variants"));
-                    it.discount = extractDouble(p.get("percentDiscount"), 0.0);
-                    it.url = "/products/" + it.id;
-                    it.imageUrl = pickFirstImage(p);
+                        : ("Tìm thấy " + items.size() + " sản phẩm cho: \"" + query + "\"");
 
-                    return it;
-                }).toList();
+                // Item đã được đọc sẵn từ response (ProductItemDeserializer) hoặc từ index
+                payload.items = items;
 
                 log.info("✅ Found {} products", payload.items.size());
-                return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(payload);
+                // product_list còn được trả nguyên cho FE nên không dùng dạng bảng
+                return encoder.encode("searchProducts", payload, false);
 
             } catch (Exception e) {
-                log.error("❌ Semantic search error: {}", e.getMessage(), e);
+                log.error("❌ Product search error: {}", e.getMessage(), e);
                 return emptyPayload(query, "lỗi xử lý kết quả semantic");
             }
         }
@@ -421,68 +739,102 @@ public class ChatService {
                 @org.springframework.ai.tool.annotation.ToolParam(description = "Số lượng kết quả (mặc định 5)") Integer topK,
                 @org.springframework.ai.tool.annotation.ToolParam(description = "Ngưỡng tương đồng tối thiểu (0..1)") Double minSimilarity
         ) {
+            try (PreparedImage prepared = PreparedImage.inMemory(image.getBytes(), image.getContentType(),
+                    image.getOriginalFilename(), image.getSize(), false, null)) {
+                return searchProductsByImage(prepared, topK, minSimilarity);
+            } catch (IOException e) {
+                log.error("❌ Image search error: {}", e.getMessage(), e);
+                return emptyPayload("", "lỗi đọc ảnh");
+            }
+        }
+
+        /**
+         * Kết quả image search đã cache cho ảnh upload (khoá theo SHA-256 ảnh gốc), không gọi Flask và không cần
+         * ảnh đã thu nhỏ. {@code null} nếu chưa có → gọi {@link #searchProductsByImage(PreparedImage, Integer, Double)}.
+         */
+        public String cachedSearchByImage(PreparedImage image, int topK, double minSimilarity) {
+            ProductSearchPayload payload = imageSearchCache.getIfPresent(image, topK, minSimilarity);
+            return payload == null ? null : encoder.encode("searchProductsByImage", payload, false);
+        }
+
+        /** Như tool ở trên, với ảnh đã qua {@code ImagePreprocessor} (có thể nằm trong file tạm). */
+        public String searchProductsByImage(PreparedImage image, Integer topK, Double minSimilarity) {
             int tk = (topK != null && topK > 0) ? topK : 5;
             double threshold = (minSimilarity != null) ? minSimilarity : 0.8;
 
             log.info("🖼️ TOOL CALLED: searchProductsByImage(topK={}, threshold={})", tk, threshold);
 
             try {
-                var resp = geminiClient.searchByImageUpload(image, tk, 300, 8, threshold);
+                // ✅ Cache theo SHA-256 của ảnh (+ dHash nếu bật): upload lại cùng ảnh không gọi Flask
+                ProductSearchPayload payload = imageSearchCache.get(image, tk, threshold,
+                        () -> searchByImagePayload(image, tk, threshold));
 
-                if (resp == null || Boolean.FALSE.equals(resp.getSuccess()) || resp.getResults() == null) {
-                    log.warn("⚠️ No results from image search");
+                if (payload == null) {
                     return emptyPayload("", "không có kết quả image search");
                 }
+                return encoder.encode("searchProductsByImage", payload, false);
 
-                var filtered = resp.getResults().stream()
-                        .filter(r -> normalizeSimilarity(r.getSimilarityScore()) >= threshold)
-                        .limit(tk)
-                        .toList();
-
-                if (filtered.isEmpty()) {
-                    log.warn("⚠️ No results passed similarity threshold ({})", threshold);
-                    return emptyPayload("", "độ tương đồng < " + threshold);
-                }
-
-                ProductSearchPayload payload = new ProductSearchPayload();
-                payload.type = "product_list";
-                payload.message = "Tìm thấy " + filtered.size() + " sản phẩm tương tự từ hình ảnh";
-                payload.items = filtered.stream().map(r -> {
-                    Map<String, Object> p = r.getProduct();
-                    ProductSearchPayload.Item it = new ProductSearchPayload.Item();
-                    it.id = extractId(p);
-                    it.name = strOrDefault(p.get("name"), "(Chưa có tên)");
-                    it.price = extractFirstPriceFromSizes(p.get("variants"));
-                    it.discount = extractDouble(p.get("percentDiscount"), 0.0);
-                    it.url = "/products/" + it.id;
-                    it.imageUrl = pickFirstImage(p);
-                    return it;
-                }).toList();
-
-                log.info("✅ Found {} similar products", payload.items.size());
-                return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(payload);
-
+            } catch (AppException e) {
+                log.warn("⚠️ Image search unavailable: {}", e.getErrorCode());
+                return emptyPayload("", unavailableReason(e));
             } catch (Exception e) {
                 log.error("❌ Image search error: {}", e.getMessage(), e);
                 return emptyPayload("", "lỗi gọi image search");
             }
         }
 
+        /**
+         * Gọi Flask /index/search-by-image-multi và dựng payload.
+         * Trả về {@code null} khi upstream không có kết quả hợp lệ (để không bị cache).
+         */
+        private ProductSearchPayload searchByImagePayload(PreparedImage image, int tk, double threshold) {
+            var resp = geminiClient.searchByImageUpload(image, tk, 300, 8, threshold);
+
+            if (resp == null || Boolean.FALSE.equals(resp.getSuccess()) || resp.getResults() == null) {
+                log.warn("⚠️ No results from image search");
+                return null;
+            }
+            productIndex.learn(resp.getResults().stream()
+                    .map(SearchByImageResponse.ResultItem::getProduct)
+                    .filter(Objects::nonNull)
+                    .toList());
+
+            var filtered = resp.getResults().stream()
+                    .filter(r -> r.getProduct() != null)
+                    .filter(r -> normalizeSimilarity(r.getSimilarityScore()) >= threshold)
+                    .limit(tk)
+                    .toList();
+
+            if (filtered.isEmpty()) {
+                log.warn("⚠️ No results passed similarity threshold ({})", threshold);
+                return emptyPayloadObject("độ tương đồng < " + threshold);
+            }
+
+            ProductSearchPayload payload = new ProductSearchPayload();
+            payload.type = "product_list";
+            payload.message = "Tìm thấy " + filtered.size() + " sản phẩm tương tự từ hình ảnh";
+            payload.items = filtered.stream().map(SearchByImageResponse.ResultItem::getProduct).toList();
+
+            log.info("✅ Found {} similar products", payload.items.size());
+            return payload;
+        }
+
         /* ------------ Helper Methods ------------ */
 
         private static class ResultWrap {
-            final Map<String, Object> product;
+            final ProductSearchPayload.Item product;
             final double sim;
             final String matched;
 
-            ResultWrap(Map<String, Object> product, double sim, String matched) {
+            ResultWrap(ProductSearchPayload.Item product, double sim, String matched) {
                 this.product = product;
                 this.sim = sim;
                 this.matched = matched;
             }
         }
 
-        private static double normalizeSimilarity(Double score) {
+        /** Đưa điểm của Flask về [0, 1]: giá trị > 1 được coi là khoảng cách. */
+        public static double normalizeSimilarity(Double score) {
             if (score == null) return 0.0;
             if (score > 1.0) {
                 return 1.0 / (1.0 + score);
@@ -491,107 +843,27 @@ public class ChatService {
             return Math.min(score, 1.0);
         }
 
-        private String emptyPayload(String query, String reason) {
-            try {
-                ProductSearchPayload payload = new ProductSearchPayload();
-                payload.type = "product_list";
-                payload.message = "Không tìm thấy sản phẩm phù hợp" +
-                        (reason != null && !reason.isEmpty() ? " (" + reason + ")" : "");
-                payload.items = List.of();
-                return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(payload);
-            } catch (Exception e) {
-                return "{\"type\":\"product_list\",\"message\":\"Lỗi xử lý\",\"items\":[]}";
-            }
-        }
-
-        private static String str(Object o) {
-            return o == null ? "" : String.valueOf(o);
-        }
-
-        private static String strOrDefault(Object o, String def) {
-            String s = str(o);
-            return s.isEmpty() ? def : s;
+        private static String unavailableReason(AppException e) {
+            return e.getErrorCode() == ErrorCode.EXTERNAL_SERVICE_TIMEOUT
+                    ? "dịch vụ tìm kiếm phản hồi quá chậm"
+                    : "dịch vụ tìm kiếm tạm thời không khả dụng";
         }
 
-        private static Double extractDouble(Object v, double def) {
-            try {
-                if (v == null) return def;
-                if (v instanceof Number n) return n.doubleValue();
-                if (v instanceof java.math.BigDecimal bd) return bd.doubleValue();
-                if (v instanceof Map<?, ?> m) {
-                    Object nl = m.get("$numberLong");
-                    if (nl != null) return Double.parseDouble(String.valueOf(nl));
-                }
-                return Double.parseDouble(v.toString());
-            } catch (Exception e) {
-                return def;
-            }
-        }
-
-        @SuppressWarnings("unchecked")
-        private static String extractId(Map<String, Object> product) {
-            Object id = product.get("_id");
-            if (id instanceof Map<?, ?> m) {
-                Object oid = ((Map<String, Object>) m).get("$oid");
-                if (oid != null) return oid.toString();
-            }
-            return str(id);
-        }
-
-        @SuppressWarnings("unchecked")
-        private static Double extractFirstPriceFromSizes(Object sizes) {
-            try {
-                if (!(sizes instanceof List<?> list) || list.isEmpty()) return 0.0;
-                Object first = list.get(0);
-                if (first instanceof Map<?, ?> m) {
-                    Object price = ((Map<String, Object>) m).get("price");
-                    return extractPriceFlexible(price);
-                }
-                return 0.0;
-            } catch (Exception e) {
-                return 0.0;
-            }
-        }
-
-        private static double extractPriceFlexible(Object price) {
-            if (price == null) return 0.0;
-            if (price instanceof Number n) return n.doubleValue();
-            if (price instanceof java.math.BigDecimal bd) return bd.doubleValue();
-            if (price instanceof Map<?, ?> m) {
-                Object nl = m.get("$numberLong");
-                if (nl != null) {
-                    try {
-                        return Double.parseDouble(String.valueOf(nl));
-                    } catch (Exception ignore) {
-                    }
-                }
-            }
+        private String emptyPayload(String query, String reason) {
             try {
-                return Double.parseDouble(price.toString());
+                return encoder.encode("searchProducts", emptyPayloadObject(reason), false);
             } catch (Exception e) {
-                return 0.0;
+                return "{\"type\":\"product_list\",\"message\":\"Lỗi xử lý\",\"items\":[]}";
             }
         }
 
-        @SuppressWarnings("unchecked")
-        private static String pickFirstImage(Map<String, Object> productMap) {
-            try {
-                Object images = productMap.get("images");
-                if (images instanceof List<?> list && !list.isEmpty()) {
-                    for (Object el : list) {
-                        if (el instanceof Map<?, ?> m) {
-                            Object url = ((Map<String, Object>) m).get("url");
-                            if (url != null && !url.toString().toLowerCase().endsWith(".mp4")) {
-                                return url.toString();
-                            }
-                        } else if (el instanceof String s) {
-                            if (!s.toLowerCase().endsWith(".mp4")) return s;
-                        }
-                    }
-                }
-            } catch (Exception ignore) {
-            }
-            return "/img/default.png";
+        private static ProductSearchPayload emptyPayloadObject(String reason) {
+            ProductSearchPayload payload = new ProductSearchPayload();
+            payload.type = "product_list";
+            payload.message = "Không tìm thấy sản phẩm phù hợp" +
+                    (reason != null && !reason.isEmpty() ? " (" + reason + ")" : "");
+            payload.items = List.of();
+            return payload;
         }
     }
 }
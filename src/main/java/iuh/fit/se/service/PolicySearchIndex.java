@@ -0,0 +1,362 @@
+package iuh.fit.se.service;
+
+import iuh.fit.se.dto.PolicyPassage;
+import iuh.fit.se.entity.Policy;
+import iuh.fit.se.repository.PolicyRepository;
+import iuh.fit.se.util.BlockingCallGuard;
+import iuh.fit.se.util.MarkdownChunker;
+import iuh.fit.se.util.TokenEstimator;
+import iuh.fit.se.util.VietnameseTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Inverted index BM25 trong bộ nhớ cho bảng policies, ở mức chunk: mỗi chính sách được cắt
+ * theo heading ({@link MarkdownChunker}) lúc nạp/refresh, mỗi chunk là một "tài liệu" BM25.
+ * Token đã bỏ dấu tiếng Việt (kèm bigram âm tiết), title và heading được nhân trọng số.
+ * Index được thay thế nguyên khối (snapshot bất biến) nên search không cần khoá.
+ *
+ * Refresh tăng dần: định kỳ lấy các dòng có modifiedTime/createdTime mới hơn watermark;
+ * nếu số dòng trong DB lệch với index (có bản ghi bị xoá) thì nạp lại toàn bộ.
+ */
+@Slf4j
+@Component
+public class PolicySearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int TITLE_BOOST = 2;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final PolicyRepository repo;
+    private final BlockingCallGuard databaseGuard;
+    private final boolean enabled;
+    private final int chunkMaxTokens;
+
+    private volatile Snapshot snapshot = Snapshot.build(List.of(), 1);
+    private volatile boolean ready;
+    private LocalDateTime watermark = EPOCH;
+
+    public PolicySearchIndex(PolicyRepository repo,
+                             BlockingCallGuard databaseGuard,
+                             @Value("${chat-ai.policy-index.enabled:true}") boolean enabled,
+                             @Value("${chat-ai.policy-index.chunk-max-tokens:200}") int chunkMaxTokens) {
+        this.repo = repo;
+        this.databaseGuard = databaseGuard;
+        this.enabled = enabled;
+        this.chunkMaxTokens = Math.max(32, chunkMaxTokens);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialLoad() {
+        if (!enabled) return;
+        try {
+            fullReload();
+        } catch (Exception e) {
+            log.error("❌ Policy index initial load failed, will retry on next refresh: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat-ai.policy-index.refresh-interval-ms:60000}",
+            initialDelayString = "${chat-ai.policy-index.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        if (!enabled) return;
+        try {
+            if (!ready) {
+                fullReload();
+                return;
+            }
+
+            Snapshot current = snapshot;
+            List<Policy> changed = databaseGuard.call(() -> repo.findChangedSince(watermark));
+            long total = databaseGuard.call(() -> repo.count());
+            if (changed.isEmpty() && total == current.policies.length) return;
+
+            Map<String, Policy> docs = new LinkedHashMap<>(current.byId);
+            changed.forEach(p -> docs.put(p.getId(), p));
+            if (docs.size() != total) {
+                log.info("🔄 Policy count changed ({} → {}), full reload", docs.size(), total);
+                fullReload();
+                return;
+            }
+
+            install(docs.values());
+            log.info("🔄 Policy index refreshed incrementally: {} changed", changed.size());
+        } catch (Exception e) {
+            log.error("❌ Policy index refresh failed: {}", e.getMessage());
+        }
+    }
+
+    public Optional<Policy> findByCode(String code) {
+        return Optional.ofNullable(snapshot.byCode.get(code));
+    }
+
+    /**
+     * Top {@code limit} chính sách theo điểm BM25 (điểm của chính sách = điểm chunk tốt nhất;
+     * chỉ những chính sách có ít nhất một term khớp).
+     */
+    public List<Policy> search(String q, int limit) {
+        Snapshot s = snapshot;
+        double[] chunkScores = s.score(q);
+        if (chunkScores == null) return List.of();
+
+        double[] policyScores = new double[s.policies.length];
+        for (int c = 0; c < chunkScores.length; c++) {
+            int p = s.chunks[c].policy;
+            policyScores[p] = Math.max(policyScores[p], chunkScores[c]);
+        }
+        List<Policy> result = new ArrayList<>();
+        for (int p : topK(policyScores, Math.max(1, limit))) {
+            result.add(s.policies[p]);
+        }
+        return result;
+    }
+
+    /**
+     * Các đoạn liên quan nhất trên toàn bộ chính sách: tối đa {@code maxPassages} đoạn
+     * và tổng số token ước lượng không vượt {@code tokenBudget}.
+     */
+    public List<PolicyPassage> searchPassages(String q, int maxPassages, int tokenBudget) {
+        return snapshot.passages(q, maxPassages, tokenBudget);
+    }
+
+    /**
+     * Các đoạn của một chính sách: xếp theo độ liên quan với {@code q} nếu có,
+     * ngược lại lấy theo thứ tự trong văn bản (phần đầu chính sách).
+     */
+    public Optional<List<PolicyPassage>> passagesByCode(String code, String q, int maxPassages, int tokenBudget) {
+        Snapshot s = snapshot;
+        return Optional.ofNullable(s.policyIndex.get(code))
+                .map(p -> s.passagesOf(p, q, maxPassages, tokenBudget));
+    }
+
+    /**
+     * Như {@link #searchPassages} nhưng trên một tập chính sách bất kỳ (VD: kết quả đọc từ DB
+     * khi index chưa sẵn sàng). Chunk và index tạm được dựng ngay trong lời gọi.
+     */
+    public List<PolicyPassage> rankPassages(Collection<Policy> policies, String q, int maxPassages, int tokenBudget) {
+        return Snapshot.build(policies, chunkMaxTokens).passages(q, maxPassages, tokenBudget);
+    }
+
+    public List<PolicyPassage> passagesFor(Policy policy, String q, int maxPassages, int tokenBudget) {
+        return Snapshot.build(List.of(policy), chunkMaxTokens).passagesOf(0, q, maxPassages, tokenBudget);
+    }
+
+    /** Chỉ số các phần tử có điểm > 0, giảm dần theo điểm, tối đa {@code limit}. */
+    private static int[] topK(double[] scores, int limit) {
+        Integer[] order = new Integer[scores.length];
+        int n = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0) order[n++] = i;
+        }
+        Arrays.sort(order, 0, n, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        int[] result = new int[Math.min(limit, n)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = order[i];
+        }
+        return result;
+    }
+
+    /**
+     * Lấy các chunk theo thứ tự cho đến khi hết số lượng hoặc hết ngân sách token.
+     * Chunk đầu tiên luôn được trả (cắt bớt nếu một mình nó đã vượt ngân sách).
+     */
+    private static List<PolicyPassage> withinBudget(Snapshot s, int[] chunkIds, int maxPassages, int tokenBudget) {
+        List<PolicyPassage> result = new ArrayList<>();
+        int used = 0;
+        for (int id : chunkIds) {
+            if (result.size() >= Math.max(1, maxPassages)) break;
+            Chunk c = s.chunks[id];
+            int cost = TokenEstimator.estimate(c.text) + TokenEstimator.estimate(c.heading);
+            if (used + cost > tokenBudget) {
+                if (!result.isEmpty()) continue;
+                String clipped = c.text.substring(0, Math.min(c.text.length(), TokenEstimator.maxChars(tokenBudget)));
+                result.add(s.passage(c, clipped));
+                break;
+            }
+            used += cost;
+            result.add(s.passage(c, c.text));
+        }
+        return result;
+    }
+
+    private synchronized void fullReload() {
+        List<Policy> all = databaseGuard.call(() -> repo.findAll());
+        install(all);
+        ready = true;
+        log.info("✅ Policy index loaded: {} policies, {} chunks, {} terms",
+                snapshot.policies.length, snapshot.chunks.length, snapshot.postings.size());
+    }
+
+    private void install(Collection<Policy> policies) {
+        Snapshot next = Snapshot.build(policies, chunkMaxTokens);
+        LocalDateTime mark = EPOCH;
+        for (Policy p : next.policies) {
+            if (p.getModifiedTime() != null && p.getModifiedTime().isAfter(mark)) mark = p.getModifiedTime();
+            if (p.getCreatedTime() != null && p.getCreatedTime().isAfter(mark)) mark = p.getCreatedTime();
+        }
+        this.snapshot = next;
+        this.watermark = mark;
+    }
+
+    private record Postings(int[] docs, int[] tfs) {
+    }
+
+    /** Một chunk của chính sách thứ {@code policy} trong snapshot. */
+    private record Chunk(int policy, String heading, String text) {
+    }
+
+    private static final class Snapshot {
+        final Policy[] policies;
+        final Chunk[] chunks;
+        /** Chunk của chính sách i nằm trong [chunkStart[i], chunkStart[i + 1]). */
+        final int[] chunkStart;
+        final int[] lengths;
+        final double avgLength;
+        final Map<String, Postings> postings;
+        final Map<String, Policy> byId;
+        final Map<String, Policy> byCode;
+        final Map<String, Integer> policyIndex;
+
+        private Snapshot(Policy[] policies, Chunk[] chunks, int[] chunkStart, int[] lengths, double avgLength,
+                         Map<String, Postings> postings) {
+            this.policies = policies;
+            this.chunks = chunks;
+            this.chunkStart = chunkStart;
+            this.lengths = lengths;
+            this.avgLength = avgLength;
+            this.postings = postings;
+            this.byId = new LinkedHashMap<>();
+            this.byCode = new HashMap<>();
+            this.policyIndex = new HashMap<>();
+            for (int i = 0; i < policies.length; i++) {
+                Policy p = policies[i];
+                byId.put(p.getId(), p);
+                byCode.put(p.getCode(), p);
+                policyIndex.put(p.getCode(), i);
+            }
+        }
+
+        /** Điểm BM25 của từng chunk, hoặc {@code null} nếu không term nào của truy vấn có trong index. */
+        double[] score(String q) {
+            if (chunks.length == 0 || q == null || q.isBlank()) return null;
+
+            double[] scores = new double[chunks.length];
+            boolean any = false;
+            for (String term : new LinkedHashSet<>(VietnameseTokenizer.tokenize(q))) {
+                Postings p = postings.get(term);
+                if (p == null) continue;
+                any = true;
+
+                int df = p.docs.length;
+                double idf = Math.log(1 + (chunks.length - df + 0.5) / (df + 0.5));
+                for (int i = 0; i < df; i++) {
+                    int doc = p.docs[i];
+                    int tf = p.tfs[i];
+                    double norm = K1 * (1 - B + B * lengths[doc] / avgLength);
+                    scores[doc] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            return any ? scores : null;
+        }
+
+        List<PolicyPassage> passages(String q, int maxPassages, int tokenBudget) {
+            double[] scores = score(q);
+            if (scores == null) return List.of();
+            return withinBudget(this, topK(scores, Math.max(1, maxPassages) * 4), maxPassages, tokenBudget);
+        }
+
+        List<PolicyPassage> passagesOf(int policy, String q, int maxPassages, int tokenBudget) {
+            int from = chunkStart[policy];
+            int to = chunkStart[policy + 1];
+            double[] all = score(q);
+
+            int[] ids;
+            if (all == null) {
+                ids = new int[to - from];
+                for (int i = 0; i < ids.length; i++) ids[i] = from + i;
+            } else {
+                double[] local = Arrays.copyOfRange(all, from, to);
+                ids = topK(local, local.length);
+                if (ids.length == 0) {
+                    // Không đoạn nào khớp truy vấn → trả phần đầu chính sách
+                    ids = new int[to - from];
+                    for (int i = 0; i < ids.length; i++) ids[i] = i;
+                }
+                for (int i = 0; i < ids.length; i++) ids[i] += from;
+            }
+            return withinBudget(this, ids, maxPassages, tokenBudget);
+        }
+
+        PolicyPassage passage(Chunk c, String text) {
+            Policy p = policies[c.policy];
+            return new PolicyPassage(p.getCode(), p.getTitle(), p.getVersion(), c.heading, text);
+        }
+
+        static Snapshot build(Collection<Policy> source, int chunkMaxTokens) {
+            Policy[] policies = source.toArray(new Policy[0]);
+            List<Chunk> chunkList = new ArrayList<>();
+            int[] chunkStart = new int[policies.length + 1];
+            for (int i = 0; i < policies.length; i++) {
+                chunkStart[i] = chunkList.size();
+                for (MarkdownChunker.Chunk c : MarkdownChunker.split(policies[i].getContentMarkdown(), chunkMaxTokens)) {
+                    chunkList.add(new Chunk(i, c.heading(), c.text()));
+                }
+                if (chunkList.size() == chunkStart[i]) {
+                    // Chính sách rỗng vẫn có một chunk để title tìm được
+                    chunkList.add(new Chunk(i, "", ""));
+                }
+            }
+            chunkStart[policies.length] = chunkList.size();
+            Chunk[] chunks = chunkList.toArray(new Chunk[0]);
+
+            int[] lengths = new int[chunks.length];
+            Map<String, List<int[]>> building = new HashMap<>();
+            long totalLength = 0;
+
+            for (int i = 0; i < chunks.length; i++) {
+                Map<String, Integer> tf = new HashMap<>();
+                for (String t : VietnameseTokenizer.tokenize(policies[chunks[i].policy].getTitle())) {
+                    tf.merge(t, TITLE_BOOST, Integer::sum);
+                }
+                for (String t : VietnameseTokenizer.tokenize(chunks[i].heading)) {
+                    tf.merge(t, TITLE_BOOST, Integer::sum);
+                }
+                for (String t : VietnameseTokenizer.tokenize(chunks[i].text)) {
+                    tf.merge(t, 1, Integer::sum);
+                }
+                for (Map.Entry<String, Integer> e : tf.entrySet()) {
+                    lengths[i] += e.getValue();
+                    building.computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(new int[]{i, e.getValue()});
+                }
+                totalLength += lengths[i];
+            }
+
+            Map<String, Postings> postings = new HashMap<>(building.size() * 2);
+            building.forEach((term, list) -> {
+                int[] d = new int[list.size()];
+                int[] f = new int[list.size()];
+                for (int i = 0; i < list.size(); i++) {
+                    d[i] = list.get(i)[0];
+                    f[i] = list.get(i)[1];
+                }
+                postings.put(term, new Postings(d, f));
+            });
+
+            double avg = chunks.length == 0 ? 1.0 : Math.max(1.0, (double) totalLength / chunks.length);
+            return new Snapshot(policies, chunks, chunkStart, lengths, avg, postings);
+        }
+    }
+}
@@ -1,39 +1,162 @@
 // src/main/java/iuh/fit/se/service/PolicySimpleService.java
 package iuh.fit.se.service;
 
+import iuh.fit.se.dto.PolicyPassage;
+import iuh.fit.se.dto.response.PolicyListVersion;
+import iuh.fit.se.dto.response.PolicyPageResponse;
+import iuh.fit.se.dto.response.PolicySummaryResponse;
 import iuh.fit.se.entity.Policy;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
 import iuh.fit.se.repository.PolicyRepository;
+import iuh.fit.se.util.BlockingCallGuard;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class PolicySimpleService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final PolicyRepository repo;
+    private final BlockingCallGuard databaseGuard;
+    private final PolicySearchIndex searchIndex;
 
     public Optional<Policy> getByCode(String code) {
-        return repo.findByCode(code);
+        if (searchIndex.isReady()) {
+            return searchIndex.findByCode(code);
+        }
+        return databaseGuard.call(() -> repo.findByCode(code));
     }
 
     public List<Policy> search(String q, int limit, boolean useFulltext) {
         if (q == null || q.isBlank()) return List.of();
+        // ✅ Ưu tiên index BM25 trong bộ nhớ (không round trip DB, xếp hạng theo độ liên quan)
+        if (searchIndex.isReady()) {
+            return searchIndex.search(q, limit);
+        }
         if (useFulltext) {
-            return repo.searchFulltext(q, Math.max(1, limit));
+            return databaseGuard.call(() -> repo.searchFulltext(q, Math.max(1, limit)));
         }
-        var all = repo.searchLike(q);
+        var all = databaseGuard.call(() -> repo.searchLike(q));
         return all.stream().limit(Math.max(1, limit)).toList();
     }
 
+    /**
+     * Các đoạn chính sách liên quan nhất với {@code q}, giới hạn số đoạn và ngân sách token.
+     * Khi index chưa sẵn sàng: lấy chính sách từ DB rồi chấm điểm chunk ngay trên tập đó.
+     */
+    public List<PolicyPassage> searchPassages(String q, int maxPassages, int tokenBudget) {
+        if (q == null || q.isBlank()) return List.of();
+        if (searchIndex.isReady()) {
+            return searchIndex.searchPassages(q, maxPassages, tokenBudget);
+        }
+        List<Policy> candidates = search(q, Math.max(1, maxPassages), true);
+        return searchIndex.rankPassages(candidates, q, maxPassages, tokenBudget);
+    }
+
+    /**
+     * Các đoạn của một chính sách; {@code q} (tuỳ chọn) dùng để chọn đoạn liên quan.
+     */
+    public Optional<List<PolicyPassage>> passagesByCode(String code, String q, int maxPassages, int tokenBudget) {
+        if (searchIndex.isReady()) {
+            return searchIndex.passagesByCode(code, q, maxPassages, tokenBudget);
+        }
+        return databaseGuard.call(() -> repo.findByCode(code))
+                .map(p -> searchIndex.passagesFor(p, q, maxPassages, tokenBudget));
+    }
+
     public List<Policy> listAllNewestFirst(int limit) {
-        return repo.findAll().stream()
-                .sorted(Comparator.comparing(Policy::getEffectiveDate).reversed())
-                .limit(Math.max(1, limit))
-                .toList();
+        // ✅ ORDER BY + LIMIT ở phía DB thay vì findAll() rồi sort trong Java
+        return databaseGuard.call(() -> repo.findAllOrderByEffectiveDateDesc(Math.max(1, limit)));
+    }
+
+    /**
+     * Trang tóm tắt (không có contentMarkdown), keyset theo (effectiveDate DESC, id DESC).
+     */
+    public PolicyPageResponse<PolicySummaryResponse> pageSummaries(String cursor, int limit) {
+        int size = clampPageSize(limit);
+        Cursor after = Cursor.decode(cursor);
+        // Lấy dư 1 dòng để biết còn trang sau hay không
+        Pageable page = Pageable.ofSize(size + 1);
+        List<PolicySummaryResponse> rows = databaseGuard.call(() -> after == null
+                ? repo.findSummaryPageFirst(page)
+                : repo.findSummaryPageAfter(after.effectiveDate(), after.id(), page));
+        return toPage(rows, size, r -> new Cursor(r.getEffectiveDate(), r.getId()));
     }
+
+    /**
+     * Trang đầy đủ (kèm contentMarkdown), cùng thứ tự và cursor với {@link #pageSummaries}.
+     */
+    public PolicyPageResponse<Policy> pageFull(String cursor, int limit) {
+        int size = clampPageSize(limit);
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = Pageable.ofSize(size + 1);
+        List<Policy> rows = databaseGuard.call(() -> after == null
+                ? repo.findPageFirst(page)
+                : repo.findPageAfter(after.effectiveDate(), after.id(), page));
+        return toPage(rows, size, p -> new Cursor(p.getEffectiveDate(), p.getId()));
+    }
+
+    /**
+     * Dấu phiên bản của cả bảng policies (COUNT + MAX thời gian sửa/tạo), dùng làm gốc cho ETag.
+     * Mọi thêm/sửa/xoá đều làm giá trị này đổi.
+     */
+    public String listVersion() {
+        PolicyListVersion v = databaseGuard.call(repo::findListVersion);
+        return v.count() + "-" + epochMillis(v.lastModified()) + "-" + epochMillis(v.lastCreated());
+    }
+
+    private static <T> PolicyPageResponse<T> toPage(List<T> rows, int size, Function<T, Cursor> cursorOf) {
+        boolean hasMore = rows.size() > size;
+        List<T> items = hasMore ? rows.subList(0, size) : rows;
+        String next = hasMore ? cursorOf.apply(items.get(items.size() - 1)).encode() : null;
+        return PolicyPageResponse.<T>builder()
+                .items(items)
+                .nextCursor(next)
+                .limit(size)
+                .build();
+    }
+
+    private static int clampPageSize(int limit) {
+        return Math.max(1, Math.min(MAX_PAGE_SIZE, limit));
+    }
+
+    private static long epochMillis(LocalDateTime t) {
+        return t == null ? 0 : t.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /** Cursor dạng base64url của "effectiveDate|id" - client coi như chuỗi mờ. */
+    private record Cursor(LocalDateTime effectiveDate, String id) {
+
+        String encode() {
+            String raw = effectiveDate + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) return null;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                if (sep <= 0 || sep == raw.length() - 1) throw new AppException(ErrorCode.INVALID_ARGUMENT);
+                return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), raw.substring(sep + 1));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new AppException(ErrorCode.INVALID_ARGUMENT);
+            }
+        }
+    }
+
     public List<Policy> getAll() {
-        return repo.findAll();
+        return databaseGuard.call(() -> repo.findAll());
     }
 }
@@ -1,52 +1,67 @@
 package iuh.fit.se.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.dto.PolicyPassage;
 import iuh.fit.se.entity.Policy;
-import lombok.RequiredArgsConstructor;
+import iuh.fit.se.service.tool.ToolResultEncoder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.tool.annotation.Tool;
 import org.springframework.ai.tool.annotation.ToolParam;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class PolicySimpleTool {
 
     private final PolicySimpleService service;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final ToolResultEncoder encoder;
+    private final int maxPassages;
+    private final int tokenBudget;
+
+    public PolicySimpleTool(PolicySimpleService service,
+                            ToolResultEncoder encoder,
+                            @Value("${chat-ai.policy-retrieval.max-passages:4}") int maxPassages,
+                            @Value("${chat-ai.policy-retrieval.token-budget:800}") int tokenBudget) {
+        this.service = service;
+        this.encoder = encoder;
+        this.maxPassages = Math.max(1, maxPassages);
+        this.tokenBudget = Math.max(64, tokenBudget);
+    }
 
     @Tool(
             name = "policy_getByCode",
-            description = "Lấy chi tiết một chính sách cụ thể theo mã code. " +
+            description = "Lấy các đoạn liên quan của một chính sách cụ thể theo mã code. " +
                     "Ví dụ: PROHIBITED_ITEMS (hàng cấm), SELLER_TOS (điều khoản người bán), BUYER_REFUND (hoàn tiền)"
     )
     public String getByCode(
-            @ToolParam(description = "Mã chính sách (VD: PROHIBITED_ITEMS, SELLER_TOS)") String code
+            @ToolParam(description = "Mã chính sách (VD: PROHIBITED_ITEMS, SELLER_TOS)") String code,
+            @ToolParam(description = "Nội dung cần tra trong chính sách (tuỳ chọn, VD: thời hạn hoàn tiền)",
+                    required = false) String q
     ) {
-        log.info("📜 TOOL CALLED: policy_getByCode(code='{}')", code);
+        log.info("📜 TOOL CALLED: policy_getByCode(code='{}', q='{}')", code, q);
 
         try {
-            Optional<Policy> policyOpt = service.getByCode(code);
+            Optional<List<PolicyPassage>> passagesOpt = service.passagesByCode(code, q, maxPassages, tokenBudget);
 
-            if (policyOpt.isEmpty()) {
+            if (passagesOpt.isEmpty()) {
                 log.warn("⚠️ Policy not found: {}", code);
-                return mapper.writeValueAsString(Map.of(
+                return encoder.encode("policy_getByCode", Map.of(
                         "type", "policy",
                         "error", "not_found",
                         "message", "Không tìm thấy chính sách với mã: " + code
-                ));
+                ), false);
             }
 
-            Policy policy = policyOpt.get();
-            log.info("✅ Policy found: {} ({})", policy.getTitle(), policy.getCode());
+            List<PolicyPassage> passages = passagesOpt.get();
+            log.info("✅ Policy found: {} ({} passages)", code, passages.size());
 
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(Map.of(
+            return encoder.encode("policy_getByCode", Map.of(
                     "type", "policy",
-                    "policy", oneAsMap(policy)
-            ));
+                    "code", code,
+                    "passages", passages.stream().map(this::passageAsMap).toList()
+            ), true);
 
         } catch (Exception e) {
             log.error("❌ Error in policy_getByCode: {}", e.getMessage(), e);
@@ -67,19 +82,19 @@ public class PolicySimpleTool {
         log.info("📜 TOOL CALLED: policy_search(q='{}', limit={})", q, lim);
 
         try {
-            // Sử dụng fulltext search nếu đã cấu hình
-            var list = service.search(q, lim, true);
+            // ✅ Chỉ trả các đoạn liên quan nhất (trong ngân sách token) thay vì toàn bộ markdown
+            var passages = service.searchPassages(q, Math.min(lim, maxPassages), tokenBudget);
 
-            log.info("✅ Found {} policies matching '{}'", list.size(), q);
+            log.info("✅ Found {} passages matching '{}'", passages.size(), q);
 
-            var items = list.stream().map(this::oneAsMap).toList();
+            var items = passages.stream().map(this::passageAsMap).toList();
 
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(Map.of(
+            return encoder.encode("policy_search", Map.of(
                     "type", "policy_list",
                     "query", q,
                     "count", items.size(),
                     "items", items
-            ));
+            ), true);
 
         } catch (Exception e) {
             log.error("❌ Error in policy_search: {}", e.getMessage(), e);
@@ -105,11 +120,11 @@ public class PolicySimpleTool {
 
             var items = list.stream().map(this::oneAsMap).toList();
 
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(Map.of(
+            return encoder.encode("policy_listNewest", Map.of(
                     "type", "policy_list",
                     "count", items.size(),
                     "items", items
-            ));
+            ), true);
 
         } catch (Exception e) {
             log.error("❌ Error in policy_listNewest: {}", e.getMessage(), e);
@@ -119,14 +134,24 @@ public class PolicySimpleTool {
 
     /* ------------ Helper Methods ------------ */
 
+    /** Danh sách chỉ cần thông tin nhận diện; nội dung lấy qua policy_getByCode. */
     private Map<String, Object> oneAsMap(Policy p) {
         return Map.of(
                 "id", p.getId(),
                 "code", p.getCode(),
                 "title", p.getTitle(),
                 "version", p.getVersion(),
-                "effectiveDate", p.getEffectiveDate().toString(),
-                "contentMarkdown", p.getContentMarkdown()
+                "effectiveDate", p.getEffectiveDate().toString()
+        );
+    }
+
+    private Map<String, Object> passageAsMap(PolicyPassage p) {
+        return Map.of(
+                "code", p.code(),
+                "title", p.title(),
+                "version", p.version(),
+                "section", p.section(),
+                "text", p.text()
         );
     }
 }
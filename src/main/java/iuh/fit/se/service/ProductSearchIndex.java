@@ -0,0 +1,359 @@
+package iuh.fit.se.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.dto.ProductSearchPayload;
+import iuh.fit.se.dto.response.ProductItemDeserializer;
+import iuh.fit.se.util.RankFusion;
+import iuh.fit.se.util.VietnameseTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Index Lucene nhúng trong tiến trình cho thẻ sản phẩm (id, tên, giá, giảm giá, ảnh đầu tiên) - bổ sung cho
+ * semantic search của gemini-service:
+ * <ul>
+ *   <li>Hybrid: kết quả semantic (đã qua ngưỡng) và kết quả từ khoá được gộp bằng Reciprocal Rank Fusion
+ *   ({@link RankFusion}) - truy vấn mã / thương hiệu chính xác vốn yếu với embedding được kéo lên. Sản phẩm chỉ
+ *   có ở phía từ khoá phải khớp đủ mọi âm tiết (hoặc đúng id) mới được chen vào; khớp một phần chỉ đẩy hạng
+ *   sản phẩm semantic, không thêm thẻ mà semantic đã lọc bỏ.</li>
+ *   <li>Fallback: Flask không trả kết quả, breaker mở hoặc quá thời gian → vẫn trả sản phẩm khớp từ khoá.</li>
+ * </ul>
+ * Nguồn dữ liệu: file export catalog (mongoexport của collection products, JSON array hoặc mỗi dòng một
+ * document - cùng định dạng {@link ProductItemDeserializer} đọc từ Flask) nạp lúc khởi động, cộng với các
+ * sản phẩm xuất hiện trong kết quả semantic search (học dần, ghi ở thread nền).
+ *
+ * <p>Tên được tách bằng {@link VietnameseTokenizer} (bỏ dấu + bigram âm tiết) giống index chính sách.
+ * {@code path} rỗng → index trên heap; có giá trị → lưu trên đĩa, giữ được qua lần khởi động sau.
+ * Metric: {@code chat.product.search{source=semantic|hybrid|lexical|none}}, {@code chat.product.index.docs}.
+ */
+@Slf4j
+@Component
+public class ProductSearchIndex implements AutoCloseable {
+
+    private static final String[] SOURCES = {"semantic", "hybrid", "lexical", "none"};
+    private static final String F_ID = "id";
+    private static final String F_NAME = "name";
+    private static final String F_DISPLAY_NAME = "display_name";
+    private static final String F_PRICE = "price";
+    private static final String F_DISCOUNT = "discount";
+    private static final String F_IMAGE = "image";
+    private static final float BIGRAM_BOOST = 1.5f;
+    private static final float ID_BOOST = 4f;
+    private static final int IMPORT_COMMIT_EVERY = 10_000;
+
+    private final boolean enabled;
+    private final boolean persistent;
+    private final String importFile;
+    private final boolean learnFromResults;
+    private final int candidates;
+    private final int rrfK;
+    private final double minTermMatch;
+    private final ObjectReader catalogReader;
+    private final MeterRegistry meterRegistry;
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searchers;
+    private final ThreadPoolExecutor learner;
+
+    public ProductSearchIndex(ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat-ai.product-index.enabled:true}") boolean enabled,
+                              @Value("${chat-ai.product-index.path:}") String path,
+                              @Value("${chat-ai.product-index.import-file:}") String importFile,
+                              @Value("${chat-ai.product-index.learn-from-results:true}") boolean learnFromResults,
+                              @Value("${chat-ai.product-index.candidates:20}") int candidates,
+                              @Value("${chat-ai.product-index.rrf-k:60}") int rrfK,
+                              @Value("${chat-ai.product-index.min-term-match:0.75}") double minTermMatch) throws IOException {
+        this.enabled = enabled;
+        this.persistent = path != null && !path.isBlank();
+        this.importFile = importFile;
+        this.learnFromResults = learnFromResults;
+        this.candidates = Math.max(1, candidates);
+        this.rrfK = rrfK > 0 ? rrfK : RankFusion.DEFAULT_K;
+        this.minTermMatch = Math.min(1.0, Math.max(0.0, minTermMatch));
+        this.meterRegistry = meterRegistry;
+        this.catalogReader = objectMapper.copy()
+                .registerModule(new SimpleModule().addDeserializer(ProductSearchPayload.Item.class,
+                        new ProductItemDeserializer()))
+                .readerFor(ProductSearchPayload.Item.class);
+
+        this.directory = persistent ? FSDirectory.open(Files.createDirectories(Path.of(path))) : new ByteBuffersDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(new StandardAnalyzer())
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        this.writer = new IndexWriter(directory, config);
+        this.searchers = new SearcherManager(writer, null);
+
+        // Một thread ghi nền; hàng đợi đầy → bỏ lượt học đó (search không bao giờ phải chờ)
+        this.learner = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(256),
+                r -> {
+                    Thread t = new Thread(r, "product-index-learner");
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        for (String source : SOURCES) {
+            Counter.builder("chat.product.search").tag("source", source).register(meterRegistry);
+        }
+        Gauge.builder("chat.product.index.docs", writer, w -> w.getDocStats().numDocs).register(meterRegistry);
+
+        log.info("🔧 Product index: enabled={}, path={}, importFile={}, learnFromResults={}, candidates={}, rrfK={}, docs={}",
+                enabled, persistent ? path : "(heap)", importFile, learnFromResults, candidates, this.rrfK,
+                writer.getDocStats().numDocs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialImport() {
+        if (!enabled || importFile == null || importFile.isBlank()) return;
+        Path file = Path.of(importFile);
+        if (!Files.isRegularFile(file)) {
+            log.warn("⚠️ Product catalog export not found: {}", file);
+            return;
+        }
+        try {
+            importCatalog(file);
+        } catch (Exception e) {
+            log.error("❌ Product catalog import failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Nạp (upsert theo id) toàn bộ file export catalog, đọc stream từng document.
+     *
+     * @return số sản phẩm đã ghi
+     */
+    public synchronized int importCatalog(Path file) throws IOException {
+        long start = System.nanoTime();
+        int count = 0;
+        try (MappingIterator<ProductSearchPayload.Item> items = catalogReader.readValues(file.toFile())) {
+            while (items.hasNextValue()) {
+                if (upsert(items.nextValue()) && ++count % IMPORT_COMMIT_EVERY == 0) {
+                    commit();
+                }
+            }
+        }
+        commit();
+        log.info("📦 Imported {} products from {} in {} ms (index now {} docs)", count, file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), writer.getDocStats().numDocs);
+        return count;
+    }
+
+    /** Ghi các sản phẩm vừa thấy trong kết quả semantic search, ở thread nền. */
+    public void learn(Collection<ProductSearchPayload.Item> items) {
+        if (!enabled || !learnFromResults || items == null || items.isEmpty()) return;
+        List<ProductSearchPayload.Item> copy = List.copyOf(items);
+        try {
+            learner.execute(() -> {
+                try {
+                    boolean changed = false;
+                    for (ProductSearchPayload.Item item : copy) {
+                        changed |= upsert(item);
+                    }
+                    if (changed) searchers.maybeRefresh();
+                } catch (IOException e) {
+                    log.warn("⚠️ Failed to index products from search results: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Product index learner busy, dropping {} products", copy.size());
+        }
+    }
+
+    /**
+     * Thứ hạng cuối cho {@code searchProducts}: semantic (đã lọc ngưỡng, theo thứ tự) gộp với kết quả từ khoá.
+     * Không có kết quả từ khoá → giữ nguyên semantic; semantic rỗng (không có kết quả / dịch vụ lỗi) → từ khoá.
+     */
+    public List<ProductSearchPayload.Item> rank(String query, List<ProductSearchPayload.Item> semantic, int limit) {
+        List<ProductSearchPayload.Item> lexical = search(query, candidates);
+        if (!semantic.isEmpty() && !lexical.isEmpty() && minTermMatch < 1.0) {
+            lexical = admitted(query, semantic, lexical);
+        }
+
+        String source;
+        List<ProductSearchPayload.Item> ranked;
+        if (lexical.isEmpty()) {
+            source = semantic.isEmpty() ? "none" : "semantic";
+            ranked = semantic.stream().limit(limit).toList();
+        } else if (semantic.isEmpty()) {
+            source = "lexical";
+            ranked = lexical.stream().limit(limit).toList();
+        } else {
+            source = "hybrid";
+            ranked = RankFusion.reciprocalRank(List.of(semantic, lexical), ProductSearchIndex::fusionKey, rrfK, limit);
+        }
+        meterRegistry.counter("chat.product.search", "source", source).increment();
+        log.info("🔀 Product ranking: source={}, semantic={}, lexical={}, returned={}",
+                source, semantic.size(), lexical.size(), ranked.size());
+        return ranked;
+    }
+
+    /**
+     * Kết quả từ khoá được tham gia RRF cùng semantic: sản phẩm semantic đã trả (chỉ đổi thứ hạng) hoặc
+     * khớp đủ mọi âm tiết / đúng id. "áo hoodie" không kéo mọi "áo ..." bị semantic loại vào kết quả.
+     */
+    private List<ProductSearchPayload.Item> admitted(String query, List<ProductSearchPayload.Item> semantic,
+                                                     List<ProductSearchPayload.Item> lexical) {
+        Set<Object> keys = new HashSet<>();
+        for (ProductSearchPayload.Item item : semantic) keys.add(fusionKey(item));
+        for (ProductSearchPayload.Item item : search(query, candidates, 1.0)) keys.add(fusionKey(item));
+        return lexical.stream().filter(item -> keys.contains(fusionKey(item))).toList();
+    }
+
+    /** Tìm theo từ khoá trên tên (và khớp chính xác id). Lỗi đọc index → danh sách rỗng. */
+    public List<ProductSearchPayload.Item> search(String query, int limit) {
+        return search(query, limit, minTermMatch);
+    }
+
+    private List<ProductSearchPayload.Item> search(String query, int limit, double termMatch) {
+        if (!enabled || query == null || query.isBlank()) return List.of();
+        Query q = buildQuery(query, termMatch);
+        if (q == null) return List.of();
+
+        try {
+            IndexSearcher searcher = searchers.acquire();
+            try {
+                ScoreDoc[] hits = searcher.search(q, limit).scoreDocs;
+                StoredFields stored = searcher.storedFields();
+                List<ProductSearchPayload.Item> out = new ArrayList<>(hits.length);
+                for (ScoreDoc hit : hits) {
+                    out.add(toItem(stored.document(hit.doc)));
+                }
+                return out;
+            } finally {
+                searchers.release(searcher);
+            }
+        } catch (IOException e) {
+            log.warn("⚠️ Product index search failed: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    public int size() {
+        return writer.getDocStats().numDocs;
+    }
+
+    /**
+     * Âm tiết là điều kiện chính (phải khớp ít nhất {@code termMatch} phần), bigram chỉ cộng điểm;
+     * hoặc cả truy vấn trùng id sản phẩm.
+     */
+    private Query buildQuery(String query, double termMatch) {
+        List<String> syllables = VietnameseTokenizer.syllables(query);
+        if (syllables.isEmpty()) return null;
+
+        Set<String> terms = new LinkedHashSet<>(syllables);
+        BooleanQuery.Builder must = new BooleanQuery.Builder();
+        for (String term : terms) {
+            must.add(new TermQuery(new Term(F_NAME, term)), BooleanClause.Occur.SHOULD);
+        }
+        must.setMinimumNumberShouldMatch(Math.max(1, (int) Math.ceil(terms.size() * termMatch)));
+
+        BooleanQuery.Builder byName = new BooleanQuery.Builder()
+                .add(must.build(), BooleanClause.Occur.MUST);
+        for (String token : new LinkedHashSet<>(VietnameseTokenizer.tokenize(query))) {
+            if (token.indexOf('_') > 0) {
+                byName.add(new BoostQuery(new TermQuery(new Term(F_NAME, token)), BIGRAM_BOOST),
+                        BooleanClause.Occur.SHOULD);
+            }
+        }
+
+        return new BooleanQuery.Builder()
+                .add(byName.build(), BooleanClause.Occur.SHOULD)
+                .add(new BoostQuery(new TermQuery(new Term(F_ID, query.trim())), ID_BOOST), BooleanClause.Occur.SHOULD)
+                .build();
+    }
+
+    private boolean upsert(ProductSearchPayload.Item item) throws IOException {
+        if (item == null || item.id == null || item.id.isBlank()) return false;
+        String name = item.name == null ? "" : item.name;
+
+        Document doc = new Document();
+        doc.add(new StringField(F_ID, item.id, Field.Store.YES));
+        doc.add(new TextField(F_NAME, String.join(" ", VietnameseTokenizer.tokenize(name)), Field.Store.NO));
+        doc.add(new StoredField(F_DISPLAY_NAME, name));
+        doc.add(new StoredField(F_PRICE, item.price == null ? 0.0 : item.price));
+        doc.add(new StoredField(F_DISCOUNT, item.discount == null ? 0.0 : item.discount));
+        if (item.imageUrl != null) doc.add(new StoredField(F_IMAGE, item.imageUrl));
+        writer.updateDocument(new Term(F_ID, item.id), doc);
+        return true;
+    }
+
+    private void commit() throws IOException {
+        if (persistent) writer.commit();
+        searchers.maybeRefresh();
+    }
+
+    private static ProductSearchPayload.Item toItem(Document doc) {
+        ProductSearchPayload.Item item = new ProductSearchPayload.Item();
+        item.id = doc.get(F_ID);
+        item.name = doc.get(F_DISPLAY_NAME);
+        item.price = number(doc.getField(F_PRICE));
+        item.discount = number(doc.getField(F_DISCOUNT));
+        item.imageUrl = doc.get(F_IMAGE);
+        item.url = "/products/" + item.id;
+        return item;
+    }
+
+    private static Double number(IndexableField field) {
+        return field == null || field.numericValue() == null ? 0.0 : field.numericValue().doubleValue();
+    }
+
+    /** Sản phẩm thiếu id không được gộp với nhau. */
+    private static Object fusionKey(ProductSearchPayload.Item item) {
+        return item.id == null || item.id.isEmpty() ? item : item.id;
+    }
+
+    @Override
+    public void close() throws IOException {
+        learner.shutdownNow();
+        searchers.close();
+        if (persistent) writer.commit();
+        writer.close();
+        directory.close();
+    }
+}
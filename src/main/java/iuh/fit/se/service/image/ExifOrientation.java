@@ -0,0 +1,98 @@
+package iuh.fit.se.service.image;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * Đọc tag Orientation (0x0112) trong segment APP1/Exif của JPEG mà không decode ảnh.
+ * ImageIO bỏ qua EXIF nên ảnh chụp dọc từ điện thoại sẽ bị nằm ngang sau khi re-encode nếu không xoay lại.
+ */
+final class ExifOrientation {
+
+    static final int NORMAL = 1;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+
+    private ExifOrientation() {
+    }
+
+    /** Giá trị 1..8 theo chuẩn EXIF; {@link #NORMAL} nếu không phải JPEG, không có EXIF hoặc dữ liệu hỏng. */
+    static int read(byte[] jpeg) {
+        try {
+            return find(jpeg);
+        } catch (IndexOutOfBoundsException e) {
+            return NORMAL;
+        }
+    }
+
+    private static int find(byte[] b) {
+        if (b.length < 4 || (b[0] & 0xFF) != 0xFF || (b[1] & 0xFF) != 0xD8) return NORMAL;
+        int pos = 2;
+        while (pos + 4 <= b.length) {
+            if ((b[pos] & 0xFF) != 0xFF) return NORMAL;
+            int marker = b[pos + 1] & 0xFF;
+            // SOS / EOI: hết phần header, EXIF luôn nằm trước
+            if (marker == 0xDA || marker == 0xD9) return NORMAL;
+            int length = u16(b, pos + 2, false);
+            if (marker == 0xE1 && length >= 8 && isExifHeader(b, pos + 4)) {
+                return fromTiff(b, pos + 10);
+            }
+            pos += 2 + length;
+        }
+        return NORMAL;
+    }
+
+    private static boolean isExifHeader(byte[] b, int p) {
+        return b[p] == 'E' && b[p + 1] == 'x' && b[p + 2] == 'i' && b[p + 3] == 'f' && b[p + 4] == 0 && b[p + 5] == 0;
+    }
+
+    private static int fromTiff(byte[] b, int tiff) {
+        boolean little;
+        if (b[tiff] == 'I' && b[tiff + 1] == 'I') little = true;
+        else if (b[tiff] == 'M' && b[tiff + 1] == 'M') little = false;
+        else return NORMAL;
+
+        int ifd = tiff + (int) u32(b, tiff + 4, little);
+        int entries = u16(b, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (u16(b, entry, little) == TAG_ORIENTATION) {
+                int value = u16(b, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+        }
+        return NORMAL;
+    }
+
+    /**
+     * Phép biến đổi đưa ảnh đã decode (kích thước {@code w}x{@code h}) về đúng chiều hiển thị.
+     * Với orientation 5..8 ảnh kết quả có chiều rộng / cao hoán đổi.
+     */
+    static AffineTransform transform(int orientation, double w, double h) {
+        // (x, y) -> (m00·x + m01·y + m02, m10·x + m11·y + m12)
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // lật ngang
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // xoay 180°
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // lật dọc
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // chuyển vị
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // xoay 90° theo chiều kim đồng hồ
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // chuyển vị ngược
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);   // xoay 90° ngược chiều kim đồng hồ
+            default -> new AffineTransform();
+        };
+    }
+
+    static boolean swapsAxes(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    private static int u16(byte[] b, int p, boolean little) {
+        int b0 = b[p] & 0xFF, b1 = b[p + 1] & 0xFF;
+        return little ? b0 | b1 << 8 : b0 << 8 | b1;
+    }
+
+    private static long u32(byte[] b, int p, boolean little) {
+        long lo = u16(b, little ? p : p + 2, little);
+        long hi = u16(b, little ? p + 2 : p, little);
+        return hi << 16 | lo;
+    }
+}
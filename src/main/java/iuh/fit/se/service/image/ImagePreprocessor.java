@@ -0,0 +1,261 @@
+package iuh.fit.se.service.image;
+
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.util.ByteBudget;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tiền xử lý ảnh cho {@code /chat-with-image}: ảnh điện thoại 5-12 MB được thu về cạnh dài {@code max-edge},
+ * bỏ EXIF và nén JPEG trước khi gửi Flask và vision LLM (ít byte upload, Flask decode nhanh hơn, ít token ảnh).
+ *
+ * <p>Decode/encode tốn CPU nên chạy trên pool riêng có giới hạn (thread + hàng đợi), không chiếm thread
+ * request. Pool đầy, quá {@code timeout} hoặc ảnh không decode được → dùng nguyên ảnh gốc (không làm hỏng request).
+ * Ảnh nhỏ (không phải thu nhỏ) mà encode lại không nhẹ hơn (PNG nhỏ, JPEG đã nén) cũng giữ nguyên ảnh gốc.
+ *
+ * <p>Ảnh gốc chỉ nằm trên heap khi nhỏ và còn ngân sách {@code chat-ai.image-upload.max-in-flight} (tổng byte ảnh
+ * gốc đang giữ trên heap của mọi request); ảnh lớn được giữ trong file tạm và, nếu phải gửi nguyên bản, stream từ đĩa.
+ * Metric: {@code chat.image.bytes{stage=original|prepared}}, {@code chat.image.preprocess{outcome}},
+ * {@code chat.image.upload{storage=memory|disk}}, {@code chat.image.heap.in.use}.
+ */
+@Slf4j
+@Component
+public class ImagePreprocessor implements AutoCloseable {
+
+    private static final String[] OUTCOMES = {"resized", "reencoded", "kept", "unsupported", "rejected", "timeout", "disabled"};
+
+    private final boolean enabled;
+    private final ImageTranscoder transcoder;
+    private final Duration timeout;
+    private final ThreadPoolExecutor pool;
+    private final DistributionSummary originalSize;
+    private final DistributionSummary preparedSize;
+    private final MeterRegistry meterRegistry;
+    private final long maxUploadBytes;
+    private final long inMemoryThreshold;
+    private final ByteBudget heapBudget;
+    private final Path spoolDir;
+
+    public ImagePreprocessor(MeterRegistry meterRegistry,
+                             @Value("${chat-ai.image-preprocess.enabled:true}") boolean enabled,
+                             @Value("${chat-ai.image-preprocess.max-edge:1024}") int maxEdge,
+                             @Value("${chat-ai.image-preprocess.quality:0.85}") float quality,
+                             @Value("${chat-ai.image-preprocess.max-pixels:50000000}") long maxPixels,
+                             @Value("${chat-ai.image-preprocess.threads:0}") int threads,
+                             @Value("${chat-ai.image-preprocess.queue:32}") int queue,
+                             @Value("${chat-ai.image-preprocess.timeout:3s}") Duration timeout,
+                             @Value("${chat-ai.image-upload.max-bytes:15MB}") DataSize maxUploadBytes,
+                             @Value("${chat-ai.image-upload.in-memory-threshold:1MB}") DataSize inMemoryThreshold,
+                             @Value("${chat-ai.image-upload.max-in-flight:64MB}") DataSize maxInFlight,
+                             @Value("${chat-ai.image-upload.spool-dir:${java.io.tmpdir}}") String spoolDir) {
+        this.enabled = enabled;
+        this.transcoder = new ImageTranscoder(maxEdge, quality, maxPixels);
+        this.timeout = timeout;
+        this.meterRegistry = meterRegistry;
+        this.maxUploadBytes = maxUploadBytes.toBytes();
+        this.inMemoryThreshold = inMemoryThreshold.toBytes();
+        this.heapBudget = new ByteBudget("image-upload", maxInFlight.toBytes());
+        this.spoolDir = Path.of(spoolDir);
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)),
+                r -> {
+                    Thread t = new Thread(r, "image-preprocess-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.originalSize = DistributionSummary.builder("chat.image.bytes").baseUnit("bytes")
+                .tag("stage", "original").register(meterRegistry);
+        this.preparedSize = DistributionSummary.builder("chat.image.bytes").baseUnit("bytes")
+                .tag("stage", "prepared").register(meterRegistry);
+        for (String outcome : OUTCOMES) {
+            Counter.builder("chat.image.preprocess").tag("outcome", outcome).register(meterRegistry);
+        }
+        Gauge.builder("chat.image.preprocess.queue", pool, p -> p.getQueue().size()).register(meterRegistry);
+        Gauge.builder("chat.image.heap.in.use", heapBudget, ByteBudget::inUseBytes).baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("🔧 Image preprocess: enabled={}, maxEdge={}, quality={}, threads={}, queue={}, timeout={}",
+                enabled, maxEdge, quality, poolSize, queue, timeout);
+        log.info("🔧 Image upload: maxBytes={}, inMemoryThreshold={}, maxInFlight={}, spoolDir={}",
+                maxUploadBytes, inMemoryThreshold, maxInFlight, this.spoolDir);
+    }
+
+    /**
+     * Đọc ảnh upload đúng một lần và trả bản đã xử lý (hoặc ảnh gốc nếu không xử lý được).
+     * Tương đương {@link #load(MultipartFile)} rồi {@link #prepare(PreparedImage)}.
+     * Người gọi phải đóng {@link PreparedImage} trả về.
+     *
+     * @throws AppException xem {@link #load(MultipartFile)}
+     */
+    public PreparedImage prepare(MultipartFile file) {
+        return prepare(load(file));
+    }
+
+    /**
+     * Đọc ảnh upload đúng một lần, CHƯA xử lý - đủ để tính {@link PreparedImage#sourceSha256()} và tra cache
+     * trước khi decode/resize. Ảnh gốc nhỏ hơn {@code in-memory-threshold} được đọc vào heap nếu ngân sách
+     * {@code max-in-flight} còn chỗ; còn lại ghi ra file tạm (Tomcat đã để part lớn trên đĩa nên thường chỉ là
+     * đổi tên file). Người gọi phải đóng {@link PreparedImage} trả về (hoặc chuyển cho {@link #prepare(PreparedImage)}).
+     *
+     * @throws AppException {@link ErrorCode#FILE_SIZE_EXCEEDED} nếu ảnh vượt {@code max-bytes},
+     *                      {@link ErrorCode#FILE_PROCESSING_ERROR} nếu không đọc được file upload
+     */
+    public PreparedImage load(MultipartFile file) {
+        if (file.getSize() > maxUploadBytes) {
+            log.warn("⚠️ Image upload too large: {} bytes (max {})", file.getSize(), maxUploadBytes);
+            throw new AppException(ErrorCode.FILE_SIZE_EXCEEDED);
+        }
+        PreparedImage original = read(file);
+        originalSize.record(original.size());
+        return original;
+    }
+
+    /**
+     * Thu nhỏ/nén lại ảnh gốc từ {@link #load(MultipartFile)}. Nhận quyền sở hữu {@code original}: nếu xử lý được
+     * thì đóng nó và trả ảnh mới, nếu không thì trả lại chính nó. Người gọi chỉ cần đóng ảnh trả về.
+     */
+    public PreparedImage prepare(PreparedImage original) {
+        PreparedImage prepared = null;
+        if (enabled) {
+            prepared = transcode(original);
+        } else {
+            count("disabled");
+        }
+        if (prepared == null) {
+            prepared = original;
+        } else {
+            original.close();
+        }
+        preparedSize.record(prepared.size());
+        return prepared;
+    }
+
+    private PreparedImage read(MultipartFile file) {
+        try {
+            if (file.getSize() <= inMemoryThreshold) {
+                ByteBudget.Permit permit = heapBudget.tryAcquire(file.getSize());
+                if (permit != null) {
+                    try {
+                        byte[] bytes = file.getBytes();
+                        storage("memory");
+                        return PreparedImage.inMemory(bytes, file.getContentType(),
+                                file.getOriginalFilename(), bytes.length, false, permit);
+                    } catch (IOException | RuntimeException e) {
+                        permit.close();
+                        throw e;
+                    }
+                }
+                log.info("💾 Image heap budget exhausted ({} bytes in use), spooling upload to disk",
+                        heapBudget.inUseBytes());
+            }
+            Path spool = Files.createTempFile(spoolDir, "upload-", ".img");
+            try {
+                // StandardMultipartFile: part.write() → đổi tên file tạm của Tomcat, không copy qua heap
+                file.transferTo(spool.toFile());
+                storage("disk");
+                return PreparedImage.spooled(spool, file.getContentType(), file.getOriginalFilename());
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(spool);
+                throw e;
+            }
+        } catch (IOException e) {
+            log.error("❌ Failed to read image upload: {}", e.getMessage());
+            throw new AppException(ErrorCode.FILE_PROCESSING_ERROR);
+        }
+    }
+
+    private PreparedImage transcode(PreparedImage original) {
+        Future<ImageTranscoder.Result> task;
+        try {
+            task = pool.submit(() -> original.inMemory()
+                    ? transcoder.transcode(original.bytes())
+                    : transcoder.transcode(original.file()));
+        } catch (RejectedExecutionException e) {
+            log.warn("⚠️ Image preprocess queue full, sending original ({} bytes)", original.size());
+            count("rejected");
+            return null;
+        }
+
+        ImageTranscoder.Result result;
+        try {
+            result = task.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            log.warn("⚠️ Image preprocess timed out after {}, sending original", timeout);
+            count("timeout");
+            return null;
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("⚠️ Image preprocess failed: {}", e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+            count("unsupported");
+            return null;
+        }
+
+        if (result == null) {
+            log.info("🖼️ Image not decodable ({}), sending original", original.contentType());
+            count("unsupported");
+            return null;
+        }
+
+        if (!result.resized() && result.bytes().length >= original.size()) {
+            log.debug("🖼️ Re-encoding {}x{} did not shrink it ({} → {} bytes), sending original",
+                    result.width(), result.height(), original.size(), result.bytes().length);
+            count("kept");
+            return null;
+        }
+
+        count(result.resized() ? "resized" : "reencoded");
+        log.info("🖼️ Image preprocessed: {}x{} {} bytes → {}x{} {} bytes",
+                result.sourceWidth(), result.sourceHeight(), original.size(),
+                result.width(), result.height(), result.bytes().length);
+        return PreparedImage.transcoded(result.bytes(), ImageTranscoder.JPEG, jpegName(original.filename()), original);
+    }
+
+    private void storage(String storage) {
+        meterRegistry.counter("chat.image.upload", "storage", storage).increment();
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("chat.image.preprocess", "outcome", outcome).increment();
+    }
+
+    private static String jpegName(String filename) {
+        if (filename == null || filename.isBlank()) return "image.jpg";
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + ".jpg";
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,150 @@
+package iuh.fit.se.service.image;
+
+import iuh.fit.se.dto.ProductSearchPayload;
+import iuh.fit.se.util.SingleFlightCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Cache kết quả tìm kiếm theo ảnh.
+ * <ul>
+ *   <li>Tầng 1: SHA-256 của ảnh upload gốc + topK + minSimilarity (ảnh upload lại / retry) - tra được bằng
+ *   {@link #getIfPresent} trước khi thu nhỏ ảnh.</li>
+ *   <li>Tầng 2 (tuỳ chọn): dHash - ảnh bị nén lại hoặc resize vẫn trúng nếu khoảng cách Hamming
+ *   không vượt quá {@code max-distance}.</li>
+ * </ul>
+ * Dung lượng được giới hạn theo số byte ước lượng của payload.
+ */
+@Slf4j
+@Component
+public class ImageSearchCache {
+
+    private final SingleFlightCache<String, ProductSearchPayload> cache;
+    private final boolean perceptualEnabled;
+    private final int maxDistance;
+    private final Map<String, PerceptualEntry> perceptualIndex;
+    private final LongAdder perceptualHits = new LongAdder();
+    private final LongAdder earlyHits = new LongAdder();
+
+    public ImageSearchCache(MeterRegistry meterRegistry,
+                            @Value("${chat-ai.image-cache.max-size:16MB}") DataSize maxSize,
+                            @Value("${chat-ai.image-cache.ttl:30m}") Duration ttl,
+                            @Value("${chat-ai.image-cache.perceptual.enabled:false}") boolean perceptualEnabled,
+                            @Value("${chat-ai.image-cache.perceptual.max-distance:6}") int maxDistance,
+                            @Value("${chat-ai.image-cache.perceptual.max-entries:4096}") int maxEntries) {
+        this.cache = SingleFlightCache.<String, ProductSearchPayload>byWeight(
+                "image-search", maxSize.toBytes(), ImageSearchCache::estimateBytes, ttl).bindTo(meterRegistry);
+        this.perceptualEnabled = perceptualEnabled;
+        this.maxDistance = maxDistance;
+        this.perceptualIndex = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PerceptualEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        FunctionCounter.builder("chat.cache.requests", perceptualHits, LongAdder::sum)
+                .tag("cache", "image-search")
+                .tag("result", "perceptual_hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("chat.cache.requests", earlyHits, LongAdder::sum)
+                .tag("cache", "image-search")
+                .tag("result", "hit_before_preprocess")
+                .register(meterRegistry);
+
+        log.info("🔧 Image search cache: maxSize={}, ttl={}, perceptual={} (maxDistance={})",
+                maxSize, ttl, perceptualEnabled, maxDistance);
+    }
+
+    /**
+     * Chỉ tra tầng 1 (không gọi upstream, không decode ảnh): dùng ngay sau khi đọc upload để ảnh đã từng tìm
+     * không phải qua {@code ImagePreprocessor}. {@code null} nếu chưa có.
+     */
+    public ProductSearchPayload getIfPresent(PreparedImage image, int topK, double minSimilarity) {
+        ProductSearchPayload payload = cache.getIfPresent(exactKey(image, topK + "|" + minSimilarity));
+        if (payload != null) earlyHits.increment();
+        return payload;
+    }
+
+    /**
+     * Lấy payload từ cache hoặc gọi {@code loader}. Loader trả {@code null} khi upstream lỗi (không cache).
+     */
+    public ProductSearchPayload get(PreparedImage image, int topK, double minSimilarity,
+                                    Supplier<ProductSearchPayload> loader) {
+        String params = topK + "|" + minSimilarity;
+        String exactKey = exactKey(image, params);
+
+        return cache.get(exactKey, () -> {
+            if (!perceptualEnabled) return loader.get();
+
+            OptionalLong hash = image.inMemory()
+                    ? PerceptualHash.dHash(image.bytes())
+                    : PerceptualHash.dHash(image.file());
+            if (hash.isPresent()) {
+                ProductSearchPayload near = findNear(hash.getAsLong(), params);
+                if (near != null) {
+                    perceptualHits.increment();
+                    log.info("♻️ Image search perceptual cache hit");
+                    return near;
+                }
+            }
+
+            ProductSearchPayload loaded = loader.get();
+            if (loaded != null && hash.isPresent()) {
+                synchronized (perceptualIndex) {
+                    perceptualIndex.put(exactKey, new PerceptualEntry(hash.getAsLong(), params));
+                }
+            }
+            return loaded;
+        });
+    }
+
+    private static String exactKey(PreparedImage image, String params) {
+        return image.sourceSha256() + "|" + params;
+    }
+
+    private ProductSearchPayload findNear(long hash, String params) {
+        String bestKey = null;
+        int best = maxDistance + 1;
+        synchronized (perceptualIndex) {
+            for (Map.Entry<String, PerceptualEntry> e : perceptualIndex.entrySet()) {
+                PerceptualEntry pe = e.getValue();
+                if (!pe.params().equals(params)) continue;
+                int d = PerceptualHash.distance(hash, pe.hash());
+                if (d < best) {
+                    best = d;
+                    bestKey = e.getKey();
+                }
+            }
+        }
+        return bestKey == null ? null : cache.getIfPresent(bestKey);
+    }
+
+    /** Ước lượng số byte trên heap của payload (String UTF-16 + overhead object). */
+    static int estimateBytes(ProductSearchPayload payload) {
+        long bytes = 64 + strBytes(payload.type) + strBytes(payload.message);
+        if (payload.items != null) {
+            for (ProductSearchPayload.Item it : payload.items) {
+                bytes += 96 + strBytes(it.id) + strBytes(it.name) + strBytes(it.url) + strBytes(it.imageUrl);
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    private static long strBytes(String s) {
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+
+    private record PerceptualEntry(long hash, String params) {
+    }
+}
@@ -0,0 +1,156 @@
+package iuh.fit.se.service.image;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Decode một lần → xoay theo EXIF → thu nhỏ về cạnh dài {@code maxEdge} → encode JPEG {@code quality}.
+ * Ảnh ra không còn metadata (ImageIO chỉ ghi JFIF), nền trong suốt được phủ trắng.
+ *
+ * <p>Ảnh có cạnh dài từ 2× đích trở lên được decode có subsampling (bỏ bớt pixel ngay lúc đọc, không dựng
+ * full bitmap 12 MP): cạnh dài sau decode nằm trong [maxEdge, 2·maxEdge), rồi mới thu nhỏ mượt bằng bilinear.
+ * VD ảnh 4032×3024, maxEdge 1024 → bước 3 → decode 1344×1008.
+ */
+final class ImageTranscoder {
+
+    static final String JPEG = "image/jpeg";
+
+    /** Segment APP1 (EXIF) tối đa 64 KB và nằm ngay sau SOI. */
+    private static final int EXIF_HEADER_BYTES = 64 * 1024 + 16;
+
+    private final int maxEdge;
+    private final float quality;
+    private final long maxPixels;
+
+    ImageTranscoder(int maxEdge, float quality, long maxPixels) {
+        this.maxEdge = maxEdge;
+        this.quality = quality;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * @return ảnh đã xử lý, hoặc {@code null} nếu không decode được (định dạng ImageIO không hỗ trợ
+     * như HEIC/WebP, file hỏng) hoặc ảnh vượt {@code maxPixels} - khi đó gửi nguyên ảnh gốc
+     */
+    Result transcode(byte[] source) throws IOException {
+        return transcode(ImageIO.createImageInputStream(new ByteArrayInputStream(source)), source);
+    }
+
+    /** Như {@link #transcode(byte[])} nhưng đọc thẳng từ file (ảnh gốc lớn đã ghi ra đĩa), không nạp vào heap. */
+    Result transcode(Path source) throws IOException {
+        byte[] header;
+        try (InputStream in = Files.newInputStream(source)) {
+            header = in.readNBytes(EXIF_HEADER_BYTES);
+        }
+        return transcode(ImageIO.createImageInputStream(source.toFile()), header);
+    }
+
+    private Result transcode(ImageInputStream source, byte[] header) throws IOException {
+        BufferedImage decoded;
+        int sourceWidth;
+        int sourceHeight;
+        try (ImageInputStream in = source) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                sourceWidth = reader.getWidth(0);
+                sourceHeight = reader.getHeight(0);
+                // Chặn "decompression bomb": header khai kích thước khổng lồ trong file vài KB
+                if ((long) sourceWidth * sourceHeight > maxPixels) return null;
+
+                int step = subsampling(Math.max(sourceWidth, sourceHeight), maxEdge);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+
+        int orientation = ExifOrientation.read(header);
+        BufferedImage output = resize(decoded, orientation);
+        return new Result(encode(output), output.getWidth(), output.getHeight(),
+                sourceWidth, sourceHeight, decoded.getWidth(), decoded.getHeight(),
+                Math.max(output.getWidth(), output.getHeight()) < Math.max(sourceWidth, sourceHeight));
+    }
+
+    /**
+     * Bước subsampling lớn nhất mà cạnh dài sau decode ({@code ceil(longEdge / step)}) vẫn ≥ {@code maxEdge}
+     * (không phải phóng to lại), tức nằm trong [maxEdge, 2·maxEdge).
+     */
+    static int subsampling(int longEdge, int maxEdge) {
+        return Math.max(1, longEdge / Math.max(1, maxEdge));
+    }
+
+    private BufferedImage resize(BufferedImage decoded, int orientation) {
+        boolean swap = ExifOrientation.swapsAxes(orientation);
+        int w = swap ? decoded.getHeight() : decoded.getWidth();
+        int h = swap ? decoded.getWidth() : decoded.getHeight();
+        double scale = Math.min(1.0, (double) maxEdge / Math.max(w, h));
+        int targetW = Math.max(1, (int) Math.round(w * scale));
+        int targetH = Math.max(1, (int) Math.round(h * scale));
+
+        BufferedImage out = new BufferedImage(targetW, targetH, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, targetW, targetH);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            AffineTransform t = AffineTransform.getScaleInstance(scale, scale);
+            t.concatenate(ExifOrientation.transform(orientation, decoded.getWidth(), decoded.getHeight()));
+            g.drawImage(decoded, t, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    private byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param decodedWidth  chiều rộng bitmap thực sự được decode (sau subsampling)
+     * @param decodedHeight chiều cao bitmap thực sự được decode (sau subsampling)
+     * @param resized       ảnh có bị thu nhỏ so với ảnh gốc hay chỉ encode lại
+     */
+    record Result(byte[] bytes, int width, int height, int sourceWidth, int sourceHeight,
+                  int decodedWidth, int decodedHeight, boolean resized) {
+    }
+}
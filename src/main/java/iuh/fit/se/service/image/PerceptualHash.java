@@ -0,0 +1,92 @@
+package iuh.fit.se.service.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.OptionalLong;
+
+/**
+ * Difference hash (dHash) 64 bit: ảnh được thu về 9x8 xám, mỗi bit so sánh hai pixel kề nhau.
+ * Ảnh nén lại / đổi kích thước cho hash gần giống nhau (khoảng cách Hamming nhỏ).
+ */
+public final class PerceptualHash {
+
+    /** Cạnh ngắn sau khi decode có subsampling - đủ cho 9x8, rẻ hơn decode full ảnh rất nhiều. */
+    private static final int DECODE_MIN_EDGE = 64;
+
+    private PerceptualHash() {
+    }
+
+    public static OptionalLong dHash(byte[] imageBytes) {
+        try {
+            return dHash(ImageIO.createImageInputStream(new ByteArrayInputStream(imageBytes)));
+        } catch (IOException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /** Như {@link #dHash(byte[])} nhưng đọc thẳng từ file, không nạp ảnh vào heap. */
+    public static OptionalLong dHash(Path image) {
+        try {
+            return dHash(ImageIO.createImageInputStream(image.toFile()));
+        } catch (IOException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    private static OptionalLong dHash(ImageInputStream source) {
+        try (ImageInputStream in = source) {
+            if (in == null) return OptionalLong.empty();
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return OptionalLong.empty();
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int step = Math.max(1, Math.min(reader.getWidth(0), reader.getHeight(0)) / DECODE_MIN_EDGE);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return OptionalLong.of(dHash(reader.read(0, param)));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    public static long dHash(BufferedImage image) {
+        BufferedImage small = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = small.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, 9, 8, null);
+        } finally {
+            g.dispose();
+        }
+
+        Raster raster = small.getRaster();
+        long bits = 0;
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                bits <<= 1;
+                if (raster.getSample(x, y, 0) > raster.getSample(x + 1, y, 0)) {
+                    bits |= 1;
+                }
+            }
+        }
+        return bits;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
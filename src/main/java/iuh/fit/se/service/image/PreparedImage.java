@@ -0,0 +1,221 @@
+package iuh.fit.se.service.image;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Ảnh upload sau tiền xử lý, dùng chung cho image search (Flask) lẫn vision LLM.
+ * Nội dung nằm trên heap ({@link #bytes()}: ảnh đã thu nhỏ, hoặc ảnh gốc nhỏ) hoặc trong file tạm
+ * ({@link #file()}: ảnh gốc lớn, được stream thẳng từ đĩa khi upload đi - xem {@code StreamingImageUploader}).
+ *
+ * <p>Phải {@link #close()} sau khi dùng xong: xoá file tạm và trả phần ngân sách heap đã giữ.
+ */
+@Slf4j
+public final class PreparedImage implements AutoCloseable {
+
+    private final byte[] bytes;
+    private final Path file;
+    private final long size;
+    private final String contentType;
+    private final String filename;
+    private final long originalBytes;
+    private final boolean transformed;
+    private final AutoCloseable release;
+    private final String sourceSha256;
+    private String sha256;
+
+    private PreparedImage(byte[] bytes, Path file, long size, String contentType, String filename,
+                          long originalBytes, boolean transformed, AutoCloseable release, String sourceSha256) {
+        this.bytes = bytes;
+        this.file = file;
+        this.size = size;
+        this.contentType = contentType;
+        this.filename = filename;
+        this.originalBytes = originalBytes;
+        this.transformed = transformed;
+        this.release = release;
+        this.sourceSha256 = sourceSha256;
+    }
+
+    /**
+     * @param release trả tài nguyên đi kèm (VD: permit của ngân sách heap), có thể null
+     */
+    public static PreparedImage inMemory(byte[] bytes, String contentType, String filename,
+                                         long originalBytes, boolean transformed, AutoCloseable release) {
+        return new PreparedImage(bytes, null, bytes.length, contentType, filename, originalBytes, transformed, release, null);
+    }
+
+    /** Bản đã thu nhỏ/nén lại của {@code original}; giữ SHA-256 của ảnh gốc làm khoá cache (xem {@link #sourceSha256()}). */
+    public static PreparedImage transcoded(byte[] bytes, String contentType, String filename, PreparedImage original) {
+        return new PreparedImage(bytes, null, bytes.length, contentType, filename, original.size(), true, null,
+                original.sourceSha256());
+    }
+
+    /** Ảnh gốc đã ghi ra file tạm; file bị xoá khi {@link #close()}. */
+    public static PreparedImage spooled(Path file, String contentType, String filename) throws IOException {
+        long size = Files.size(file);
+        return new PreparedImage(null, file, size, contentType, filename, size, false, null, null);
+    }
+
+    public boolean inMemory() {
+        return bytes != null;
+    }
+
+    /** Nội dung trên heap, {@code null} nếu ảnh nằm trong file tạm. */
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    /** File tạm chứa ảnh, {@code null} nếu ảnh nằm trên heap. */
+    public Path file() {
+        return file;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String filename() {
+        return filename;
+    }
+
+    public long originalBytes() {
+        return originalBytes;
+    }
+
+    public boolean transformed() {
+        return transformed;
+    }
+
+    public MimeType mimeType() {
+        try {
+            return contentType == null ? MimeTypeUtils.APPLICATION_OCTET_STREAM : MimeTypeUtils.parseMimeType(contentType);
+        } catch (Exception e) {
+            return MimeTypeUtils.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    public InputStream openStream() throws IOException {
+        return inMemory() ? new ByteArrayInputStream(bytes) : Files.newInputStream(file);
+    }
+
+    /** SHA-256 (hex) của nội dung, tính một lần bằng cách đọc stream (không nạp file vào heap). */
+    public synchronized String sha256() {
+        if (sha256 != null) return sha256;
+        try (DigestInputStream in = new DigestInputStream(openStream(), MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            sha256 = HexFormat.of().formatHex(in.getMessageDigest().digest());
+            return sha256;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * SHA-256 của ảnh NGƯỜI DÙNG UPLOAD (trước khi thu nhỏ). Cùng một ảnh upload lại cho cùng giá trị nên
+     * tra được cache image search trước khi tốn công decode/resize/encode; với ảnh chưa xử lý chính là {@link #sha256()}.
+     */
+    public String sourceSha256() {
+        return sourceSha256 != null ? sourceSha256 : sha256();
+    }
+
+    /** Cho {@code Media} của Spring AI. */
+    public Resource asResource() {
+        if (!inMemory()) return new FileSystemResource(file);
+        return new ByteArrayResource(bytes) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+    /** Cho {@code GeminiClient#searchByImageUpload} (Feign multipart, nạp toàn bộ ảnh vào heap). */
+    public MultipartFile asMultipartFile(String partName) {
+        return new MultipartFile() {
+            @Override
+            public String getName() {
+                return partName;
+            }
+
+            @Override
+            public String getOriginalFilename() {
+                return filename;
+            }
+
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return size == 0;
+            }
+
+            @Override
+            public long getSize() {
+                return size;
+            }
+
+            @Override
+            public byte[] getBytes() throws IOException {
+                return inMemory() ? bytes : Files.readAllBytes(file);
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return openStream();
+            }
+
+            @Override
+            public void transferTo(File dest) throws IOException {
+                if (inMemory()) Files.write(dest.toPath(), bytes);
+                else Files.copy(file, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("⚠️ Failed to delete spooled upload {}: {}", file, e.getMessage());
+            }
+        }
+        if (release != null) {
+            try {
+                release.close();
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to release image buffer: {}", e.getMessage());
+            }
+        }
+    }
+}
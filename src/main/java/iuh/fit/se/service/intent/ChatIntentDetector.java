@@ -0,0 +1,108 @@
+package iuh.fit.se.service.intent;
+
+import iuh.fit.se.service.intent.IntentMatcher.Intent;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+
+/**
+ * Phân loại intent của tin nhắn chat (sản phẩm / chính sách / small talk / tìm theo ảnh).
+ * Automaton được biên dịch một lần khi bean khởi tạo.
+ *
+ * <p>Tin nhắn được chuẩn hoá NFC trước khi quét: automaton giữ dấu so khớp theo ký tự dựng sẵn
+ * ("ì" = U+00EC), nên input NFD ("i" + U+0300, hay gặp khi copy từ macOS/iOS) phải được gộp dấu trước.
+ */
+@Component
+public class ChatIntentDetector {
+
+    /**
+     * Âm tiết ngắn mà khi bỏ dấu sẽ trùng với từ rất phổ biến
+     * (bán/bạn, đồ/đó, giá/gia, quần/quan, giày/giây, tủ/từ, đèn/đến, áo/ảo/ao, tìm/tím/tim, ghế/ghé/ghe...)
+     * → so khớp giữ dấu. Cụm nhiều âm tiết chứa chúng ("áo thun", "tìm kiếm") vẫn khớp không dấu.
+     */
+    static final String[] PRODUCT_EXACT = {
+            "bán", "có bán", "mua", "đồ", "giá", "quần", "giày", "váy", "kính", "mũ", "nón",
+            "tủ", "bàn", "đèn", "sách", "tìm", "áo", "ghế", "bếp", "quạt", "giường"
+    };
+
+    static final String[] PRODUCT = {
+            "tìm kiếm", "search", "show", "giới thiệu", "gợi ý", "hiển thị", "xem", "cho tôi xem",
+            "muốn mua", "mua ở đâu", "sản phẩm", "phụ kiện", "bao nhiêu", "giá bao nhiêu", "đặt hàng",
+            "hoodie", "sneaker", "jacket", "shirt", "dress", "túi xách",
+            "đồng hồ", "giày thể thao", "giày cao gót",
+            "quần jean", "áo thun", "áo sơ mi", "áo khoác", "váy cưới",
+            "váy dạ hội", "đồ ngủ", "đồ bơi", "đồ tập gym", "đồ thể thao",
+            "điện thoại", "laptop", "máy tính bảng", "tai nghe",
+            "tivi", "máy ảnh", "máy quay", "đồ gia dụng", "tủ lạnh",
+            "máy giặt", "nồi cơm", "loa", "đồ chơi",
+            "văn phòng phẩm", "mỹ phẩm", "nước hoa", "chăm sóc da",
+            "chăm sóc tóc", "thực phẩm", "đồ uống", "đồ ăn vặt", "thời trang nam",
+            "thời trang nữ", "thời trang trẻ em", "đồ dùng học tập", "đồ dùng nhà bếp",
+            "balo", "vali", "dụng cụ thể thao", "xe đạp", "xe máy", "phụ tùng",
+            "đồ điện tử", "máy lọc nước", "máy hút bụi", "máy lạnh", "máy sưởi",
+            "đồ nội thất", "trang trí nhà cửa",
+            "đồ làm vườn", "cây cảnh", "hạt giống", "phân bón", "dụng cụ làm bếp",
+            "nồi chiên không dầu", "máy xay sinh tố", "máy ép trái cây", "bình giữ nhiệt",
+            "bình nước", "bình sữa", "đồ dùng trẻ em", "xe đẩy", "ghế ăn", "đồ chơi giáo dục"
+    };
+
+    static final String[] POLICY = {
+            "chính sách", "quy định", "điều khoản", "hoàn tiền", "hoàn hàng", "đổi trả", "trả hàng", "đổi hàng",
+            "bảo hành", "vi phạm", "hàng cấm", "cấm bán", "khiếu nại", "tranh chấp", "phí vận chuyển",
+            "vận chuyển", "bảo mật", "quyền riêng tư", "hủy đơn", "huỷ đơn", "người bán", "người mua",
+            "policy", "refund", "return", "terms", "privacy", "warranty", "prohibited items", "seller tos"
+    };
+
+    static final String[] SMALL_TALK_EXACT = {"chào", "chào bạn", "cảm ơn", "cám ơn"};
+
+    static final String[] SMALL_TALK = {
+            "xin chào", "hello", "hi", "hey", "thank you", "thanks", "tạm biệt", "bye",
+            "bạn là ai", "bạn tên gì", "khỏe không", "khoẻ không", "ok", "oke"
+    };
+
+    /** tìm/tím/tim, giống/giọng → giữ dấu như {@link #PRODUCT_EXACT}. */
+    static final String[] IMAGE_SEARCH_EXACT = {"tìm", "giống"};
+
+    static final String[] IMAGE_SEARCH = {
+            "tìm kiếm", "tương tự", "như này", "như hình", "search", "find"
+    };
+
+    private final IntentMatcher matcher = IntentMatcher.builder()
+            .addExact(Intent.PRODUCT, PRODUCT_EXACT)
+            .add(Intent.PRODUCT, PRODUCT)
+            .add(Intent.POLICY, POLICY)
+            .addExact(Intent.SMALL_TALK, SMALL_TALK_EXACT)
+            .add(Intent.SMALL_TALK, SMALL_TALK)
+            .addExact(Intent.IMAGE_SEARCH, IMAGE_SEARCH_EXACT)
+            .add(Intent.IMAGE_SEARCH, IMAGE_SEARCH)
+            .build();
+
+    /** Bitmask các {@link Intent} khớp được trong tin nhắn. */
+    public int detect(String message) {
+        return matcher.scan(nfc(message));
+    }
+
+    /** Tìm sản phẩm nếu có từ khoá sản phẩm và KHÔNG hỏi về chính sách. */
+    public boolean isProductSearch(int mask) {
+        return Intent.PRODUCT.in(mask) && !Intent.POLICY.in(mask);
+    }
+
+    public boolean isPolicy(int mask) {
+        return Intent.POLICY.in(mask);
+    }
+
+    /** Chỉ chào hỏi / cảm ơn / hỏi thăm - không kèm từ khoá sản phẩm hay chính sách → không cần tool. */
+    public boolean isSmallTalk(int mask) {
+        return Intent.SMALL_TALK.in(mask) && !Intent.PRODUCT.in(mask) && !Intent.POLICY.in(mask);
+    }
+
+    public boolean isImageSearch(String message) {
+        return matcher.matches(nfc(message), Intent.IMAGE_SEARCH);
+    }
+
+    private static String nfc(String message) {
+        return message == null || Normalizer.isNormalized(message, Normalizer.Form.NFC)
+                ? message
+                : Normalizer.normalize(message, Normalizer.Form.NFC);
+    }
+}
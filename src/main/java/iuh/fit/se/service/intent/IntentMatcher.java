@@ -0,0 +1,252 @@
+package iuh.fit.se.service.intent;
+
+import iuh.fit.se.util.TextNormalizer;
+
+import java.util.*;
+
+/**
+ * Bộ so khớp nhiều từ khoá kiểu Aho-Corasick, dựng một lần khi khởi động.
+ *
+ * <ul>
+ *   <li>So khớp theo ranh giới từ: mọi ký tự không phải chữ/số được coi là một dấu cách
+ *   (gộp liên tiếp), và mỗi từ khoá được biên dịch thành " từ khoá " nên "có" không còn
+ *   khớp với "cóc" hay "khóc".</li>
+ *   <li>Hai automaton chạy song song trong cùng một lượt quét: một bản bỏ dấu (cho người gõ
+ *   không dấu) và một bản giữ dấu cho các âm tiết ngắn dễ nhầm khi bỏ dấu (bán/bạn, đồ/đó...).</li>
+ *   <li>{@link #scan(CharSequence)} không cấp phát bộ nhớ: chỉ tra bảng và trả về bitmask
+ *   các {@link Intent} khớp được.</li>
+ * </ul>
+ */
+public final class IntentMatcher {
+
+    public enum Intent {
+        PRODUCT, POLICY, SMALL_TALK, IMAGE_SEARCH;
+
+        public int bit() {
+            return 1 << ordinal();
+        }
+
+        public boolean in(int mask) {
+            return (mask & bit()) != 0;
+        }
+    }
+
+    private final Automaton folded;
+    private final Automaton exact;
+
+    private IntentMatcher(Automaton folded, Automaton exact) {
+        this.folded = folded;
+        this.exact = exact;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Quét một lượt qua văn bản, trả về bitmask các intent (xem {@link Intent#in(int)}).
+     */
+    public int scan(CharSequence text) {
+        if (text == null) return 0;
+
+        int mask = 0;
+        int fs = folded.start;
+        int es = exact.start;
+        boolean prevSep = true;
+
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            int fsym = folded.symbolOf(c);
+            if (fsym == Automaton.SKIP) continue;
+
+            if (fsym == Automaton.SEP) {
+                if (prevSep) continue;
+                prevSep = true;
+            } else {
+                prevSep = false;
+            }
+
+            fs = folded.next(fs, fsym);
+            es = exact.next(es, exact.symbolOf(c));
+            mask |= folded.out[fs] | exact.out[es];
+        }
+
+        if (!prevSep) {
+            fs = folded.next(fs, Automaton.SEP);
+            es = exact.next(es, Automaton.SEP);
+            mask |= folded.out[fs] | exact.out[es];
+        }
+        return mask;
+    }
+
+    public boolean matches(CharSequence text, Intent intent) {
+        return intent.in(scan(text));
+    }
+
+    public static final class Builder {
+        private final Map<String, Integer> foldedPatterns = new LinkedHashMap<>();
+        private final Map<String, Integer> exactPatterns = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /** Từ khoá so khớp không phân biệt dấu ("ao hoodie" khớp "áo hoodie"). */
+        public Builder add(Intent intent, String... keywords) {
+            for (String k : keywords) {
+                foldedPatterns.merge(Automaton.compile(k, true), intent.bit(), (a, b) -> a | b);
+            }
+            return this;
+        }
+
+        /** Từ khoá giữ nguyên dấu (chỉ hạ chữ thường). */
+        public Builder addExact(Intent intent, String... keywords) {
+            for (String k : keywords) {
+                exactPatterns.merge(Automaton.compile(k, false), intent.bit(), (a, b) -> a | b);
+            }
+            return this;
+        }
+
+        public IntentMatcher build() {
+            return new IntentMatcher(new Automaton(foldedPatterns, true), new Automaton(exactPatterns, false));
+        }
+    }
+
+    /**
+     * DFA đầy đủ (goto + failure đã được gộp) trên bảng chữ cái thu gọn.
+     * Ký hiệu 0 là dấu cách, 1 là "chữ khác" (không xuất hiện trong từ khoá nào).
+     */
+    private static final class Automaton {
+        static final int SKIP = -1;
+        static final int SEP = 0;
+        static final int OTHER = 1;
+        private static final int TABLE_SIZE = 0x2000;
+
+        final short[] symbols = new short[TABLE_SIZE];
+        final int alphabetSize;
+        final int[] delta;
+        final int[] out;
+        final int start;
+        private final boolean fold;
+
+        Automaton(Map<String, Integer> patterns, boolean fold) {
+            this.fold = fold;
+
+            // 1. Bảng chữ cái thu gọn
+            Map<Character, Integer> alphabet = new HashMap<>();
+            for (String p : patterns.keySet()) {
+                for (int i = 0; i < p.length(); i++) {
+                    char c = p.charAt(i);
+                    if (c != ' ') alphabet.putIfAbsent(c, alphabet.size() + 2);
+                }
+            }
+            this.alphabetSize = alphabet.size() + 2;
+            for (int c = 0; c < TABLE_SIZE; c++) {
+                symbols[c] = (short) classify((char) c, alphabet);
+            }
+
+            // 2. Trie
+            List<int[]> gotoTable = new ArrayList<>();
+            List<Integer> outputs = new ArrayList<>();
+            gotoTable.add(newRow(alphabetSize));
+            outputs.add(0);
+            for (Map.Entry<String, Integer> e : patterns.entrySet()) {
+                String p = e.getKey();
+                int state = 0;
+                for (int i = 0; i < p.length(); i++) {
+                    char c = p.charAt(i);
+                    int sym = c == ' ' ? SEP : alphabet.get(c);
+                    int nextState = gotoTable.get(state)[sym];
+                    if (nextState < 0) {
+                        nextState = gotoTable.size();
+                        gotoTable.get(state)[sym] = nextState;
+                        gotoTable.add(newRow(alphabetSize));
+                        outputs.add(0);
+                    }
+                    state = nextState;
+                }
+                outputs.set(state, outputs.get(state) | e.getValue());
+            }
+
+            // 3. Failure link (BFS) rồi gộp thành DFA đầy đủ
+            int states = gotoTable.size();
+            this.delta = new int[states * alphabetSize];
+            this.out = new int[states];
+            int[] fail = new int[states];
+            for (int s = 0; s < states; s++) out[s] = outputs.get(s);
+
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int a = 0; a < alphabetSize; a++) {
+                int child = gotoTable.get(0)[a];
+                if (child < 0) {
+                    delta[a] = 0;
+                } else {
+                    delta[a] = child;
+                    fail[child] = 0;
+                    queue.add(child);
+                }
+            }
+            while (!queue.isEmpty()) {
+                int s = queue.poll();
+                out[s] |= out[fail[s]];
+                for (int a = 0; a < alphabetSize; a++) {
+                    int child = gotoTable.get(s)[a];
+                    if (child < 0) {
+                        delta[s * alphabetSize + a] = delta[fail[s] * alphabetSize + a];
+                    } else {
+                        delta[s * alphabetSize + a] = child;
+                        fail[child] = delta[fail[s] * alphabetSize + a];
+                        queue.add(child);
+                    }
+                }
+            }
+
+            // Đầu văn bản được coi như vừa gặp một dấu cách
+            this.start = delta[SEP];
+        }
+
+        int symbolOf(char c) {
+            if (c < TABLE_SIZE) return symbols[c];
+            if (TextNormalizer.isCombiningMark(c)) return SKIP;
+            return Character.isLetterOrDigit(c) ? OTHER : SEP;
+        }
+
+        int next(int state, int symbol) {
+            return symbol == SKIP ? state : delta[state * alphabetSize + symbol];
+        }
+
+        private int classify(char c, Map<Character, Integer> alphabet) {
+            if (TextNormalizer.isCombiningMark(c)) return SKIP;
+            if (!Character.isLetterOrDigit(c)) return SEP;
+            char mapped = fold ? TextNormalizer.fold(c) : Character.toLowerCase(c);
+            return alphabet.getOrDefault(mapped, OTHER);
+        }
+
+        /** Chuẩn hoá từ khoá giống hệt cách {@link IntentMatcher#scan} nhìn văn bản, bọc bởi dấu cách. */
+        static String compile(String keyword, boolean fold) {
+            StringBuilder sb = new StringBuilder(keyword.length() + 2).append(' ');
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (TextNormalizer.isCombiningMark(c)) continue;
+                if (!Character.isLetterOrDigit(c)) {
+                    if (sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+                    continue;
+                }
+                if (c >= TABLE_SIZE) {
+                    throw new IllegalArgumentException("Unsupported character in keyword: " + keyword);
+                }
+                sb.append(fold ? TextNormalizer.fold(c) : Character.toLowerCase(c));
+            }
+            if (sb.charAt(sb.length() - 1) != ' ') sb.append(' ');
+            if (sb.length() < 3) {
+                throw new IllegalArgumentException("Empty keyword: '" + keyword + "'");
+            }
+            return sb.toString();
+        }
+
+        private static int[] newRow(int size) {
+            int[] row = new int[size];
+            Arrays.fill(row, -1);
+            return row;
+        }
+    }
+}
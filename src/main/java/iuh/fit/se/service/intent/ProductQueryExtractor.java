@@ -0,0 +1,233 @@
+package iuh.fit.se.service.intent;
+
+import iuh.fit.se.util.TextNormalizer;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Tách truy vấn sản phẩm khỏi tin nhắn chat một cách tất định (không gọi LLM).
+ *
+ * <p>"Shop ơi tìm giúp mình 3 cái áo hoodie đen nhé" → query "áo hoodie đen", limit 3.
+ * Độ tin cậy cao chỉ khi câu bắt đầu bằng một cụm lệnh tìm/mua rõ ràng và phần còn lại ngắn,
+ * không chứa từ mang tính tư vấn/so sánh. Các trường hợp khác để LLM xử lý.
+ */
+@Component
+public class ProductQueryExtractor {
+
+    public record Extraction(String query, Integer limit, double confidence) {
+    }
+
+    static final double HIGH = 1.0;
+    static final double MEDIUM = 0.7;
+    static final double LOW = 0.3;
+
+    private static final int MAX_QUERY_WORDS = 8;
+    private static final int MAX_LIMIT = 10;
+
+    /** Lời gọi đầu câu ("shop ơi", "bạn ơi"...) - bỏ qua trước khi tìm cụm lệnh. */
+    private static final List<String[]> VOCATIVES = phrases(
+            "shop ơi", "ad ơi", "admin ơi", "bạn ơi", "em ơi", "ơi", "alo", "ê"
+    );
+
+    /** Cụm lệnh tìm kiếm/mua đầu câu, dài trước ngắn sau. */
+    private static final List<String[]> COMMANDS = phrases(
+            "tìm giúp mình", "tìm giúp tôi", "tìm giúp em", "tìm cho mình", "tìm cho tôi", "tìm cho em",
+            "tìm kiếm giúp mình", "tìm kiếm", "tìm giúp", "tìm",
+            "cho mình xem", "cho tôi xem", "cho em xem", "cho xem", "xem",
+            "shop có bán", "shop có", "bên mình có bán", "có bán",
+            "mình muốn mua", "tôi muốn mua", "em muốn mua", "muốn mua", "mua",
+            "search", "find", "show"
+    );
+
+    /** Từ đệm cuối câu. */
+    private static final List<String[]> TRAILING = phrases(
+            "giúp mình", "giúp tôi", "giúp em", "cho mình", "cho tôi", "cho em", "được không",
+            "với", "nhé", "nhe", "nha", "ạ", "ah", "đi", "không", "ko", "k", "shop", "ơi", "giúp"
+    );
+
+    /**
+     * Từ cho thấy người dùng cần tư vấn/hỏi cách làm/hỏi đơn hàng chứ không tra cứu sản phẩm → để LLM trả lời.
+     * ("tìm hiểu về thương hiệu này", "mua hàng như thế nào", "xem đơn hàng của tôi")
+     */
+    private static final List<String[]> ADVISORY = phrases(
+            "nên", "so sánh", "khác nhau", "khác gì", "tư vấn", "phù hợp", "tại sao", "vì sao",
+            "review", "đánh giá", "có tốt", "tốt không", "hay không", "hợp với", "nào đẹp", "cái nào", "ở đâu",
+            "tìm hiểu", "như thế nào", "thế nào", "làm sao", "đơn hàng", "của tôi",
+            // "cách" trơn trùng với "phong cách" (tên / mô tả sản phẩm) → chỉ các cụm hỏi cách làm
+            "tìm cách", "cách nào", "cách chọn", "cách giặt", "cách đổi", "cách dùng", "cách sử dụng",
+            "cách phối", "cách mua", "cách đo", "cách bảo quản"
+    );
+
+    /**
+     * Sau lệnh trơn một âm tiết ("tìm", "xem", "mua"...) phải là cụm danh từ; các từ này mở đầu
+     * một động từ/cụm hư từ ("mua hàng", "xem lại", "tìm được") nên không coi là lệnh tra cứu.
+     */
+    private static final Set<String> NOT_NOUN_AFTER_BARE_COMMAND = Set.of(
+            "hiểu", "hàng", "lại", "thử", "thêm", "được", "về", "ở", "như", "sao", "đi", "đâu", "gì"
+    );
+
+    private static final Set<String> COUNT_UNITS = Set.of("san pham", "sp", "cai", "mau", "chiec", "doi", "bo");
+
+    /**
+     * @param message tin nhắn gốc
+     * @return query đã tách và độ tin cậy; rỗng nếu không tách được gì
+     */
+    public Optional<Extraction> extract(String message) {
+        if (message == null || message.isBlank()) return Optional.empty();
+
+        List<String> words = words(Normalizer.normalize(message, Normalizer.Form.NFC));
+        if (words.isEmpty()) return Optional.empty();
+
+        if (containsAny(words, ADVISORY)) {
+            return Optional.of(new Extraction(String.join(" ", words), null, LOW));
+        }
+
+        int from = 0;
+        int to = words.size();
+
+        from = skipPrefix(words, from, to, VOCATIVES);
+        int afterCommand = skipPrefix(words, from, to, COMMANDS);
+        boolean command = afterCommand > from;
+        if (afterCommand == from + 1 && afterCommand < to
+                && NOT_NOUN_AFTER_BARE_COMMAND.contains(words.get(afterCommand))) {
+            command = false;
+        }
+        from = afterCommand;
+
+        // Bỏ từ đệm cuối câu (có thể lặp: "giúp mình nhé")
+        int previous;
+        do {
+            previous = to;
+            to = stripSuffix(words, from, to, TRAILING);
+        } while (to < previous && to > from);
+
+        // Số lượng: "3 cái", "5 sản phẩm", "top 4"
+        Integer limit = null;
+        List<String> query = new ArrayList<>(words.subList(from, to));
+        for (int i = 0; i < query.size(); i++) {
+            String w = query.get(i);
+            if (!isNumber(w)) continue;
+            if (i > 0 && "top".equals(fold(query.get(i - 1)))) {
+                limit = Math.min(MAX_LIMIT, Integer.parseInt(w));
+                query.subList(i - 1, i + 1).clear();
+                break;
+            }
+            int unitLength = countUnitLength(query, i + 1);
+            if (unitLength > 0) {
+                limit = Math.min(MAX_LIMIT, Integer.parseInt(w));
+                // Bỏ số + đơn vị, giữ danh từ phía sau ("3 đôi giày" → "giày")
+                query.subList(i, i + 1 + unitLength).clear();
+                break;
+            }
+        }
+
+        if (query.isEmpty()) return Optional.empty();
+        if (limit != null && limit <= 0) limit = null;
+
+        String q = String.join(" ", query);
+        double confidence;
+        if (command && query.size() <= MAX_QUERY_WORDS) {
+            confidence = HIGH;
+        } else if (query.size() <= 4) {
+            confidence = MEDIUM;
+        } else {
+            confidence = LOW;
+        }
+        return Optional.of(new Extraction(q, limit, confidence));
+    }
+
+    /* ------------ Helper Methods ------------ */
+
+    /** Tách từ theo khoảng trắng/dấu câu, giữ nguyên dấu tiếng Việt, chữ thường. */
+    private static List<String> words(String message) {
+        List<String> out = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (Character.isLetterOrDigit(c) || TextNormalizer.isCombiningMark(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (!current.isEmpty()) {
+                out.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) out.add(current.toString());
+        return out;
+    }
+
+    private static int skipPrefix(List<String> words, int from, int to, List<String[]> phrases) {
+        for (String[] p : phrases) {
+            if (matchesAt(words, from, to, p)) return from + p.length;
+        }
+        return from;
+    }
+
+    private static int stripSuffix(List<String> words, int from, int to, List<String[]> phrases) {
+        for (String[] p : phrases) {
+            int start = to - p.length;
+            if (start > from && matchesAt(words, start, to, p)) {
+                return start;
+            }
+        }
+        return to;
+    }
+
+    private static boolean containsAny(List<String> words, List<String[]> phrases) {
+        for (int i = 0; i < words.size(); i++) {
+            for (String[] p : phrases) {
+                if (matchesAt(words, i, words.size(), p)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Cụm nhiều âm tiết so khớp không dấu (người dùng hay gõ không dấu);
+     * cụm một âm tiết phải khớp cả dấu để tránh nhầm (bán/bạn, mua/múa...).
+     */
+    private static boolean matchesAt(List<String> words, int at, int to, String[] phrase) {
+        if (at + phrase.length > to) return false;
+        boolean folded = phrase.length > 1;
+        for (int i = 0; i < phrase.length; i++) {
+            String w = words.get(at + i);
+            if (folded ? !fold(w).equals(fold(phrase[i])) : !w.equals(phrase[i])) return false;
+        }
+        return true;
+    }
+
+    private static int countUnitLength(List<String> words, int at) {
+        if (at < words.size() && at + 1 < words.size()
+                && COUNT_UNITS.contains(fold(words.get(at)) + " " + fold(words.get(at + 1)))) {
+            return 2;
+        }
+        if (at < words.size() && COUNT_UNITS.contains(fold(words.get(at)))) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static boolean isNumber(String w) {
+        if (w.isEmpty() || w.length() > 2) return false;
+        for (int i = 0; i < w.length(); i++) {
+            if (!Character.isDigit(w.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    private static String fold(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!TextNormalizer.isCombiningMark(c)) sb.append(TextNormalizer.fold(c));
+        }
+        return sb.toString();
+    }
+
+    private static List<String[]> phrases(String... values) {
+        List<String[]> out = new ArrayList<>(values.length);
+        for (String v : values) out.add(v.split(" "));
+        return out;
+    }
+}
@@ -0,0 +1,148 @@
+package iuh.fit.se.service.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.stereotype.Component;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timer cho từng chặng của pipeline chat, đều có percentile histogram (xuất qua {@code /actuator/prometheus}):
+ * <ul>
+ *   <li>{@code chat.stage{stage=intent|postprocess}} - phân loại intent, hậu xử lý phản hồi (pass-through / cắt JSON)</li>
+ *   <li>{@code chat.memory{operation=read|write|clear}} - đọc/ghi chat memory</li>
+ *   <li>{@code chat.llm.request{mode=call|stream}} - mỗi lượt gọi Gemini chat completions</li>
+ *   <li>{@code chat.tool{tool}} - mỗi lần gọi {@code @Tool}</li>
+ *   <li>{@code gemini.request{method}} - mỗi phương thức của GeminiClient (qua gateway)</li>
+ * </ul>
+ * Mọi timer có tag {@code route} ({@link Route}) và {@code outcome} (success / error, riêng LLM có thêm throttled).
+ *
+ * <p>Route của request được truyền xuống chặng sâu hơn qua: ThreadLocal ({@link #route(Route)}, đường call()),
+ * Reactor Context ({@link #routeContext(Route)}, đường stream) và ToolContext ({@link #TOOL_CONTEXT_KEY}).
+ * Chặng không thấy route nào được gắn {@code unknown}.
+ */
+@Component
+public class ChatMetrics {
+
+    public static final String TOOL_CONTEXT_KEY = "chatRoute";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+
+    private static final ThreadLocal<Route> CURRENT = new ThreadLocal<>();
+    private static final Object CONTEXT_KEY = ChatMetrics.class;
+
+    private final MeterRegistry registry;
+
+    public ChatMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public enum Route {
+        PRODUCT, POLICY, CHAT, VISION, UNKNOWN;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    /* ------------ Truyền route ------------ */
+
+    /** Gắn route cho thread hiện tại tới khi đóng scope. */
+    public Scope route(Route route) {
+        Route previous = CURRENT.get();
+        CURRENT.set(route);
+        return () -> {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        };
+    }
+
+    public static Route currentRoute() {
+        Route route = CURRENT.get();
+        return route == null ? Route.UNKNOWN : route;
+    }
+
+    public static Context routeContext(Route route) {
+        return Context.of(CONTEXT_KEY, route);
+    }
+
+    public static Route route(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, Route.UNKNOWN);
+    }
+
+    /** Route trong ToolContext; không có thì lấy theo thread hiện tại. */
+    public static Route route(ToolContext toolContext) {
+        if (toolContext != null && toolContext.getContext().get(TOOL_CONTEXT_KEY) instanceof Route route) {
+            return route;
+        }
+        return currentRoute();
+    }
+
+    /* ------------ Ghi số liệu ------------ */
+
+    public <T> T stage(String stage, Route route, Supplier<T> body) {
+        return time("chat.stage", "stage", stage, route, body);
+    }
+
+    public void stage(String stage, Route route, long nanos) {
+        record("chat.stage", "stage", stage, route, OUTCOME_SUCCESS, nanos);
+    }
+
+    public <T> T tool(String tool, Route route, Supplier<T> body) {
+        return time("chat.tool", "tool", tool, route, body);
+    }
+
+    public <T> T memory(String operation, Route route, Supplier<T> body) {
+        return time("chat.memory", "operation", operation, route, body);
+    }
+
+    public <T> T gemini(String method, Route route, Supplier<T> body) {
+        return time("gemini.request", "method", method, route, body);
+    }
+
+    public void llmRequest(String mode, Route route, String outcome, long nanos) {
+        record("chat.llm.request", "mode", mode, route, outcome, nanos);
+    }
+
+    /** Bọc ChatMemory để đo đọc/ghi theo route của request (tạo cho từng request, rất nhẹ). */
+    public ChatMemory timed(ChatMemory delegate, Route route) {
+        return new TimedChatMemory(delegate, this, route);
+    }
+
+    private <T> T time(String name, String key, String value, Route route, Supplier<T> body) {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = body.get();
+            outcome = OUTCOME_SUCCESS;
+            return result;
+        } finally {
+            record(name, key, value, route, outcome, System.nanoTime() - start);
+        }
+    }
+
+    private void record(String name, String key, String value, Route route, String outcome, long nanos) {
+        Timer.builder(name)
+                .tag(key, value)
+                .tag("route", route.tag())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Scope của {@link #route(Route)}; không ném checked exception. */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,41 @@
+package iuh.fit.se.service.metrics;
+
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+
+import java.util.List;
+
+/** ChatMemory đo thời gian get / add / clear, xem {@link ChatMetrics#timed(ChatMemory, ChatMetrics.Route)}. */
+final class TimedChatMemory implements ChatMemory {
+
+    private final ChatMemory delegate;
+    private final ChatMetrics metrics;
+    private final ChatMetrics.Route route;
+
+    TimedChatMemory(ChatMemory delegate, ChatMetrics metrics, ChatMetrics.Route route) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.route = route;
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        metrics.memory("write", route, () -> {
+            delegate.add(conversationId, messages);
+            return null;
+        });
+    }
+
+    @Override
+    public List<Message> get(String conversationId) {
+        return metrics.memory("read", route, () -> delegate.get(conversationId));
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        metrics.memory("clear", route, () -> {
+            delegate.clear(conversationId);
+            return null;
+        });
+    }
+}
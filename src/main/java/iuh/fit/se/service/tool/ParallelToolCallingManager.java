@@ -0,0 +1,285 @@
+package iuh.fit.se.service.tool;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import iuh.fit.se.service.metrics.ChatMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolCallingManager;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.ToolExecutionException;
+import org.springframework.ai.tool.execution.ToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.observation.DefaultToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationContext;
+import org.springframework.ai.tool.observation.ToolCallingObservationConvention;
+import org.springframework.ai.tool.observation.ToolCallingObservationDocumentation;
+import org.springframework.ai.tool.resolution.ToolCallbackResolver;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thực thi các tool call của MỘT tin nhắn assistant song song thay vì lần lượt trên thread request
+ * (VD: {@code policy_search} + {@code searchProducts} trong cùng một lượt → độ trễ chồng lên nhau, không cộng dồn).
+ * <ul>
+ *   <li>Mỗi tool call chạy trên một virtual thread; tổng số tool đang chạy bị chặn bởi {@code maxConcurrent} -
+ *   hết chỗ thì call đó chờ permit, thời gian chờ tính vào timeout của chính nó.</li>
+ *   <li>Timeout theo từng tool (mặc định {@code defaultTimeout}, ghi đè theo tên tool) áp cho MỌI lượt, kể cả lượt
+ *   chỉ có một tool call hay khi tắt song song (khi đó các call chạy lần lượt). Quá hạn → huỷ call
+ *   và trả thông báo lỗi làm kết quả của call đó, các call khác vẫn giữ kết quả.</li>
+ *   <li>Kết quả trả về đúng thứ tự tool call của model; {@code returnDirect} chỉ khi mọi tool đều returnDirect
+ *   (giống {@code DefaultToolCallingManager}).</li>
+ * </ul>
+ * Mỗi call vẫn được bọc trong observation {@code spring.ai.tool} như {@code DefaultToolCallingManager}
+ * (con của observation đang mở trên thread gọi, dù call chạy trên virtual thread khác).
+ * Metric: {@code chat.tool.batch} (số tool call mỗi lượt), {@code chat.tool.timeout{tool}}.
+ */
+@Slf4j
+public class ParallelToolCallingManager implements ToolCallingManager, AutoCloseable {
+
+    /** Id của tool call đang chạy, đặt vào ToolContext riêng của từng call (xem {@link PassThroughToolCallback}). */
+    public static final String TOOL_CALL_ID_KEY = "chat-ai.tool-call-id";
+
+    private static final ToolCallingObservationConvention OBSERVATION_CONVENTION =
+            new DefaultToolCallingObservationConvention();
+
+    private final ToolCallingManager delegate;
+    private final ToolCallbackResolver toolCallbackResolver;
+    private final ToolExecutionExceptionProcessor exceptionProcessor;
+    private final ChatMetrics metrics;
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final boolean parallel;
+    private final Semaphore permits;
+    private final Duration defaultTimeout;
+    private final Map<String, Duration> timeouts;
+    private final ExecutorService executor;
+    private final DistributionSummary batchSize;
+
+    /**
+     * @param delegate dùng cho {@link #resolveToolDefinitions}
+     * @param timeouts timeout riêng theo tên tool (so khớp bỏ qua hoa/thường và ký tự không phải chữ/số)
+     */
+    public ParallelToolCallingManager(ToolCallingManager delegate,
+                                      ToolCallbackResolver toolCallbackResolver,
+                                      ToolExecutionExceptionProcessor exceptionProcessor,
+                                      ChatMetrics metrics,
+                                      MeterRegistry meterRegistry,
+                                      ObservationRegistry observationRegistry,
+                                      boolean parallel,
+                                      int maxConcurrent,
+                                      Duration defaultTimeout,
+                                      Map<String, Duration> timeouts) {
+        this.delegate = delegate;
+        this.toolCallbackResolver = toolCallbackResolver;
+        this.exceptionProcessor = exceptionProcessor;
+        this.metrics = metrics;
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.parallel = parallel;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.defaultTimeout = defaultTimeout;
+        this.timeouts = new HashMap<>();
+        timeouts.forEach((name, timeout) -> this.timeouts.put(normalize(name), timeout));
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("tool-call-", 0).factory());
+        this.batchSize = DistributionSummary.builder("chat.tool.batch")
+                .description("Tool calls requested in one assistant message")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<ToolDefinition> resolveToolDefinitions(ToolCallingChatOptions chatOptions) {
+        return delegate.resolveToolDefinitions(chatOptions);
+    }
+
+    @Override
+    public ToolExecutionResult executeToolCalls(Prompt prompt, ChatResponse chatResponse) {
+        AssistantMessage assistantMessage = chatResponse.getResults().stream()
+                .map(Generation::getOutput)
+                .filter(AssistantMessage::hasToolCalls)
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No tool call requested by the chat model"));
+
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        batchSize.record(toolCalls.size());
+        boolean concurrent = parallel && toolCalls.size() > 1;
+
+        List<ToolCallback> callbacks = prompt.getOptions() instanceof ToolCallingChatOptions options
+                ? options.getToolCallbacks()
+                : List.of();
+        Map<String, Object> context = toolContext(prompt, assistantMessage);
+        ChatMetrics.Route route = ChatMetrics.route(new ToolContext(context));
+        Observation parent = observationRegistry.getCurrentObservation();
+
+        // Song song: gửi hết các call trước, rồi mới chờ theo thứ tự → các tool chạy chồng lên nhau.
+        // Lần lượt: gửi rồi chờ từng call (vẫn qua virtual thread để áp được timeout).
+        long start = System.nanoTime();
+        List<PendingCall> pending = new ArrayList<>(toolCalls.size());
+        List<ToolResponseMessage.ToolResponse> responses = new ArrayList<>(toolCalls.size());
+        try {
+            boolean returnDirect = true;
+            for (AssistantMessage.ToolCall toolCall : toolCalls) {
+                ToolCallback callback = resolve(toolCall.name(), callbacks);
+                returnDirect &= callback.getToolMetadata().returnDirect();
+                PendingCall call = submit(toolCall, callback, callContext(context, toolCall), route, parent);
+                pending.add(call);
+                if (!concurrent) responses.add(response(call));
+            }
+            if (concurrent) {
+                for (PendingCall call : pending) responses.add(response(call));
+                log.info("🧰 Executed {} tool calls in parallel in {} ms", pending.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+
+            List<Message> history = new ArrayList<>(prompt.getInstructions());
+            history.add(assistantMessage);
+            history.add(new ToolResponseMessage(responses, Map.of()));
+            return ToolExecutionResult.builder()
+                    .conversationHistory(history)
+                    .returnDirect(returnDirect)
+                    .build();
+        } finally {
+            // Lỗi giữa chừng → không để các call còn lại chạy tiếp
+            pending.forEach(call -> call.future().cancel(true));
+        }
+    }
+
+    private ToolResponseMessage.ToolResponse response(PendingCall call) {
+        return new ToolResponseMessage.ToolResponse(call.toolCall().id(), call.toolCall().name(), await(call));
+    }
+
+    private ToolCallback resolve(String toolName, List<ToolCallback> callbacks) {
+        for (ToolCallback callback : callbacks) {
+            if (toolName.equals(callback.getToolDefinition().name())) return callback;
+        }
+        ToolCallback resolved = toolCallbackResolver.resolve(toolName);
+        if (resolved == null) {
+            throw new IllegalStateException("No ToolCallback found for tool name: " + toolName);
+        }
+        return resolved;
+    }
+
+    private PendingCall submit(AssistantMessage.ToolCall toolCall, ToolCallback callback, ToolContext context,
+                               ChatMetrics.Route route, Observation parent) {
+        // Luồng stream() không có input → model đôi khi gửi arguments rỗng
+        String input = StringUtils.hasText(toolCall.arguments()) ? toolCall.arguments() : "{}";
+        long deadline = System.nanoTime() + timeout(toolCall.name()).toNanos();
+
+        Future<String> future = executor.submit(() -> {
+            // Hết chỗ → chờ permit trên virtual thread; quá hạn thì await() đã trả timeout và huỷ (interrupt) call này
+            permits.acquire();
+            // Route của request nằm trong ThreadLocal của thread gọi → gắn lại cho virtual thread
+            try (ChatMetrics.Scope ignored = metrics.route(route)) {
+                return observe(callback, input, context, parent);
+            } finally {
+                permits.release();
+            }
+        });
+        return new PendingCall(toolCall, callback, future, deadline);
+    }
+
+    /** Observation của một tool call, cùng context / convention với {@code DefaultToolCallingManager}. */
+    private String observe(ToolCallback callback, String input, ToolContext context, Observation parent) {
+        ToolCallingObservationContext observationContext = ToolCallingObservationContext.builder()
+                .toolDefinition(callback.getToolDefinition())
+                .toolMetadata(callback.getToolMetadata())
+                .toolCallArguments(input)
+                .build();
+        return ToolCallingObservationDocumentation.TOOL_CALL
+                .observation(null, OBSERVATION_CONVENTION, () -> observationContext, observationRegistry)
+                .parentObservation(parent)
+                .observe(() -> {
+                    String result = callback.call(input, context);
+                    observationContext.setToolCallResult(result);
+                    return result;
+                });
+    }
+
+    private String await(PendingCall call) {
+        String toolName = call.toolCall().name();
+        try {
+            long remaining = call.deadline() - System.nanoTime();
+            return call.future().get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            call.future().cancel(true);
+            Duration timeout = timeout(toolName);
+            log.warn("⏱️ Tool {} timed out after {}", toolName, timeout);
+            Counter.builder("chat.tool.timeout").tag("tool", toolName).register(meterRegistry).increment();
+            return exceptionProcessor.process(new ToolExecutionException(call.callback().getToolDefinition(),
+                    new TimeoutException("Tool " + toolName + " timed out after " + timeout.toMillis() + " ms")));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tool " + toolName, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ToolExecutionException toolError) {
+                return exceptionProcessor.process(toolError);
+            }
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            if (cause instanceof Error error) throw error;
+            throw new IllegalStateException("Tool " + toolName + " failed", cause);
+        }
+    }
+
+    /** Giống {@code DefaultToolCallingManager}: ToolContext của request + lịch sử hội thoại tới tin nhắn assistant. */
+    private static Map<String, Object> toolContext(Prompt prompt, AssistantMessage assistantMessage) {
+        if (!(prompt.getOptions() instanceof ToolCallingChatOptions options)
+                || options.getToolContext() == null || options.getToolContext().isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Object> context = new HashMap<>(options.getToolContext());
+        List<Message> history = new ArrayList<>(prompt.copy().getInstructions());
+        history.add(assistantMessage);
+        context.put(ToolContext.TOOL_CALL_HISTORY, history);
+        return context;
+    }
+
+    /** Mỗi call một ToolContext riêng mang id của nó (ToolContext rỗng giữ nguyên rỗng như mặc định). */
+    private static ToolContext callContext(Map<String, Object> context, AssistantMessage.ToolCall toolCall) {
+        if (context.isEmpty() || toolCall.id() == null) return new ToolContext(context);
+        Map<String, Object> perCall = new HashMap<>(context);
+        perCall.put(TOOL_CALL_ID_KEY, toolCall.id());
+        return new ToolContext(perCall);
+    }
+
+    private Duration timeout(String toolName) {
+        return timeouts.getOrDefault(normalize(toolName), defaultTimeout);
+    }
+
+    private static String normalize(String toolName) {
+        return toolName.replaceAll("[^A-Za-z0-9]", "").toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private record PendingCall(AssistantMessage.ToolCall toolCall, ToolCallback callback,
+                               Future<String> future, long deadline) {
+    }
+}
@@ -0,0 +1,83 @@
+package iuh.fit.se.service.tool;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Bọc một tool để kết quả của nó đi thẳng về server thay vì quay lại LLM:
+ * <ul>
+ *   <li>{@code returnDirect = true}: Spring AI không gửi kết quả tool cho model sinh tiếp,
+ *   phản hồi cuối chính là kết quả tool (metadata {@code toolId} = tool-call id).</li>
+ *   <li>Kết quả được lưu vào {@link ToolResultStash} của request theo tool-call id
+ *   (lấy từ {@link ToolContext#TOOL_CALL_HISTORY}) để ghép vào phản hồi nếu model không trả thẳng.</li>
+ * </ul>
+ */
+public class PassThroughToolCallback implements ToolCallback {
+
+    private static final ToolMetadata RETURN_DIRECT = ToolMetadata.builder().returnDirect(true).build();
+
+    private final ToolCallback delegate;
+
+    public PassThroughToolCallback(ToolCallback delegate) {
+        this.delegate = delegate;
+    }
+
+    public static ToolCallback[] wrap(ToolCallback... callbacks) {
+        return Arrays.stream(callbacks).map(PassThroughToolCallback::new).toArray(ToolCallback[]::new);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return RETURN_DIRECT;
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return delegate.call(toolInput);
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        String result = delegate.call(toolInput, toolContext);
+        ToolResultStash.from(toolContext).ifPresent(stash -> {
+            String name = getToolDefinition().name();
+            stash.put(toolCallId(toolContext, name, toolInput, stash), name, result);
+        });
+        return result;
+    }
+
+    /**
+     * Id của lời gọi này: lấy từ ToolContext nếu {@link ParallelToolCallingManager} đã gắn sẵn, không thì
+     * tìm trong tin nhắn assistant cuối của lịch sử (khớp tên + tham số, bỏ qua những id đã có kết quả).
+     * Không tìm thấy thì dùng id tổng hợp theo tên tool.
+     */
+    private static String toolCallId(ToolContext toolContext, String name, String input, ToolResultStash stash) {
+        if (toolContext.getContext().get(ParallelToolCallingManager.TOOL_CALL_ID_KEY) instanceof String id) {
+            return id;
+        }
+        List<Message> history = toolContext.getToolCallHistory();
+        if (history != null && !history.isEmpty()
+                && history.get(history.size() - 1) instanceof AssistantMessage assistant
+                && assistant.hasToolCalls()) {
+            for (AssistantMessage.ToolCall call : assistant.getToolCalls()) {
+                if (name.equals(call.name()) && Objects.equals(input, call.arguments()) && !stash.contains(call.id())) {
+                    return call.id();
+                }
+            }
+        }
+        return name + "#" + System.identityHashCode(input);
+    }
+}
@@ -0,0 +1,62 @@
+package iuh.fit.se.service.tool;
+
+import iuh.fit.se.util.StreamingJsonExtractor;
+
+/**
+ * Ghép kết quả tool sản phẩm (pass-through) vào câu trả lời của model khi lượt chat KHÔNG trả thẳng -
+ * VD lượt có cả {@code policy_search} lẫn {@code searchProducts}: Spring AI chỉ trả thẳng khi mọi tool đều
+ * returnDirect, nên model vẫn sinh câu trả lời chính sách và phải giữ lại phần đó.
+ * <ul>
+ *   <li>Model không viết gì, hoặc chỉ viết một product_list (kể cả bị cắt/hỏng) → trả nguyên kết quả tool.</li>
+ *   <li>Model có chép một khối product_list → thay đúng khối đó bằng kết quả tool, giữ text xung quanh.</li>
+ *   <li>Model chỉ trả lời bằng text → gắn kết quả tool vào cuối.</li>
+ * </ul>
+ */
+public final class ProductListSplicer {
+
+    private ProductListSplicer() {
+    }
+
+    public static String splice(String modelText, String productList) {
+        if (modelText == null || modelText.isBlank()) return productList;
+
+        StringBuilder out = new StringBuilder(modelText.length() + productList.length() + 2);
+        boolean[] replaced = new boolean[1];
+        StreamingJsonExtractor extractor = new StreamingJsonExtractor(new StreamingJsonExtractor.Listener() {
+            @Override
+            public void onText(String text) {
+                out.append(text);
+            }
+
+            @Override
+            public boolean onObject(String json) {
+                if (isProductList(json)) {
+                    out.append(productList);
+                    replaced[0] = true;
+                    return true;
+                }
+                out.append(json);
+                return false;
+            }
+        });
+        extractor.feed(modelText);
+
+        if (!replaced[0] && isProductList(modelText)) {
+            // product_list bị cắt giữa chừng: bỏ từ dấu '{' mở khối đó, giữ phần text phía trước
+            int open = modelText.lastIndexOf('{', modelText.indexOf("product_list"));
+            String before = open < 0 ? "" : modelText.substring(0, open).strip();
+            return before.isEmpty() ? productList : before + "\n\n" + productList;
+        }
+        extractor.finish();
+
+        if (!replaced[0]) {
+            return modelText.stripTrailing() + "\n\n" + productList;
+        }
+        String spliced = out.toString().strip();
+        return spliced.equals(productList.strip()) ? productList : spliced;
+    }
+
+    private static boolean isProductList(String text) {
+        return text.contains("\"type\"") && text.contains("product_list");
+    }
+}
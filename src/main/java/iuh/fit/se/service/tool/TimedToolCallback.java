@@ -0,0 +1,49 @@
+package iuh.fit.se.service.tool;
+
+import iuh.fit.se.service.metrics.ChatMetrics;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.metadata.ToolMetadata;
+
+import java.util.Arrays;
+
+/**
+ * Bọc một tool để đo mỗi lần gọi: {@code chat.tool{tool, route, outcome}}.
+ * Route lấy từ ToolContext của request (xem {@link ChatMetrics#TOOL_CONTEXT_KEY}).
+ */
+public class TimedToolCallback implements ToolCallback {
+
+    private final ToolCallback delegate;
+    private final ChatMetrics metrics;
+
+    public TimedToolCallback(ToolCallback delegate, ChatMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    public static ToolCallback[] wrap(ChatMetrics metrics, ToolCallback... callbacks) {
+        return Arrays.stream(callbacks).map(c -> new TimedToolCallback(c, metrics)).toArray(ToolCallback[]::new);
+    }
+
+    @Override
+    public ToolDefinition getToolDefinition() {
+        return delegate.getToolDefinition();
+    }
+
+    @Override
+    public ToolMetadata getToolMetadata() {
+        return delegate.getToolMetadata();
+    }
+
+    @Override
+    public String call(String toolInput) {
+        return metrics.tool(getToolDefinition().name(), ChatMetrics.currentRoute(), () -> delegate.call(toolInput));
+    }
+
+    @Override
+    public String call(String toolInput, ToolContext toolContext) {
+        return metrics.tool(getToolDefinition().name(), ChatMetrics.route(toolContext),
+                () -> delegate.call(toolInput, toolContext));
+    }
+}
@@ -0,0 +1,165 @@
+package iuh.fit.se.service.tool;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.util.TokenEstimator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mã hoá kết quả tool gửi cho LLM, chọn qua {@code chat-ai.tool-encoding.mode}:
+ * <ul>
+ *   <li>{@code pretty}: JSON thụt lề như cũ (để debug).</li>
+ *   <li>{@code compact}: JSON một dòng, không khoảng trắng.</li>
+ *   <li>{@code table}: như compact, nhưng mảng object ({@code items}, {@code passages}) được đổi thành
+ *   {@code {"columns":[...],"rows":[[...]]}} để không lặp lại tên key ở mỗi phần tử.
+ *   Chỉ áp dụng cho tool mà người gọi cho phép (kết quả sản phẩm còn được trả nguyên cho FE).</li>
+ * </ul>
+ * ObjectWriter được dùng chung (thread-safe). Mỗi lần encode ghi lại số token ước lượng
+ * và số token tiết kiệm so với bản pretty ({@code chat.tool.result.tokens}, {@code chat.tool.result.tokens.saved}).
+ * Bản pretty không được serialize thật: độ dài được ƯỚC LƯỢNG từ JSON compact (xem {@link #estimatePrettyChars});
+ * meter được tạo một lần cho mỗi tool.
+ */
+@Slf4j
+@Component
+public class ToolResultEncoder {
+
+    public enum Mode { PRETTY, COMPACT, TABLE }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectWriter PRETTY = MAPPER.writerWithDefaultPrettyPrinter();
+    private static final ObjectWriter COMPACT = MAPPER.writer();
+    private static final Set<String> TABLE_FIELDS = Set.of("items", "passages");
+    private static final int PRETTY_CHARS_PER_STRUCTURAL = 3;
+
+    private final Mode mode;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ToolMeters> meters = new ConcurrentHashMap<>();
+
+    public ToolResultEncoder(@Value("${chat-ai.tool-encoding.mode:compact}") String mode,
+                             MeterRegistry meterRegistry) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.meterRegistry = meterRegistry;
+        log.info("🔧 Tool result encoding: {}", this.mode);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    /**
+     * @param tool         tên tool (tag của metric)
+     * @param value        kết quả (POJO / Map)
+     * @param tableAllowed cho phép dạng bảng; nếu không, {@code table} được hạ xuống {@code compact}
+     */
+    public String encode(String tool, Object value, boolean tableAllowed) throws JsonProcessingException {
+        String encoded;
+        long prettyChars;
+        switch (mode) {
+            case PRETTY -> {
+                encoded = PRETTY.writeValueAsString(value);
+                prettyChars = encoded.length();
+            }
+            case TABLE -> {
+                encoded = COMPACT.writeValueAsString(value);
+                prettyChars = estimatePrettyChars(encoded);
+                if (tableAllowed) {
+                    // Cây dựng từ chính bản compact (thay cho valueToTree) → có luôn độ dài gốc để ước lượng
+                    encoded = COMPACT.writeValueAsString(toTable(MAPPER.readTree(encoded)));
+                }
+            }
+            default -> {
+                encoded = COMPACT.writeValueAsString(value);
+                prettyChars = estimatePrettyChars(encoded);
+            }
+        }
+        record(tool, TokenEstimator.forChars(prettyChars), TokenEstimator.estimate(encoded));
+        return encoded;
+    }
+
+    private void record(String tool, int prettyTokens, int tokens) {
+        ToolMeters m = meters.computeIfAbsent(tool, t -> new ToolMeters(
+                DistributionSummary.builder("chat.tool.result.tokens")
+                        .tag("tool", t)
+                        .baseUnit("tokens")
+                        .register(meterRegistry),
+                Counter.builder("chat.tool.result.tokens.saved")
+                        .tag("tool", t)
+                        .baseUnit("tokens")
+                        .register(meterRegistry)));
+        m.tokens().record(tokens);
+        m.saved().increment(Math.max(0, prettyTokens - tokens));
+        log.info("📏 {} result ≈ {} tokens ({} as pretty JSON, saved {})",
+                tool, tokens, prettyTokens, Math.max(0, prettyTokens - tokens));
+    }
+
+    private record ToolMeters(DistributionSummary tokens, Counter saved) {
+    }
+
+    /**
+     * Ước lượng độ dài bản pretty của một JSON compact: mỗi ký tự cấu trúc ({@code { } [ ] , :}) ngoài chuỗi
+     * được cộng thêm {@value #PRETTY_CHARS_PER_STRUCTURAL} ký tự - trung bình của xuống dòng + thụt lề sau
+     * {@code { , }} trong object (1 + 2·cấp, cấp 1-2 ở kết quả tool), {@code " : "} (+2) và {@code ", "} trong mảng (+1).
+     * Chỉ dùng cho metric "token tiết kiệm" nên không bám theo từng quy tắc của printer (ký tự xuống dòng, thụt lề).
+     */
+    static long estimatePrettyChars(String compact) {
+        long structural = 0;
+        boolean inString = false;
+        for (int i = 0; i < compact.length(); i++) {
+            char c = compact.charAt(i);
+            if (inString) {
+                if (c == '\\') i++;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '}' || c == '[' || c == ']' || c == ',' || c == ':') {
+                structural++;
+            }
+        }
+        return compact.length() + PRETTY_CHARS_PER_STRUCTURAL * structural;
+    }
+
+    /** Đổi các mảng object trong {@link #TABLE_FIELDS} thành columns/rows (cột theo thứ tự xuất hiện). */
+    private static JsonNode toTable(JsonNode node) {
+        if (!(node instanceof ObjectNode object)) return node;
+
+        for (String field : TABLE_FIELDS) {
+            if (!(object.get(field) instanceof ArrayNode array) || array.isEmpty()) continue;
+
+            LinkedHashSet<String> columns = new LinkedHashSet<>();
+            boolean allObjects = true;
+            for (JsonNode row : array) {
+                if (!row.isObject()) {
+                    allObjects = false;
+                    break;
+                }
+                row.fieldNames().forEachRemaining(columns::add);
+            }
+            if (!allObjects) continue;
+
+            ObjectNode table = MAPPER.createObjectNode();
+            ArrayNode columnNode = table.putArray("columns");
+            columns.forEach(columnNode::add);
+            ArrayNode rows = table.putArray("rows");
+            for (JsonNode row : array) {
+                ArrayNode r = rows.addArray();
+                for (String c : columns) {
+                    r.add(row.has(c) ? row.get(c) : MAPPER.nullNode());
+                }
+            }
+            object.set(field, table);
+        }
+        return object;
+    }
+}
@@ -0,0 +1,51 @@
+package iuh.fit.se.service.tool;
+
+import org.springframework.ai.chat.model.ToolContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Kết quả tool của MỘT request, giữ theo tool-call id để server trả thẳng / ghép vào phản hồi
+ * thay vì bắt LLM chép lại. Được truyền qua {@link ToolContext} dưới khoá {@link #KEY}.
+ */
+public class ToolResultStash {
+
+    public static final String KEY = "chat-ai.tool-result-stash";
+
+    private final Map<String, Entry> byId = new LinkedHashMap<>();
+
+    public record Entry(String toolCallId, String toolName, String result) {
+    }
+
+    public static Optional<ToolResultStash> from(ToolContext toolContext) {
+        if (toolContext == null || toolContext.getContext() == null) return Optional.empty();
+        return toolContext.getContext().get(KEY) instanceof ToolResultStash stash
+                ? Optional.of(stash)
+                : Optional.empty();
+    }
+
+    public synchronized void put(String toolCallId, String toolName, String result) {
+        byId.put(toolCallId, new Entry(toolCallId, toolName, result));
+    }
+
+    public synchronized boolean contains(String toolCallId) {
+        return byId.containsKey(toolCallId);
+    }
+
+    public synchronized Optional<Entry> get(String toolCallId) {
+        return Optional.ofNullable(toolCallId == null ? null : byId.get(toolCallId));
+    }
+
+    /** Kết quả gần nhất (tool có thể được gọi nhiều lần trong một lượt). */
+    public synchronized Optional<Entry> last() {
+        Entry last = null;
+        for (Entry e : byId.values()) last = e;
+        return Optional.ofNullable(last);
+    }
+
+    public synchronized boolean isEmpty() {
+        return byId.isEmpty();
+    }
+}
@@ -0,0 +1,131 @@
+package iuh.fit.se.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giới hạn số request đồng thời tự điều chỉnh theo AIMD:
+ * <ul>
+ *   <li>Request xong nhanh (dưới {@code latencyThreshold}) khi đang dùng ≥ nửa giới hạn
+ *   → tăng cộng {@code 1/limit} (≈ +1 sau mỗi "cửa sổ" limit request).</li>
+ *   <li>Request chậm hoặc lỗi phía upstream → giảm nhân {@code backoffRatio},
+ *   tối đa một lần mỗi {@code latencyThreshold} để một loạt request chậm không kéo limit về min.</li>
+ * </ul>
+ * Không xếp hàng: vượt giới hạn thì {@link #tryAcquire()} trả {@code null} để người gọi từ chối ngay.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final String name;
+    private final Settings settings;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object adjustLock = new Object();
+    private volatile double limit;
+    private long lastDecrease;
+
+    public AdaptiveConcurrencyLimiter(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.limit = Math.max(settings.minLimit(), Math.min(settings.maxLimit(), settings.initialLimit()));
+        this.lastDecrease = System.nanoTime() - settings.latencyThreshold().toNanos();
+    }
+
+    /** @return permit, hoặc {@code null} nếu đang đủ giới hạn */
+    public Permit tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) return null;
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(current + 1);
+            }
+        }
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public AdaptiveConcurrencyLimiter bindTo(MeterRegistry registry, String metricPrefix) {
+        Gauge.builder(metricPrefix + ".limit", this, AdaptiveConcurrencyLimiter::limit)
+                .tag("limiter", name)
+                .register(registry);
+        Gauge.builder(metricPrefix + ".in.flight", this, AdaptiveConcurrencyLimiter::inFlight)
+                .tag("limiter", name)
+                .register(registry);
+        return this;
+    }
+
+    private void onSuccess(long latencyNanos, int inFlightAtStart) {
+        if (latencyNanos > settings.latencyThreshold().toNanos()) {
+            decrease("slow response");
+            return;
+        }
+        // Chỉ tăng khi thực sự đang dùng gần tới giới hạn
+        if (inFlightAtStart * 2 < limit) return;
+        synchronized (adjustLock) {
+            limit = Math.min(settings.maxLimit(), limit + 1.0 / limit);
+        }
+    }
+
+    private void decrease(String reason) {
+        synchronized (adjustLock) {
+            long now = System.nanoTime();
+            if (now - lastDecrease < settings.latencyThreshold().toNanos()) return;
+            lastDecrease = now;
+            double previous = limit;
+            limit = Math.max(settings.minLimit(), limit * settings.backoffRatio());
+            if ((int) previous != (int) limit) {
+                log.warn("📉 Limiter '{}' {} → {} ({})", name, (int) previous, (int) limit, reason);
+            }
+        }
+    }
+
+    /** Mỗi permit phải được kết thúc đúng một lần bằng một trong các phương thức dưới đây. */
+    public final class Permit {
+        private final int inFlightAtStart;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /** Xong bình thường: độ trễ được dùng để điều chỉnh limit. */
+        public void success() {
+            if (release()) onSuccess(System.nanoTime() - start, inFlightAtStart);
+        }
+
+        /** Upstream quá tải/lỗi/timeout: giảm limit. */
+        public void dropped() {
+            if (release()) decrease("dropped");
+        }
+
+        /** Trả permit mà không điều chỉnh (VD: request lỗi do client). */
+        public void ignore() {
+            release();
+        }
+
+        private boolean release() {
+            if (!released.compareAndSet(false, true)) return false;
+            inFlight.decrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * @param latencyThreshold request lâu hơn mức này được coi là dấu hiệu quá tải
+     * @param backoffRatio     hệ số giảm (VD: 0.9)
+     */
+    public record Settings(int initialLimit, int minLimit, int maxLimit,
+                           Duration latencyThreshold, double backoffRatio) {
+    }
+}
@@ -0,0 +1,69 @@
+package iuh.fit.se.util;
+
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Giới hạn số lời gọi blocking chạy đồng thời tới một tài nguyên (VD: connection pool DB).
+ * Với virtual thread, số request đồng thời không còn bị chặn bởi Tomcat pool nên
+ * cần chốt chặn này để không dồn hàng nghìn thread vào Hikari cùng lúc.
+ */
+@Slf4j
+public class BlockingCallGuard {
+
+    private final String name;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final Duration acquireTimeout;
+
+    public BlockingCallGuard(String name, int maxConcurrent, Duration acquireTimeout) {
+        this.name = name;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.permits = new Semaphore(this.maxConcurrent, true);
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public <T> T call(Supplier<T> action) {
+        acquire();
+        try {
+            return action.get();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public void run(Runnable action) {
+        acquire();
+        try {
+            action.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int inFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int queued() {
+        return permits.getQueueLength();
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("⏳ Guard '{}' saturated: {} in flight, {} waiting", name, inFlight(), queued());
+                throw new AppException(ErrorCode.SERVER_BUSY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.SERVER_BUSY);
+        }
+    }
+}
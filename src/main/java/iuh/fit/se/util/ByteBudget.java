@@ -0,0 +1,56 @@
+package iuh.fit.se.util;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ngân sách byte dùng chung (VD: tổng dung lượng ảnh upload đang nằm trên heap).
+ * Không chờ: hết ngân sách thì {@link #tryAcquire} trả {@code null} để người gọi chọn đường khác
+ * (ghi ra đĩa) thay vì xếp hàng. Đơn vị nội bộ là KiB để ngân sách vài GB vẫn vừa {@code int}.
+ */
+public class ByteBudget {
+
+    private final String name;
+    private final int maxKib;
+    private final Semaphore permits;
+
+    public ByteBudget(String name, long maxBytes) {
+        this.name = name;
+        this.maxKib = (int) Math.min(Integer.MAX_VALUE, Math.max(1, maxBytes / 1024));
+        this.permits = new Semaphore(maxKib);
+    }
+
+    /** Giữ {@code bytes} trong ngân sách; {@code null} nếu không đủ chỗ ngay lúc này. */
+    public Permit tryAcquire(long bytes) {
+        int kib = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bytes + 1023) / 1024));
+        if (kib > maxKib || !permits.tryAcquire(kib)) return null;
+        return new Permit(kib);
+    }
+
+    public long inUseBytes() {
+        return (long) (maxKib - permits.availablePermits()) * 1024;
+    }
+
+    public long maxBytes() {
+        return (long) maxKib * 1024;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Trả lại phần đã giữ; gọi nhiều lần chỉ có tác dụng một lần. */
+    public final class Permit implements AutoCloseable {
+        private int kib;
+
+        private Permit(int kib) {
+            this.kib = kib;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (kib == 0) return;
+            permits.release(kib);
+            kib = 0;
+        }
+    }
+}
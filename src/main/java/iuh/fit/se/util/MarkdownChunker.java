@@ -0,0 +1,125 @@
+package iuh.fit.se.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cắt markdown thành các đoạn theo heading: mỗi đoạn mang đường dẫn heading
+ * ("Hoàn tiền > Điều kiện") và không vượt quá {@code maxTokens} (ước lượng bằng {@link TokenEstimator}).
+ * Section dài được cắt tiếp theo đoạn văn, đoạn văn quá dài thì cắt theo câu / ký tự.
+ * Dấu # bên trong code block (```) không được coi là heading.
+ */
+public final class MarkdownChunker {
+
+    public record Chunk(String heading, String text) {
+    }
+
+    private MarkdownChunker() {
+    }
+
+    public static List<Chunk> split(String markdown, int maxTokens) {
+        List<Chunk> chunks = new ArrayList<>();
+        if (markdown == null || markdown.isBlank()) return chunks;
+
+        int maxChars = Math.max(1, TokenEstimator.maxChars(maxTokens));
+        String[] headings = new String[7];
+        String heading = "";
+        StringBuilder paragraph = new StringBuilder();
+        StringBuilder section = new StringBuilder();
+        boolean inFence = false;
+
+        for (String line : markdown.split("\\R", -1)) {
+            String trimmed = line.strip();
+            if (trimmed.startsWith("```")) {
+                inFence = !inFence;
+            }
+
+            int level = inFence ? 0 : headingLevel(trimmed);
+            if (level > 0) {
+                appendParagraph(chunks, heading, section, paragraph, maxChars);
+                flush(chunks, heading, section);
+
+                headings[level] = trimmed.substring(level).strip();
+                for (int l = level + 1; l < headings.length; l++) headings[l] = null;
+                heading = joinHeadings(headings);
+                continue;
+            }
+
+            if (trimmed.isEmpty() && !inFence) {
+                appendParagraph(chunks, heading, section, paragraph, maxChars);
+            } else {
+                if (!paragraph.isEmpty()) paragraph.append('\n');
+                paragraph.append(line);
+            }
+        }
+        appendParagraph(chunks, heading, section, paragraph, maxChars);
+        flush(chunks, heading, section);
+        return chunks;
+    }
+
+    private static void appendParagraph(List<Chunk> chunks, String heading, StringBuilder section,
+                                        StringBuilder paragraph, int maxChars) {
+        if (paragraph.isEmpty()) return;
+        String text = paragraph.toString().strip();
+        paragraph.setLength(0);
+        if (text.isEmpty()) return;
+
+        if (!section.isEmpty() && section.length() + 2 + text.length() > maxChars) {
+            flush(chunks, heading, section);
+        }
+        if (text.length() <= maxChars) {
+            if (!section.isEmpty()) section.append("\n\n");
+            section.append(text);
+            return;
+        }
+
+        // Đoạn văn dài hơn một chunk: cắt tại ranh giới câu/dòng gần nhất
+        flush(chunks, heading, section);
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + maxChars);
+            if (end < text.length()) {
+                int cut = lastBoundary(text, start, end);
+                if (cut > start) end = cut;
+            }
+            String piece = text.substring(start, end).strip();
+            if (!piece.isEmpty()) chunks.add(new Chunk(heading, piece));
+            start = end;
+        }
+    }
+
+    private static int lastBoundary(String text, int start, int end) {
+        for (int i = end - 1; i > start + (end - start) / 2; i--) {
+            char c = text.charAt(i);
+            if (c == '\n' || ((c == '.' || c == ';' || c == '!' || c == '?') && i + 1 < text.length()
+                    && Character.isWhitespace(text.charAt(i + 1)))) {
+                return i + 1;
+            }
+        }
+        int space = text.lastIndexOf(' ', end - 1);
+        return space > start ? space + 1 : end;
+    }
+
+    private static void flush(List<Chunk> chunks, String heading, StringBuilder section) {
+        if (section.isEmpty()) return;
+        chunks.add(new Chunk(heading, section.toString()));
+        section.setLength(0);
+    }
+
+    private static int headingLevel(String line) {
+        int level = 0;
+        while (level < line.length() && line.charAt(level) == '#') level++;
+        if (level == 0 || level > 6 || level == line.length()) return 0;
+        return Character.isWhitespace(line.charAt(level)) ? level : 0;
+    }
+
+    private static String joinHeadings(String[] headings) {
+        StringBuilder sb = new StringBuilder();
+        for (String h : headings) {
+            if (h == null || h.isEmpty()) continue;
+            if (!sb.isEmpty()) sb.append(" > ");
+            sb.append(h);
+        }
+        return sb.toString();
+    }
+}
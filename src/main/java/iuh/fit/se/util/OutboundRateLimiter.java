@@ -0,0 +1,177 @@
+package iuh.fit.se.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giới hạn tốc độ gọi ra ngoài (request/giây) tự học từ phản hồi 429 của upstream:
+ * <ul>
+ *   <li>Mỗi request được xếp một "slot" cách nhau {@code 1/rate}; người gọi ngủ tới slot của mình
+ *   (hàng đợi có giới hạn: quá {@code maxQueue} người chờ hoặc phải chờ quá {@code maxWait}
+ *   → {@link ErrorCode#RATE_LIMIT_EXCEEDED}).</li>
+ *   <li>429: giảm nhân rate và tạm dừng mọi request tới hết {@code Retry-After}
+ *   (không có header thì backoff luỹ thừa theo số lần 429 liên tiếp), cộng jitter để các request
+ *   đang chờ không dồn lại cùng một thời điểm.</li>
+ *   <li>Thành công: tăng cộng rate tới {@code maxRate} → giữ ở ngay dưới quota thay vì dao động.</li>
+ * </ul>
+ */
+@Slf4j
+public class OutboundRateLimiter {
+
+    private static final int MAX_BACKOFF_EXPONENT = 5;
+
+    private final String name;
+    private final Settings settings;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private double rate;
+    private long nextFree;
+    private long pausedUntil;
+    private int consecutiveThrottles;
+
+    private Timer waitTimer;
+    private Counter throttled;
+    private Counter rejected;
+
+    public OutboundRateLimiter(String name, Settings settings) {
+        this.name = name;
+        this.settings = settings;
+        this.rate = Math.max(settings.minRate(), Math.min(settings.maxRate(), settings.initialRate()));
+        long now = System.nanoTime();
+        this.nextFree = now;
+        this.pausedUntil = now;
+    }
+
+    /**
+     * Chờ tới lượt gửi request. Nếu trong lúc ngủ upstream trả 429 (tạm dừng kéo dài qua slot đã giữ),
+     * người gọi xếp lại slot sau thời điểm hết tạm dừng thay vì bắn vào giữa cửa sổ Retry-After.
+     */
+    public void acquire() {
+        long start = System.nanoTime();
+        long slot = reserve(start, start, true);
+
+        if (slot > start) {
+            queued.incrementAndGet();
+            try {
+                while (true) {
+                    sleepUntil(slot);
+                    synchronized (this) {
+                        long now = System.nanoTime();
+                        if (now >= pausedUntil) break;
+                        slot = reserve(start, now, false);
+                    }
+                }
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+        if (waitTimer != null) waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Giữ slot kế tiếp không sớm hơn {@code now} và không rơi vào thời gian tạm dừng.
+     * Tổng thời gian chờ tính từ {@code start}; hàng đợi chỉ kiểm tra khi mới vào (lần xếp lại đã được đếm).
+     */
+    private synchronized long reserve(long start, long now, boolean admission) {
+        long slot = Math.max(now, Math.max(nextFree, pausedUntil));
+        long wait = slot - start;
+        if (wait > settings.maxWait().toNanos() || (admission && wait > 0 && queued.get() >= settings.maxQueue())) {
+            if (rejected != null) rejected.increment();
+            log.warn("🚦 Outbound limiter '{}' rejected: wait {}ms, {} queued, rate {}/s",
+                    name, TimeUnit.NANOSECONDS.toMillis(wait), queued.get(), String.format("%.2f", rate));
+            throw new AppException(ErrorCode.RATE_LIMIT_EXCEEDED);
+        }
+        nextFree = slot + (long) (1_000_000_000L / rate);
+        return slot;
+    }
+
+    private static void sleepUntil(long deadline) {
+        long wait = deadline - System.nanoTime();
+        if (wait <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.RATE_LIMIT_EXCEEDED);
+        }
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveThrottles = 0;
+        rate = Math.min(settings.maxRate(), rate + settings.increasePerSuccess());
+    }
+
+    /** @param retryAfter giá trị header Retry-After (null nếu không có) */
+    public synchronized void onThrottled(Duration retryAfter) {
+        if (throttled != null) throttled.increment();
+        consecutiveThrottles = Math.min(consecutiveThrottles + 1, MAX_BACKOFF_EXPONENT);
+        double previous = rate;
+        rate = Math.max(settings.minRate(), rate * settings.decreaseRatio());
+
+        long pause = retryAfter != null
+                ? retryAfter.toNanos()
+                : settings.baseBackoff().toNanos() << (consecutiveThrottles - 1);
+        pause += (long) (pause * settings.jitter() * ThreadLocalRandom.current().nextDouble());
+        pausedUntil = Math.max(pausedUntil, System.nanoTime() + pause);
+        // Slot mới bắt đầu sau khi hết tạm dừng; người đang ngủ tới slot cũ sẽ thấy pausedUntil khi thức và xếp lại
+        nextFree = Math.max(nextFree, pausedUntil);
+
+        log.warn("🐢 Outbound limiter '{}' throttled: rate {} → {}/s, pause {}ms",
+                name, String.format("%.2f", previous), String.format("%.2f", rate),
+                TimeUnit.NANOSECONDS.toMillis(pause));
+    }
+
+    public synchronized double rate() {
+        return rate;
+    }
+
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * Số liệu: {@code <prefix>.queue} (đang chờ), {@code <prefix>.wait} (thời gian chờ),
+     * {@code <prefix>.rate}, {@code <prefix>.throttled} (số 429), {@code <prefix>.rejected}.
+     */
+    public OutboundRateLimiter bindTo(MeterRegistry registry, String prefix) {
+        Gauge.builder(prefix + ".queue", queued, AtomicInteger::get)
+                .tag("limiter", name)
+                .register(registry);
+        Gauge.builder(prefix + ".rate", this, OutboundRateLimiter::rate)
+                .tag("limiter", name)
+                .baseUnit("requests/s")
+                .register(registry);
+        this.waitTimer = Timer.builder(prefix + ".wait")
+                .tag("limiter", name)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.throttled = Counter.builder(prefix + ".throttled").tag("limiter", name).register(registry);
+        this.rejected = Counter.builder(prefix + ".rejected").tag("limiter", name).register(registry);
+        return this;
+    }
+
+    /**
+     * @param initialRate        rate khởi đầu (request/giây)
+     * @param increasePerSuccess rate tăng thêm sau mỗi request thành công
+     * @param decreaseRatio      hệ số giảm khi gặp 429 (VD: 0.5)
+     * @param maxWait            thời gian chờ tối đa trong hàng đợi
+     * @param maxQueue           số request chờ tối đa
+     * @param baseBackoff        thời gian dừng khi 429 không kèm Retry-After (nhân đôi mỗi lần liên tiếp)
+     * @param jitter             tỉ lệ jitter ngẫu nhiên cộng thêm vào thời gian dừng (VD: 0.3)
+     * @param maxRetries         số lần thử lại một request bị 429 trước khi trả lỗi cho người gọi
+     */
+    public record Settings(double initialRate, double minRate, double maxRate, double increasePerSuccess,
+                           double decreaseRatio, Duration maxWait, int maxQueue, Duration baseBackoff,
+                           double jitter, int maxRetries) {
+    }
+}
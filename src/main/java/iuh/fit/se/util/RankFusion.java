@@ -0,0 +1,53 @@
+package iuh.fit.se.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reciprocal Rank Fusion: gộp nhiều danh sách đã xếp hạng (VD: semantic + từ khoá) chỉ dựa trên thứ hạng,
+ * không cần đưa điểm của các hệ khác nhau về cùng thang. Điểm của một phần tử = Σ 1 / (k + hạng), hạng từ 1.
+ * Phần tử trùng key giữ bản ở danh sách xuất hiện trước; điểm bằng nhau giữ thứ tự xuất hiện đầu tiên.
+ */
+public final class RankFusion {
+
+    /** Giá trị k thường dùng (bài báo gốc của RRF). */
+    public static final int DEFAULT_K = 60;
+
+    private RankFusion() {
+    }
+
+    public static <T> List<T> reciprocalRank(List<List<T>> rankings, Function<T, ?> key, int k, int limit) {
+        Map<Object, Entry<T>> fused = new LinkedHashMap<>();
+        for (List<T> ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                T item = ranking.get(i);
+                double score = 1.0 / (k + i + 1);
+                fused.computeIfAbsent(key.apply(item), x -> new Entry<>(item, fused.size())).score += score;
+            }
+        }
+
+        List<Entry<T>> entries = new ArrayList<>(fused.values());
+        entries.sort(Comparator.<Entry<T>>comparingDouble(e -> -e.score).thenComparingInt(e -> e.order));
+        List<T> out = new ArrayList<>(Math.min(limit, entries.size()));
+        for (Entry<T> e : entries) {
+            if (out.size() >= limit) break;
+            out.add(e.item);
+        }
+        return out;
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final int order;
+        double score;
+
+        Entry(T item, int order) {
+            this.item = item;
+            this.order = order;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package iuh.fit.se.util;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bọc một lời gọi upstream blocking bằng: circuit breaker (resilience4j), bulkhead semaphore,
+ * timeout tổng và (tuỳ chọn) hedged request.
+ *
+ * <ul>
+ *   <li>Breaker OPEN → lỗi ngay {@link ErrorCode#EXTERNAL_SERVICE_UNAVAILABLE}, không chạm upstream.</li>
+ *   <li>Bulkhead đầy quá {@code maxWait} → {@link ErrorCode#SERVER_BUSY} (không tính là lỗi upstream).</li>
+ *   <li>Quá {@code timeout} → {@link ErrorCode#EXTERNAL_SERVICE_TIMEOUT}, tính là lỗi cho breaker,
+ *   người gọi không phải chờ tới read-timeout của HTTP client.</li>
+ *   <li>Hedge: nếu lần gọi đầu chưa xong sau độ trễ ≈ p{@code percentile} của các lần thành công gần đây,
+ *   gửi thêm MỘT lần nữa (chỉ khi breaker CLOSED và bulkhead còn chỗ, không chờ); kết quả nào về trước được dùng.
+ *   Chỉ bật cho thao tác idempotent.</li>
+ * </ul>
+ *
+ * Lời gọi chạy trên executor (virtual thread) để có thể bỏ chờ khi timeout; thread gọi chỉ chờ kết quả.
+ */
+@Slf4j
+public class ResilientOperation {
+
+    private static final int LATENCY_WINDOW = 128;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final String name;
+    private final Settings settings;
+    private final ExecutorService executor;
+    private final CircuitBreaker breaker;
+    private final Semaphore bulkhead;
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW);
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder bulkheadFull = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    public ResilientOperation(String name, Settings settings, ExecutorService executor) {
+        this.name = name;
+        this.settings = settings;
+        this.executor = executor;
+        this.breaker = CircuitBreaker.of(name, settings.breaker());
+        this.bulkhead = new Semaphore(Math.max(1, settings.maxConcurrent()), true);
+        breaker.getEventPublisher().onStateTransition(e ->
+                log.warn("⚡ Circuit '{}': {}", name, e.getStateTransition()));
+    }
+
+    public <T> T call(Supplier<T> action) {
+        if (!breaker.tryAcquirePermission()) {
+            rejected.increment();
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        }
+        if (!acquireBulkhead()) {
+            breaker.releasePermission();
+            bulkheadFull.increment();
+            log.warn("⏳ Bulkhead '{}' full ({} permits)", name, settings.maxConcurrent());
+            throw new AppException(ErrorCode.SERVER_BUSY);
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = execute(action, start);
+            breaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            successes.increment();
+            return result;
+        } catch (AppException e) {
+            if (e.getErrorCode() == ErrorCode.SERVER_BUSY) {
+                // Nghẽn phía mình (guard của transport), không phải lỗi upstream
+                breaker.releasePermission();
+                bulkheadFull.increment();
+                throw e;
+            }
+            breaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            if (e.getErrorCode() == ErrorCode.EXTERNAL_SERVICE_TIMEOUT) {
+                timeouts.increment();
+            } else {
+                failures.increment();
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+            failures.increment();
+            throw e;
+        }
+    }
+
+    public CircuitBreaker.State state() {
+        return breaker.getState();
+    }
+
+    /** Độ trễ hedge hiện tại (p-percentile gần đây, kẹp trong [minDelay, maxDelay]). */
+    public Duration hedgeDelay() {
+        Hedge hedge = settings.hedge();
+        long p = latencies.percentile(hedge.percentile(), MIN_LATENCY_SAMPLES);
+        if (p < 0) return hedge.maxDelay();
+        long clamped = Math.max(hedge.minDelay().toNanos(), Math.min(hedge.maxDelay().toNanos(), p));
+        return Duration.ofNanos(clamped);
+    }
+
+    /**
+     * Số liệu: trạng thái breaker ({@code gemini.circuit.state}: 0 closed, 1 open, 2 half-open, ...),
+     * kết quả lời gọi ({@code gemini.calls}), bulkhead còn trống và số hedge / hedge thắng.
+     */
+    public ResilientOperation bindTo(MeterRegistry registry) {
+        Gauge.builder("gemini.circuit.state", breaker, b -> b.getState().getOrder())
+                .tag("operation", name)
+                .description("0=closed, 1=open, 2=half-open, 3=disabled, 4=forced-open, 5=metrics-only")
+                .register(registry);
+        Gauge.builder("gemini.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .tag("operation", name)
+                .register(registry);
+        counter(registry, "success", successes);
+        counter(registry, "failure", failures);
+        counter(registry, "timeout", timeouts);
+        counter(registry, "rejected", rejected);
+        counter(registry, "bulkhead_full", bulkheadFull);
+        FunctionCounter.builder("gemini.hedge.requests", hedges, LongAdder::sum)
+                .tag("operation", name)
+                .register(registry);
+        FunctionCounter.builder("gemini.hedge.wins", hedgeWins, LongAdder::sum)
+                .tag("operation", name)
+                .description("Hedged attempts that returned before the original one")
+                .register(registry);
+        return this;
+    }
+
+    /* ------------ Thực thi ------------ */
+
+    /** Đã giữ một permit bulkhead cho lần gọi đầu; mỗi lần gọi tự trả permit khi xong. */
+    private <T> T execute(Supplier<T> action, long start) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        List<Future<?>> attempts = new ArrayList<>(2);
+        attempts.add(launch(action, result, pending, false));
+
+        long deadline = start + settings.timeout().toNanos();
+        try {
+            if (settings.hedge().enabled()) {
+                long hedgeAt = start + hedgeDelay().toNanos();
+                if (hedgeAt < deadline && !awaitUntil(result, hedgeAt)
+                        && breaker.getState() == CircuitBreaker.State.CLOSED
+                        && bulkhead.tryAcquire()) {
+                    pending.incrementAndGet();
+                    hedges.increment();
+                    attempts.add(launch(action, result, pending, true));
+                }
+            }
+            return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("⏱️ '{}' timed out after {}", name, settings.timeout());
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new AppException(ErrorCode.FEIGN_CLIENT_ERROR);
+        } finally {
+            // Lần gọi còn lại (thua hoặc quá hạn) không cần nữa
+            attempts.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private <T> Future<?> launch(Supplier<T> action, CompletableFuture<T> result,
+                                 AtomicInteger pending, boolean hedge) {
+        try {
+            return executor.submit(() -> {
+                long t0 = System.nanoTime();
+                try {
+                    T value = action.get();
+                    latencies.record(System.nanoTime() - t0);
+                    if (result.complete(value) && hedge) {
+                        hedgeWins.increment();
+                    }
+                } catch (Throwable t) {
+                    // Chỉ báo lỗi khi mọi lần gọi đều lỗi
+                    if (pending.decrementAndGet() == 0) {
+                        result.completeExceptionally(t);
+                    }
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            bulkhead.release();
+            if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(new AppException(ErrorCode.SERVER_BUSY));
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private boolean acquireBulkhead() {
+        try {
+            return bulkhead.tryAcquire(settings.maxWait().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Chờ tới {@code deadlineNanos}; true nếu result đã xong (thành công hoặc lỗi). */
+    private static boolean awaitUntil(CompletableFuture<?> result, long deadlineNanos)
+            throws InterruptedException {
+        try {
+            result.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+        return true;
+    }
+
+    private void counter(MeterRegistry registry, String outcome, LongAdder adder) {
+        FunctionCounter.builder("gemini.calls", adder, LongAdder::sum)
+                .tag("operation", name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /** Vòng đệm độ trễ các lần gọi thành công gần nhất. */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            if (size < samples.length) size++;
+        }
+
+        /** -1 nếu chưa đủ mẫu. */
+        synchronized long percentile(double p, int minSamples) {
+            if (size < minSamples) return -1;
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            int index = (int) Math.ceil(p * size) - 1;
+            return copy[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+
+    /**
+     * @param timeout        thời gian tối đa người gọi chờ (kể cả hedge)
+     * @param maxConcurrent  số lời gọi đồng thời tối đa (bulkhead)
+     * @param maxWait        thời gian chờ chỗ trống trong bulkhead
+     * @param breaker        cấu hình circuit breaker
+     * @param hedge          cấu hình hedged request
+     */
+    public record Settings(Duration timeout, int maxConcurrent, Duration maxWait,
+                           CircuitBreakerConfig breaker, Hedge hedge) {
+    }
+
+    /**
+     * @param percentile percentile độ trễ dùng làm mốc gửi hedge (VD: 0.95)
+     * @param minDelay   độ trễ tối thiểu trước khi hedge
+     * @param maxDelay   độ trễ tối đa (cũng dùng khi chưa đủ mẫu)
+     */
+    public record Hedge(boolean enabled, double percentile, Duration minDelay, Duration maxDelay) {
+
+        public static Hedge disabled() {
+            return new Hedge(false, 0.95, Duration.ZERO, Duration.ZERO);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package iuh.fit.se.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Cache read-through có giới hạn (TTL + kích thước) và gộp request (single-flight):
+ * nhiều lời gọi trùng key khi cache miss chỉ sinh ra MỘT lời gọi upstream, các lời gọi còn lại chờ kết quả đó.
+ *
+ * <p>Loader chạy trên chính thread của người gọi đầu tiên (không chiếm lock của map trong lúc chờ I/O).
+ * Loader trả về {@code null} nghĩa là "không cache" (VD: upstream lỗi).
+ */
+public class SingleFlightCache<K, V> {
+
+    private final String name;
+    private final AsyncCache<K, V> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private SingleFlightCache(String name, Caffeine<Object, Object> builder) {
+        this.name = name;
+        this.cache = builder.<K, V>removalListener(this::onRemoval).buildAsync();
+    }
+
+    public static <K, V> SingleFlightCache<K, V> bySize(String name, long maximumSize, Duration ttl) {
+        return new SingleFlightCache<>(name, Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl));
+    }
+
+    /** Giới hạn theo "trọng lượng" (VD: số byte ước lượng của value) thay vì số entry. */
+    @SuppressWarnings("unchecked")
+    public static <K, V> SingleFlightCache<K, V> byWeight(String name, long maximumWeight,
+                                                          ToIntFunction<V> weigher, Duration ttl) {
+        return new SingleFlightCache<>(name, Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Object key, Object value) -> weigher.applyAsInt((V) value))
+                .expireAfterWrite(ttl));
+    }
+
+    public V get(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = cache.asMap().putIfAbsent(key, mine);
+
+        if (existing != null) {
+            if (existing.isDone()) {
+                hits.increment();
+            } else {
+                coalesced.increment();
+            }
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                if (e.getCause() instanceof Error err) throw err;
+                throw e;
+            }
+        }
+
+        misses.increment();
+        try {
+            V value = loader.get();
+            // null → Caffeine tự bỏ entry, lần sau sẽ gọi lại upstream
+            mine.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Cả Error (VD: OutOfMemoryError, StackOverflowError): không hoàn tất future → các lời gọi đang chờ treo mãi
+            cache.asMap().remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Giá trị đã load xong của key, hoặc {@code null} (không chờ, không tính vào thống kê). */
+    public V getIfPresent(K key) {
+        CompletableFuture<V> f = cache.getIfPresent(key);
+        if (f == null || !f.isDone() || f.isCompletedExceptionally()) return null;
+        return f.getNow(null);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), coalesced.sum(), evictions.sum(),
+                cache.synchronous().estimatedSize());
+    }
+
+    /** Đăng ký số liệu hit/miss/coalesced/eviction và kích thước cache lên Micrometer. */
+    public SingleFlightCache<K, V> bindTo(MeterRegistry registry) {
+        counter(registry, "hit", hits);
+        counter(registry, "miss", misses);
+        counter(registry, "coalesced", coalesced);
+        FunctionCounter.builder("chat.cache.evictions", evictions, LongAdder::sum)
+                .tag("cache", name)
+                .description("Entries evicted by size or TTL")
+                .register(registry);
+        Gauge.builder("chat.cache.size", cache, c -> c.synchronous().estimatedSize())
+                .tag("cache", name)
+                .register(registry);
+        return this;
+    }
+
+    private void counter(MeterRegistry registry, String result, LongAdder adder) {
+        FunctionCounter.builder("chat.cache.requests", adder, LongAdder::sum)
+                .tag("cache", name)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private void onRemoval(K key, V value, RemovalCause cause) {
+        if (cause.wasEvicted()) {
+            evictions.increment();
+        }
+    }
+
+    public record Stats(long hits, long misses, long coalesced, long evictions, long size) {
+    }
+}
@@ -0,0 +1,132 @@
+package iuh.fit.se.util;
+
+/**
+ * Tách object JSON top-level ra khỏi một luồng text (VD: token stream của LLM) theo kiểu tăng dần.
+ *
+ * <ul>
+ *   <li>Text trước dấu '{' đầu tiên được chuyển ngay cho {@link Listener#onText}.</li>
+ *   <li>Object được gom lại và chuyển cho {@link Listener#onObject} NGAY khi gặp dấu '}' đóng,
+ *   không chờ hết stream. Listener nhận object đó → phần còn lại được chuyển thẳng cho {@link Listener#onText};
+ *   listener bỏ qua (VD: không phải product_list) → tiếp tục tìm object kế tiếp.</li>
+ *   <li>Theo dõi đúng trạng thái chuỗi và escape ({@code "a\\\\"} kết thúc chuỗi, {@code "a\\""} thì không),
+ *   nên dấu ngoặc trong chuỗi không làm lệch độ sâu.</li>
+ * </ul>
+ *
+ * Mỗi ký tự chỉ được xét một lần; chỉ phần object mới được chép vào buffer. Không thread-safe.
+ */
+public final class StreamingJsonExtractor {
+
+    public interface Listener {
+        void onText(String text);
+
+        /**
+         * @return {@code true} nếu đã dùng object này (dừng tách, phần sau là text),
+         * {@code false} để tiếp tục tìm object top-level kế tiếp
+         */
+        boolean onObject(String json);
+    }
+
+    private enum State { SCANNING, CAPTURING, DONE }
+
+    private final Listener listener;
+    private final StringBuilder buffer = new StringBuilder();
+    private State state = State.SCANNING;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    public StreamingJsonExtractor(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Object JSON đầu tiên trong {@code text}, hoặc {@code null} nếu không có object hoàn chỉnh. */
+    public static String firstObject(String text) {
+        if (text == null) return null;
+        String[] found = new String[1];
+        StreamingJsonExtractor extractor = new StreamingJsonExtractor(new Listener() {
+            @Override
+            public void onText(String t) {
+            }
+
+            @Override
+            public boolean onObject(String json) {
+                found[0] = json;
+                return true;
+            }
+        });
+        extractor.feed(text);
+        return found[0];
+    }
+
+    public void feed(CharSequence chunk) {
+        if (chunk == null || chunk.isEmpty()) return;
+
+        int n = chunk.length();
+        int i = 0;
+        while (i < n) {
+            switch (state) {
+                case DONE -> {
+                    listener.onText(chunk.subSequence(i, n).toString());
+                    return;
+                }
+                case SCANNING -> {
+                    int brace = indexOf(chunk, '{', i);
+                    if (brace < 0) {
+                        listener.onText(chunk.subSequence(i, n).toString());
+                        return;
+                    }
+                    if (brace > i) listener.onText(chunk.subSequence(i, brace).toString());
+                    state = State.CAPTURING;
+                    i = brace;
+                }
+                case CAPTURING -> i = capture(chunk, i, n);
+            }
+        }
+    }
+
+    /** Kết thúc stream: object chưa đóng (bị cắt) được trả lại dưới dạng text. */
+    public void finish() {
+        if (state == State.CAPTURING && !buffer.isEmpty()) {
+            listener.onText(buffer.toString());
+            buffer.setLength(0);
+        }
+        state = State.DONE;
+    }
+
+    /** Gom ký tự của object; trả về vị trí tiếp theo cần xử lý. */
+    private int capture(CharSequence chunk, int from, int n) {
+        for (int i = from; i < n; i++) {
+            char c = chunk.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                buffer.append(chunk, from, i + 1);
+                String json = buffer.toString();
+                buffer.setLength(0);
+                state = listener.onObject(json) ? State.DONE : State.SCANNING;
+                return i + 1;
+            }
+        }
+        buffer.append(chunk, from, n);
+        return n;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from, n = s.length(); i < n; i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+}
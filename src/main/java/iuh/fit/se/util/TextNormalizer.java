@@ -0,0 +1,69 @@
+package iuh.fit.se.util;
+
+import java.text.Normalizer;
+
+/**
+ * Chuẩn hoá văn bản tiếng Việt: chữ thường + bỏ dấu (đ → d).
+ * Bảng {@link #FOLD} được dựng một lần nên {@link #fold(char)} không cấp phát bộ nhớ.
+ */
+public final class TextNormalizer {
+
+    /** Phủ Latin-1, Latin Extended A/B và Latin Extended Additional (U+1E00..U+1EFF). */
+    private static final int TABLE_SIZE = 0x2000;
+    private static final char[] FOLD = new char[TABLE_SIZE];
+
+    static {
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            FOLD[c] = computeFold((char) c);
+        }
+    }
+
+    private TextNormalizer() {
+    }
+
+    /** Chữ thường, bỏ dấu thanh/dấu mũ. Ký tự ngoài bảng chỉ được hạ chữ thường. */
+    public static char fold(char c) {
+        return c < TABLE_SIZE ? FOLD[c] : Character.toLowerCase(c);
+    }
+
+    /** Dấu kết hợp (U+0300..U+036F...) khi input ở dạng NFD. */
+    public static boolean isCombiningMark(char c) {
+        return Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    /**
+     * Khoá chuẩn hoá cho truy vấn: chữ thường, bỏ dấu, gộp khoảng trắng, trim.
+     * VD: "  Áo   Hoodie " → "ao hoodie".
+     */
+    public static String normalizeQuery(String text) {
+        if (text == null) return "";
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isCombiningMark(c)) continue;
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(fold(c));
+        }
+        return sb.toString();
+    }
+
+    private static char computeFold(char c) {
+        char lower = Character.toLowerCase(c);
+        if (lower == 'đ') return 'd';
+        if (Character.isSurrogate(c)) return lower;
+        String decomposed = Normalizer.normalize(String.valueOf(lower), Normalizer.Form.NFD);
+        if (decomposed.isEmpty()) return lower;
+        for (int i = 1; i < decomposed.length(); i++) {
+            if (!isCombiningMark(decomposed.charAt(i))) return lower;
+        }
+        return decomposed.charAt(0);
+    }
+}
@@ -0,0 +1,52 @@
+package iuh.fit.se.util;
+
+/**
+ * Token bucket nạp lại liên tục: tối đa {@code capacity} token, nạp {@code refillPerSecond} token/giây.
+ * Mỗi lần gọi tốn {@code cost} token (request nặng tốn nhiều hơn).
+ */
+public final class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = Math.max(1, capacity);
+        this.refillPerNano = refillPerSecond / 1_000_000_000.0;
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /** Lấy {@code cost} token nếu đủ (cost lớn hơn capacity được tính bằng capacity). */
+    public synchronized boolean tryConsume(double cost) {
+        refill();
+        double c = Math.min(cost, capacity);
+        if (tokens >= c) {
+            tokens -= c;
+            return true;
+        }
+        return false;
+    }
+
+    /** Trả lại token đã lấy (VD: request bị từ chối ở bước sau, không phải do người dùng). */
+    public synchronized void refund(double cost) {
+        refill();
+        tokens = Math.min(capacity, tokens + Math.min(cost, capacity));
+    }
+
+    /** Số nano giây cần chờ để đủ {@code cost} token (0 nếu đã đủ). */
+    public synchronized long nanosUntil(double cost) {
+        refill();
+        double missing = Math.min(cost, capacity) - tokens;
+        if (missing <= 0) return 0;
+        if (refillPerNano <= 0) return Long.MAX_VALUE;
+        return (long) Math.ceil(missing / refillPerNano);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,29 @@
+package iuh.fit.se.util;
+
+/**
+ * Ước lượng số token LLM của một đoạn văn bản mà không cần tokenizer thật.
+ * Tiếng Việt có dấu tách token dày hơn tiếng Anh nên dùng ~3 ký tự/token (ước lượng hơi dư).
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 3;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) return 0;
+        return forChars(text.length());
+    }
+
+    /** Như {@link #estimate(CharSequence)} khi chỉ biết số ký tự. */
+    public static int forChars(long chars) {
+        if (chars <= 0) return 0;
+        return (int) Math.min(Integer.MAX_VALUE, (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN);
+    }
+
+    /** Số ký tự tối đa để văn bản nằm trong {@code tokens} token. */
+    public static int maxChars(int tokens) {
+        return Math.max(0, tokens) * CHARS_PER_TOKEN;
+    }
+}
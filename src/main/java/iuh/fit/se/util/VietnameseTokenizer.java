@@ -0,0 +1,45 @@
+package iuh.fit.se.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tách từ đơn giản cho tiếng Việt: mỗi âm tiết (đã bỏ dấu, chữ thường) là một token,
+ * kèm bigram "a_b" của hai âm tiết liền nhau để giữ nghĩa từ ghép (hoàn tiền, đổi trả...).
+ */
+public final class VietnameseTokenizer {
+
+    private VietnameseTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> syllables = syllables(text);
+        if (syllables.size() < 2) return syllables;
+
+        List<String> tokens = new ArrayList<>(syllables.size() * 2 - 1);
+        tokens.addAll(syllables);
+        for (int i = 1; i < syllables.size(); i++) {
+            tokens.add(syllables.get(i - 1) + "_" + syllables.get(i));
+        }
+        return tokens;
+    }
+
+    public static List<String> syllables(String text) {
+        List<String> out = new ArrayList<>();
+        if (text == null || text.isEmpty()) return out;
+
+        StringBuilder current = new StringBuilder(16);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (TextNormalizer.isCombiningMark(c)) continue;
+            if (Character.isLetterOrDigit(c)) {
+                current.append(TextNormalizer.fold(c));
+            } else if (!current.isEmpty()) {
+                out.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) out.add(current.toString());
+        return out;
+    }
+}
@@ -0,0 +1,325 @@
+package iuh.fit.se.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import iuh.fit.se.loadtest.stub.LatencyProfile;
+import iuh.fit.se.loadtest.stub.StubChatCompletionServer;
+import iuh.fit.se.loadtest.stub.StubGeminiSearchServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load test toàn bộ ứng dụng (Tomcat + ChatService + Feign + chat memory MariaDB) với upstream giả:
+ * {@link StubChatCompletionServer} thay Gemini chat completions, {@link StubGeminiSearchServer} thay Flask.
+ * Mỗi kịch bản gửi {@code loadtest.requests} request với {@code loadtest.concurrency} client đồng thời
+ * (closed loop), in p50/p95/p99, throughput, tỉ lệ lỗi và ghi {@code target/load-test/chat-endpoints.json}
+ * để so giữa các lần chạy trước khi deploy.
+ *
+ * <p>Chạy (cần Docker cho MariaDB):
+ * <pre>
+ * mvn test -Pload-test -Dtest=ChatEndpointsLoadTest -Dtest.argLine=-Xmx1g
+ * mvn test -Pload-test -Dtest=ChatEndpointsLoadTest -Dloadtest.concurrency=200 -Dloadtest.llm.p99=8s
+ * </pre>
+ * Tham số ({@code -D}): {@code loadtest.requests}, {@code loadtest.concurrency}, {@code loadtest.warmup},
+ * {@code loadtest.llm.median|p99|error-rate|chunk-delay}, {@code loadtest.search.median|p99|error-rate},
+ * {@code loadtest.image.median|p99|error-rate}, {@code loadtest.max-error-rate}.
+ * Lỗi LLM giả lập là 429 (quota), đi qua limiter / retry như thật.
+ */
+@Tag("load")
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.ai.openai.api-key=load-test",
+        "spring.jpa.show-sql=false",
+        // Đo sức chứa của service, không phải của một client: tắt rate limit theo user / IP
+        "chat-ai.admission.enabled=false",
+        // Quota thật của Gemini thấp hơn nhiều; ở đây để limiter không thành nút cổ chai giả
+        "chat-ai.llm-rate-limit.initial-rate=200",
+        "chat-ai.llm-rate-limit.max-rate=500",
+        // Log INFO mỗi request (emoji log) in ra console sẽ lấn át số liệu
+        "logging.level.iuh.fit.se=WARN"
+})
+class ChatEndpointsLoadTest {
+
+    private static final int REQUESTS = Integer.getInteger("loadtest.requests", 300);
+    private static final int CONCURRENCY = Integer.getInteger("loadtest.concurrency", 50);
+    private static final int WARMUP = Integer.getInteger("loadtest.warmup", 30);
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(120);
+
+    private static final String[] PRODUCTS = {"áo hoodie", "áo thun", "quần jean", "giày thể thao", "túi xách", "váy dạ hội"};
+    private static final String[] COLORS = {"màu đen", "màu trắng", "màu xanh navy", "màu be", "màu đỏ đô"};
+    private static final String[] SIZES = {"size S", "size M", "size L", "size XL"};
+    private static final String[] POLICY_QUESTIONS = {
+            "Chính sách hoàn tiền khi hàng bị lỗi như thế nào vậy shop?",
+            "Đổi trả hàng trong bao nhiêu ngày thì được chấp nhận?",
+            "Sản phẩm điện tử được bảo hành bao lâu?",
+            "Quy định về hàng cấm bán trên sàn là gì?"
+    };
+    private static final String[] SMALL_TALK = {
+            "Xin chào, bạn là ai vậy?",
+            "Cảm ơn bạn nhiều nha, hôm nay mình vui lắm",
+            "Bạn có thể giúp mình những việc gì?",
+            "Hôm nay trời mưa quá, bạn kể chuyện gì vui đi"
+    };
+
+    @Container
+    @ServiceConnection
+    static final MariaDBContainer<?> MARIADB = new MariaDBContainer<>("mariadb:11.4");
+
+    static final StubChatCompletionServer LLM;
+    static final StubGeminiSearchServer GEMINI;
+
+    static {
+        try {
+            LLM = new StubChatCompletionServer(
+                    profile("loadtest.llm", "800ms", "3s"), duration("loadtest.llm.chunk-delay", "15ms"));
+            GEMINI = new StubGeminiSearchServer(
+                    profile("loadtest.search", "120ms", "600ms"), profile("loadtest.image", "400ms", "1500ms"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void upstreams(DynamicPropertyRegistry registry) {
+        registry.add("spring.ai.openai.chat.base-url", LLM::baseUrl);
+        registry.add("spring.ai.openai.chat.completions-path", () -> StubChatCompletionServer.PATH);
+        registry.add("spring.cloud.openfeign.client.config.gemini-service.url", GEMINI::url);
+    }
+
+    @AfterAll
+    static void stopStubs() {
+        LLM.close();
+        GEMINI.close();
+    }
+
+    @LocalServerPort
+    int port;
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final List<byte[]> images = jpegs(24);
+
+    @Test
+    void chatEndpointsUnderLoad() throws Exception {
+        Map<String, IntFunction<HttpRequest>> scenarios = new LinkedHashMap<>();
+        // Tìm sản phẩm rõ ràng: phần lớn đi đường tắt (không qua LLM) → Flask
+        scenarios.put("chat-product", i -> chat("/chat", "Tìm giúp mình " + PRODUCTS[i % PRODUCTS.length]
+                + " " + COLORS[i / PRODUCTS.length % COLORS.length] + " " + SIZES[i % SIZES.length], null));
+        // LLM → tool policy_search → LLM, có chat memory
+        scenarios.put("chat-policy", i -> chat("/chat", POLICY_QUESTIONS[i % POLICY_QUESTIONS.length], "policy-" + i % 40));
+        // Một lượt LLM, chat memory đọc/ghi (hội thoại lặp lại để có lịch sử)
+        scenarios.put("chat-small-talk", i -> chat("/chat", SMALL_TALK[i % SMALL_TALK.length], "talk-" + i % 40));
+        scenarios.put("chat-stream", i -> chat("/chat/stream", i % 2 == 0
+                ? SMALL_TALK[i % SMALL_TALK.length]
+                : POLICY_QUESTIONS[i % POLICY_QUESTIONS.length], "stream-" + i % 40));
+        // Ảnh + từ khoá tìm kiếm → /index/search-by-image-multi (ảnh xoay vòng để có cả cache hit lẫn miss)
+        scenarios.put("image-search", i -> image("Tìm sản phẩm giống hình này", i));
+        // Ảnh + câu hỏi thường → vision qua LLM, có chat memory
+        scenarios.put("image-vision", i -> image("Áo này phối với quần gì thì đẹp?", i));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+
+        for (var s : scenarios.entrySet()) {
+            run(client, s.getKey() + "-warmup", WARMUP, s.getValue());
+        }
+
+        List<LoadReport.Summary> summaries = new ArrayList<>();
+        for (var s : scenarios.entrySet()) {
+            summaries.add(run(client, s.getKey(), REQUESTS, s.getValue()));
+        }
+
+        System.out.println(LLM);
+        System.out.println(GEMINI);
+        System.out.printf("concurrency=%d, requests/scenario=%d, LLM requests=%d (tool calls %d, streams %d, 429 %d), "
+                        + "search=%d, image=%d, search failures=%d%n",
+                CONCURRENCY, REQUESTS, LLM.requests(), LLM.toolCalls(), LLM.streams(), LLM.throttled(),
+                GEMINI.searchRequests(), GEMINI.imageRequests(), GEMINI.failures());
+        System.out.println(LoadReport.Summary.header());
+        summaries.forEach(System.out::println);
+        writeReport(summaries);
+
+        for (LoadReport.Summary s : summaries) {
+            assertTrue(s.errorRate() <= MAX_ERROR_RATE,
+                    s.scenario() + " error rate " + s.errorRate() + " > " + MAX_ERROR_RATE + " " + s.outcomes());
+        }
+    }
+
+    /* ------------ Chạy kịch bản ------------ */
+
+    private LoadReport.Summary run(HttpClient client, String name, int requests,
+                                   IntFunction<HttpRequest> request) throws InterruptedException {
+        LoadReport report = new LoadReport(name, requests);
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        report.start();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                inFlight.acquire();
+                HttpRequest req = request.apply(i);
+                users.submit(() -> {
+                    long start = System.nanoTime();
+                    String outcome;
+                    try {
+                        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
+                        outcome = classify(resp);
+                    } catch (IOException e) {
+                        outcome = e.getClass().getSimpleName();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        outcome = "interrupted";
+                    } finally {
+                        inFlight.release();
+                    }
+                    report.record(outcome, System.nanoTime() - start);
+                });
+            }
+        }
+        report.finish();
+        return report.summary();
+    }
+
+    /** Service trả 200 kèm JSON lỗi cho FE, nên phải đọc body để biết request có thực sự thành công. */
+    static String classify(HttpResponse<String> resp) {
+        if (resp.statusCode() != 200) return "http_" + resp.statusCode();
+        String body = resp.body();
+        if (body == null || body.isEmpty()) return "empty";
+        if (body.contains("event:error")) return "stream_error";
+        if (body.contains("Hệ thống đang bận")) return "busy";
+        if (body.contains("Lỗi xử lý") || body.contains("Lỗi định dạng") || body.startsWith("Oops")) return "app_error";
+        if (body.contains("dịch vụ tìm kiếm")) return "search_unavailable";
+        return LoadReport.OK;
+    }
+
+    private void writeReport(List<LoadReport.Summary> summaries) throws IOException {
+        Path out = Path.of(System.getProperty("loadtest.report", "target/load-test/chat-endpoints.json"));
+        Files.createDirectories(out.toAbsolutePath().getParent());
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("concurrency", CONCURRENCY);
+        report.put("requestsPerScenario", REQUESTS);
+        report.put("llm", LLM.toString());
+        report.put("gemini", GEMINI.toString());
+        report.put("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        report.put("scenarios", summaries);
+        mapper.writeValue(out.toFile(), report);
+        System.out.println("Report: " + out.toAbsolutePath());
+    }
+
+    /* ------------ Request ------------ */
+
+    private HttpRequest chat(String path, String message, String conversationId) {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("message", message);
+        if (conversationId != null) body.put("conversationId", conversationId);
+        try {
+            return HttpRequest.newBuilder(uri(path))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest image(String message, int i) {
+        String boundary = "----load-test-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        UnaryOperator<String> field = name -> "--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + name + "\"";
+        write(body, field.apply("file") + "; filename=\"image-" + i % images.size() + ".jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n");
+        body.writeBytes(images.get(i % images.size()));
+        write(body, "\r\n" + field.apply("message") + "\r\n\r\n" + message + "\r\n");
+        write(body, field.apply("conversationId") + "\r\n\r\nimage-" + i % 40 + "\r\n");
+        write(body, "--" + boundary + "--\r\n");
+        return HttpRequest.newBuilder(uri("/chat-with-image"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + port + "/chat-ai" + path);
+    }
+
+    private static void write(ByteArrayOutputStream out, String s) {
+        out.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Ảnh chụp sản phẩm giả (640x480, JPEG ~ vài chục KB), mỗi ảnh một nội dung khác nhau. */
+    private static List<byte[]> jpegs(int count) {
+        Random random = new Random(42);
+        List<byte[]> out = new ArrayList<>(count);
+        for (int n = 0; n < count; n++) {
+            BufferedImage img = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = img.createGraphics();
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillRect(0, 0, 640, 480);
+            for (int r = 0; r < 40; r++) {
+                g.setColor(new Color(random.nextInt(0xFFFFFF)));
+                g.fillOval(random.nextInt(600), random.nextInt(440), 20 + random.nextInt(200), 20 + random.nextInt(200));
+            }
+            g.dispose();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                ImageIO.write(img, "jpg", bytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            out.add(bytes.toByteArray());
+        }
+        return out;
+    }
+
+    /* ------------ Cấu hình qua -D ------------ */
+
+    private static LatencyProfile profile(String prefix, String median, String p99) {
+        return new LatencyProfile(duration(prefix + ".median", median), duration(prefix + ".p99", p99),
+                Double.parseDouble(System.getProperty(prefix + ".error-rate", "0")));
+    }
+
+    private static Duration duration(String key, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(key, defaultValue));
+    }
+}
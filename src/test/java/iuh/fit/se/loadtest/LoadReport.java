@@ -0,0 +1,78 @@
+package iuh.fit.se.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Gom kết quả một kịch bản load: độ trễ từng request (ns) và số request theo outcome.
+ * Thread-safe; {@link #summary()} tính p50/p95/p99, throughput và tỉ lệ lỗi sau khi chạy xong.
+ */
+final class LoadReport {
+
+    static final String OK = "ok";
+
+    private final String scenario;
+    private final long[] latencies;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    LoadReport(String scenario, int capacity) {
+        this.scenario = scenario;
+        this.latencies = new long[capacity];
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    void record(String outcome, long nanos) {
+        int i = recorded.getAndIncrement();
+        if (i < latencies.length) latencies[i] = nanos;
+        outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+    }
+
+    Summary summary() {
+        int n = Math.min(recorded.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        outcomes.forEach((k, v) -> counts.put(k, v.sum()));
+        long ok = counts.getOrDefault(OK, 0L);
+        double seconds = (endNanos - startNanos) / 1e9;
+        return new Summary(scenario, n, ok, n == 0 ? 0 : 1.0 - (double) ok / n,
+                n / seconds, millis(sorted, 0.50), millis(sorted, 0.95), millis(sorted, 0.99),
+                n == 0 ? 0 : sorted[n - 1] / 1e6, counts);
+    }
+
+    private static double millis(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    /** Kết quả một kịch bản (cũng được ghi ra file JSON để so giữa các lần chạy). */
+    record Summary(String scenario, int requests, long ok, double errorRate, double throughput,
+                   double p50Ms, double p95Ms, double p99Ms, double maxMs, Map<String, Long> outcomes) {
+
+        static String header() {
+            return String.format("%-24s %8s %9s %9s %9s %9s %9s %8s  %s",
+                    "scenario", "requests", "req/s", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)", "errors", "outcomes");
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %7.2f%%  %s",
+                    scenario, requests, throughput, p50Ms, p95Ms, p99Ms, maxMs, errorRate * 100, outcomes);
+        }
+    }
+}
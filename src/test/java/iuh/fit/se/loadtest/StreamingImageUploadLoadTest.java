@@ -0,0 +1,168 @@
+package iuh.fit.se.loadtest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import iuh.fit.se.dto.response.SearchByImageResponse;
+import iuh.fit.se.repository.httpclient.GeminiClient;
+import iuh.fit.se.repository.httpclient.StreamingImageUploader;
+import iuh.fit.se.service.image.PreparedImage;
+import iuh.fit.se.util.BlockingCallGuard;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Upload đồng thời nhiều ảnh 10 MB (đã ghi ra file tạm) qua {@link StreamingImageUploader} tới một Flask giả
+ * đọc hết body. Nếu body được dựng trên heap như Feign + {@code SpringFormEncoder}, 32 upload cần ≥ 320 MB -
+ * vượt heap cố định 256 MB của profile load-test. Với body stream, phần heap giữ lâu (old gen, nơi các mảng lớn
+ * được cấp phát) gần như không đổi khi tăng số upload đồng thời.
+ *
+ * Chạy: mvn test -Pload-test -Dtest=StreamingImageUploadLoadTest
+ */
+@Tag("load")
+class StreamingImageUploadLoadTest {
+
+    private static final int IMAGE_BYTES = 10 * 1024 * 1024;
+    private static final long MAX_RETAINED_GROWTH = 64L * 1024 * 1024;
+    private static final String OK_BODY =
+            "{\"success\":true,\"search_type\":\"image\",\"total_results\":0,\"results\":[]}";
+
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private HttpServer server;
+    private Path image;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        server.createContext("/gemini" + GeminiClient.IMAGE_SEARCH_PATH, exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                receivedBytes.addAndGet(in.transferTo(OutputStream.nullOutputStream()));
+            }
+            byte[] body = OK_BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        // Nội dung ngẫu nhiên (không nén được) như JPEG thật
+        image = Files.createTempFile("upload-test-", ".jpg");
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(7);
+        try (OutputStream out = Files.newOutputStream(image)) {
+            for (int written = 0; written < IMAGE_BYTES; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.stop(0);
+        Files.deleteIfExists(image);
+    }
+
+    @Test
+    void retainedHeapStaysFlatWithConcurrentTenMegabyteUploads() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        URI base = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/gemini");
+
+        try (StreamingImageUploader uploader = new StreamingImageUploader(base, Duration.ofSeconds(5),
+                Duration.ofSeconds(120), new BlockingCallGuard("test-image", 64, Duration.ofSeconds(60)), mapper)) {
+            run(uploader, 4);   // warm-up: class loading, kết nối
+            List<Run> runs = List.of(run(uploader, 8), run(uploader, 32));
+            runs.forEach(System.out::println);
+
+            for (Run r : runs) {
+                assertEquals(r.uploads(), r.ok(), "all uploads should succeed");
+                assertTrue(r.retainedGrowth() < MAX_RETAINED_GROWTH,
+                        r + " retained heap grew more than " + MAX_RETAINED_GROWTH / (1024 * 1024) + " MB");
+            }
+        }
+    }
+
+    private Run run(StreamingImageUploader uploader, int concurrency) throws Exception {
+        long before = retainedHeap();
+        resetPeaks();
+        receivedBytes.set(0);
+        long start = System.nanoTime();
+
+        int ok = 0;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<SearchByImageResponse>> calls = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                // Không close(): file dùng chung cho mọi upload, xoá ở tearDown
+                PreparedImage spooled = PreparedImage.spooled(image, "image/jpeg", "photo-" + i + ".jpg");
+                calls.add(clients.submit(() -> uploader.searchByImage(spooled, 5, 300, 8, 0.8)));
+            }
+            for (Future<SearchByImageResponse> call : calls) {
+                if (Boolean.TRUE.equals(call.get().getSuccess())) ok++;
+            }
+        }
+        return new Run(concurrency, ok, (System.nanoTime() - start) / 1_000_000,
+                receivedBytes.get(), peakRetainedHeap() - before);
+    }
+
+    /** Pool heap ngoài young gen (Eden/Survivor): old gen, nơi G1/Parallel cấp phát mảng lớn. */
+    private static List<MemoryPoolMXBean> retainedPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String name = pool.getName();
+            if (pool.getType() == MemoryType.HEAP && !name.contains("Eden") && !name.contains("Survivor")) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    private static long retainedHeap() {
+        System.gc();
+        return retainedPools().stream().mapToLong(p -> p.getUsage().getUsed()).sum();
+    }
+
+    private static void resetPeaks() {
+        retainedPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    private static long peakRetainedHeap() {
+        return retainedPools().stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+    }
+
+    private record Run(int uploads, int ok, long elapsedMs, long receivedBytes, long retainedGrowth) {
+        @Override
+        public String toString() {
+            return String.format("[%d concurrent x 10MB] ok=%d elapsed=%dms received=%dMB retainedHeapGrowth=%dMB maxHeap=%dMB",
+                    uploads, ok, elapsedMs, receivedBytes / (1024 * 1024), retainedGrowth / (1024 * 1024),
+                    Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package iuh.fit.se.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.ChatAiServiceApplication;
+import iuh.fit.se.loadtest.stub.LatencyProfile;
+import iuh.fit.se.loadtest.stub.StubChatCompletionServer;
+import iuh.fit.se.loadtest.stub.StubGeminiSearchServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MariaDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * So sánh sức chứa của CHÍNH ứng dụng (Tomcat + ChatService + Feign + chat memory MariaDB + {@code BlockingCallGuard})
+ * giữa hai chế độ, trong cùng một JVM với heap cố định:
+ * <ul>
+ *   <li>{@code platform}: {@code spring.threads.virtual.enabled=false}, Tomcat mặc định 200 thread.</li>
+ *   <li>{@code virtual}: {@code spring.threads.virtual.enabled=true}.</li>
+ * </ul>
+ * Upstream là stub của {@link ChatEndpointsLoadTest} với độ trễ cố định: một nửa request đi đường tắt tìm sản phẩm
+ * (Feign → Flask giả), nửa còn lại là small talk qua LLM giả + chat memory. {@code loadtest.vt.requests} request được
+ * bắn cùng lúc (nhiều hơn hẳn 200 thread). Mỗi chế độ đo throughput, p99, số platform thread cao nhất và heap cao nhất.
+ *
+ * <p>Khẳng định: cả hai chế độ không lỗi (không OOM, không timeout), virtual đạt throughput ≥ {@code loadtest.vt.min-speedup}
+ * lần platform, và heap cao nhất của virtual vẫn dưới {@code loadtest.vt.max-heap-ratio} của -Xmx - tức sức chứa tăng
+ * trong cùng một mức heap - đồng thời dùng ít platform thread hơn.
+ *
+ * <p>Chạy (cần Docker cho MariaDB):
+ * <pre>
+ * mvn test -Pload-test -Dtest=VirtualThreadCapacityLoadTest -Dtest.argLine="-Xms512m -Xmx512m"
+ * </pre>
+ */
+@Tag("load")
+@Testcontainers(disabledWithoutDocker = true)
+class VirtualThreadCapacityLoadTest {
+
+    private static final int REQUESTS = Integer.getInteger("loadtest.vt.requests", 1_000);
+    private static final int WARMUP = Integer.getInteger("loadtest.vt.warmup", 50);
+    private static final double MIN_SPEEDUP = Double.parseDouble(System.getProperty("loadtest.vt.min-speedup", "1.5"));
+    private static final double MAX_HEAP_RATIO = Double.parseDouble(System.getProperty("loadtest.vt.max-heap-ratio", "0.9"));
+    private static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.01"));
+    private static final Duration UPSTREAM_LATENCY = Duration.ofMillis(250);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(120);
+    private static final int TOMCAT_DEFAULT_MAX_THREADS = 200;
+
+    @Container
+    static final MariaDBContainer<?> MARIADB = new MariaDBContainer<>("mariadb:11.4");
+
+    static final StubChatCompletionServer LLM;
+    static final StubGeminiSearchServer GEMINI;
+
+    static {
+        try {
+            LLM = new StubChatCompletionServer(LatencyProfile.fixed(UPSTREAM_LATENCY), Duration.ZERO);
+            GEMINI = new StubGeminiSearchServer(LatencyProfile.fixed(UPSTREAM_LATENCY), LatencyProfile.fixed(UPSTREAM_LATENCY));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterAll
+    static void stopStubs() {
+        LLM.close();
+        GEMINI.close();
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void virtualThreadsServeMoreConcurrentRequestsAtEqualHeap() throws Exception {
+        ModeResult platform = runMode("platform", false);
+        ModeResult virtual = runMode("virtual", true);
+
+        long maxHeap = Runtime.getRuntime().maxMemory();
+        System.out.println(LoadReport.Summary.header());
+        System.out.println(platform.summary());
+        System.out.println(virtual.summary());
+        System.out.println(platform);
+        System.out.println(virtual);
+
+        assertTrue(platform.summary().errorRate() <= MAX_ERROR_RATE, "platform " + platform.summary().outcomes());
+        assertTrue(virtual.summary().errorRate() <= MAX_ERROR_RATE, "virtual " + virtual.summary().outcomes());
+        assertEquals(REQUESTS, virtual.summary().requests());
+        assertTrue(virtual.summary().throughput() >= platform.summary().throughput() * MIN_SPEEDUP,
+                "virtual threads should serve ≥ " + MIN_SPEEDUP + "x the throughput of a 200-thread Tomcat");
+        assertTrue(virtual.peakHeap() <= maxHeap * MAX_HEAP_RATIO,
+                "virtual peak heap " + mb(virtual.peakHeap()) + "MB exceeds " + MAX_HEAP_RATIO + " of -Xmx " + mb(maxHeap) + "MB");
+        assertTrue(virtual.peakPlatformThreads() < platform.peakPlatformThreads(),
+                "virtual mode should not need a platform thread per in-flight request");
+    }
+
+    /* ------------ Một chế độ: khởi động app, warmup, bắn tải, đo ------------ */
+
+    private ModeResult runMode(String mode, boolean virtualThreads) throws InterruptedException {
+        try (ConfigurableApplicationContext app = start(virtualThreads)) {
+            int port = ((ServletWebServerApplicationContext) app).getWebServer().getPort();
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+
+            burst(client, port, mode + "-warmup", WARMUP);
+
+            resetPeaks();
+            LoadReport.Summary summary = burst(client, port, mode, REQUESTS);
+            return new ModeResult(mode, summary, peakHeapBytes(), threads().getPeakThreadCount());
+        }
+    }
+
+    private ConfigurableApplicationContext start(boolean virtualThreads) {
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("server.port", 0);
+        props.put("spring.threads.virtual.enabled", virtualThreads);
+        props.put("server.tomcat.threads.max", TOMCAT_DEFAULT_MAX_THREADS);
+        props.put("spring.datasource.url", MARIADB.getJdbcUrl());
+        props.put("spring.datasource.username", MARIADB.getUsername());
+        props.put("spring.datasource.password", MARIADB.getPassword());
+        props.put("spring.ai.openai.api-key", "load-test");
+        props.put("spring.ai.openai.chat.base-url", LLM.baseUrl());
+        props.put("spring.ai.openai.chat.completions-path", StubChatCompletionServer.PATH);
+        props.put("spring.cloud.openfeign.client.config.gemini-service.url", GEMINI.url());
+        props.put("spring.jpa.show-sql", false);
+        // Đo sức chứa của service: tắt rate limit theo user / IP và để limiter LLM không thành nút cổ chai giả
+        props.put("chat-ai.admission.enabled", false);
+        props.put("chat-ai.llm-rate-limit.initial-rate", 2_000);
+        props.put("chat-ai.llm-rate-limit.max-rate", 5_000);
+        props.put("logging.level.iuh.fit.se", "WARN");
+        return new SpringApplicationBuilder(ChatAiServiceApplication.class).properties(props).run();
+    }
+
+    /** Bắn {@code requests} request cùng lúc (mỗi request một virtual thread phía client) và chờ tất cả xong. */
+    private LoadReport.Summary burst(HttpClient client, int port, String name, int requests) throws InterruptedException {
+        LoadReport report = new LoadReport(name, requests);
+        CountDownLatch go = new CountDownLatch(1);
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                HttpRequest req = request(port, name, i);
+                users.submit(() -> {
+                    go.await();
+                    long start = System.nanoTime();
+                    String outcome;
+                    try {
+                        outcome = ChatEndpointsLoadTest.classify(client.send(req, HttpResponse.BodyHandlers.ofString()));
+                    } catch (IOException e) {
+                        outcome = e.getClass().getSimpleName();
+                    }
+                    report.record(outcome, System.nanoTime() - start);
+                    return null;
+                });
+            }
+            report.start();
+            go.countDown();
+        }
+        report.finish();
+        return report.summary();
+    }
+
+    /** Nửa tìm sản phẩm (Feign), nửa small talk (LLM + chat memory); nội dung khác nhau để không trúng cache. */
+    private HttpRequest request(int port, String run, int i) {
+        Map<String, String> body = new LinkedHashMap<>();
+        if (i % 2 == 0) {
+            body.put("message", "Tìm giúp mình áo hoodie mã " + run + "-" + i);
+        } else {
+            body.put("message", "Xin chào, hôm nay bạn thế nào? (" + run + "-" + i + ")");
+            body.put("conversationId", run + "-talk-" + i % 100);
+        }
+        try {
+            return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/chat-ai/chat"))
+                    .timeout(REQUEST_TIMEOUT)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /* ------------ Heap / thread ------------ */
+
+    private static void resetPeaks() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+        threads().resetPeakThreadCount();
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /** Chỉ đếm platform thread - virtual thread không xuất hiện trong ThreadMXBean. */
+    private static ThreadMXBean threads() {
+        return ManagementFactory.getThreadMXBean();
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private record ModeResult(String mode, LoadReport.Summary summary, long peakHeap, int peakPlatformThreads) {
+        @Override
+        public String toString() {
+            return String.format("[%s] peakHeap=%dMB maxHeap=%dMB peakPlatformThreads=%d",
+                    mode, mb(peakHeap), mb(Runtime.getRuntime().maxMemory()), peakPlatformThreads);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package iuh.fit.se.loadtest.stub;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Độ trễ giả lập theo phân phối log-normal, cho bởi trung vị và p99 (đuôi dài như upstream thật).
+ *
+ * @param median    trung vị
+ * @param p99       percentile 99 (≥ median)
+ * @param errorRate tỉ lệ request trả lỗi (0..1)
+ */
+public record LatencyProfile(Duration median, Duration p99, double errorRate) {
+
+    /** z của percentile 99 trong phân phối chuẩn. */
+    private static final double Z_99 = 2.326;
+
+    public static LatencyProfile fixed(Duration latency) {
+        return new LatencyProfile(latency, latency, 0);
+    }
+
+    public Duration sample() {
+        long m = Math.max(0, median.toNanos());
+        if (m == 0 || p99.compareTo(median) <= 0) return median;
+        double sigma = Math.log((double) p99.toNanos() / m) / Z_99;
+        double nanos = m * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return Duration.ofNanos((long) nanos);
+    }
+
+    public boolean shouldFail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    static void sleep(Duration d) {
+        try {
+            Thread.sleep(d);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "p50=" + median.toMillis() + "ms p99=" + p99.toMillis() + "ms errors=" + errorRate;
+    }
+}
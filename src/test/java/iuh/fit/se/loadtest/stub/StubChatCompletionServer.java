@@ -0,0 +1,265 @@
+package iuh.fit.se.loadtest.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Endpoint chat completions tương thích OpenAI giả ({@code POST /v1beta/chat/completions}) thay cho Gemini.
+ *
+ * <p>Kịch bản cố định theo tin nhắn cuối:
+ * <ul>
+ *   <li>Tin nhắn cuối là kết quả tool → trả lời văn bản (lượt thứ hai của vòng lặp tool).</li>
+ *   <li>Hỏi sản phẩm và request có tool {@code searchProducts} → tool call {@code searchProducts(query, limit=4)}.</li>
+ *   <li>Hỏi chính sách và có tool {@code policy_search} → tool call {@code policy_search(q, limit=3)}.</li>
+ *   <li>Còn lại → trả lời văn bản.</li>
+ * </ul>
+ * {@code "stream": true} trả SSE: chờ {@code latency} (≈ token đầu tiên), sau đó mỗi chunk cách nhau
+ * {@code chunkDelay}. Không stream: chờ {@code latency} + số chunk × {@code chunkDelay} rồi trả một lần.
+ * Request "lỗi" theo {@link LatencyProfile#errorRate()} nhận 429 kèm {@code Retry-After: 1} (như quota Gemini).
+ */
+public final class StubChatCompletionServer implements AutoCloseable {
+
+    public static final String PATH = "/v1beta/chat/completions";
+
+    private static final String[] PRODUCT_WORDS = {"tìm", "áo", "giày", "quần", "mua", "sản phẩm", "túi"};
+    private static final String[] POLICY_WORDS = {"chính sách", "hoàn tiền", "đổi trả", "bảo hành", "quy định"};
+    private static final String ANSWER = "Dạ, mình đã xem qua rồi nè. Theo thông tin hiện có thì bạn có thể yên tâm nhé, "
+            + "nếu cần thêm chi tiết về kích cỡ, màu sắc hay chính sách đổi trả thì cứ hỏi mình thêm. Chúc bạn một ngày vui vẻ!";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LatencyProfile latency;
+    private final Duration chunkDelay;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder toolCalls = new LongAdder();
+    private final LongAdder streams = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public StubChatCompletionServer(LatencyProfile latency, Duration chunkDelay) throws IOException {
+        this.latency = latency;
+        this.chunkDelay = chunkDelay;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext(PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Giá trị cho {@code spring.ai.openai.chat.base-url}. */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long toolCalls() {
+        return toolCalls.sum();
+    }
+
+    public long streams() {
+        return streams.sum();
+    }
+
+    public long throttled() {
+        return throttled.sum();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        JsonNode request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = mapper.readTree(in);
+        }
+        boolean stream = request.path("stream").asBoolean(false);
+        String model = request.path("model").asText("gemini-stub");
+
+        if (latency.shouldFail()) {
+            throttled.increment();
+            byte[] body = "{\"error\":{\"code\":429,\"message\":\"Resource has been exhausted\",\"status\":\"RESOURCE_EXHAUSTED\"}}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Retry-After", "1");
+            exchange.sendResponseHeaders(429, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            return;
+        }
+
+        ObjectNode toolCall = scriptedToolCall(request);
+        if (toolCall != null) toolCalls.increment();
+
+        if (stream) {
+            streams.increment();
+            stream(exchange, model, toolCall);
+        } else {
+            complete(exchange, model, toolCall);
+        }
+    }
+
+    /** Tool call theo kịch bản, hoặc {@code null} nếu lượt này trả lời văn bản. */
+    private ObjectNode scriptedToolCall(JsonNode request) {
+        JsonNode messages = request.path("messages");
+        JsonNode last = messages.isArray() && !messages.isEmpty() ? messages.get(messages.size() - 1) : null;
+        if (last == null || !"user".equals(last.path("role").asText())) return null;
+
+        Set<String> tools = new HashSet<>();
+        request.path("tools").forEach(t -> tools.add(t.path("function").path("name").asText()));
+
+        String text = userText(last.path("content"));
+        String lower = text.toLowerCase(Locale.ROOT);
+        ObjectNode args = mapper.createObjectNode();
+        String name;
+        if (tools.contains("policy_search") && containsAny(lower, POLICY_WORDS)) {
+            name = "policy_search";
+            args.put("q", text).put("limit", 3);
+        } else if (tools.contains("searchProducts") && containsAny(lower, PRODUCT_WORDS)) {
+            name = "searchProducts";
+            args.put("query", text).put("limit", 4);
+        } else {
+            return null;
+        }
+
+        ObjectNode call = mapper.createObjectNode();
+        call.put("id", "call_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16));
+        call.put("type", "function");
+        call.putObject("function").put("name", name).put("arguments", args.toString());
+        return call;
+    }
+
+    private void complete(HttpExchange exchange, String model, ObjectNode toolCall) throws IOException {
+        String[] chunks = toolCall == null ? chunks() : new String[0];
+        LatencyProfile.sleep(latency.sample().plus(chunkDelay.multipliedBy(chunks.length)));
+
+        ObjectNode body = envelope(model, "chat.completion");
+        ObjectNode choice = ((ArrayNode) body.get("choices")).addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message").put("role", "assistant");
+        if (toolCall != null) {
+            message.putNull("content");
+            message.putArray("tool_calls").add(toolCall);
+            choice.put("finish_reason", "tool_calls");
+        } else {
+            message.put("content", String.join("", chunks));
+            choice.put("finish_reason", "stop");
+        }
+        body.putObject("usage").put("prompt_tokens", 900).put("completion_tokens", chunks.length)
+                .put("total_tokens", 900 + chunks.length);
+
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, ObjectNode toolCall) throws IOException {
+        LatencyProfile.sleep(latency.sample());
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream os = exchange.getResponseBody()) {
+            if (toolCall != null) {
+                ObjectNode delta = mapper.createObjectNode().put("role", "assistant");
+                ObjectNode indexed = toolCall.deepCopy().put("index", 0);
+                delta.putArray("tool_calls").add(indexed);
+                event(os, chunk(model, delta, "tool_calls"));
+            } else {
+                boolean first = true;
+                for (String piece : chunks()) {
+                    ObjectNode delta = mapper.createObjectNode();
+                    if (first) delta.put("role", "assistant");
+                    delta.put("content", piece);
+                    event(os, chunk(model, delta, null));
+                    first = false;
+                    LatencyProfile.sleep(chunkDelay);
+                }
+                event(os, chunk(model, mapper.createObjectNode(), "stop"));
+            }
+            os.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+        }
+    }
+
+    private ObjectNode chunk(String model, ObjectNode delta, String finishReason) {
+        ObjectNode body = envelope(model, "chat.completion.chunk");
+        ObjectNode choice = ((ArrayNode) body.get("choices")).addObject();
+        choice.put("index", 0);
+        choice.set("delta", delta);
+        if (finishReason == null) choice.putNull("finish_reason");
+        else choice.put("finish_reason", finishReason);
+        return body;
+    }
+
+    private ObjectNode envelope(String model, String object) {
+        ObjectNode body = mapper.createObjectNode();
+        body.put("id", "chatcmpl-" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE));
+        body.put("object", object);
+        body.put("created", System.currentTimeMillis() / 1000);
+        body.put("model", model);
+        body.putArray("choices");
+        return body;
+    }
+
+    private void event(OutputStream os, ObjectNode data) throws IOException {
+        os.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        os.flush();
+    }
+
+    /** Câu trả lời chia theo từ, mỗi phần ≈ một token. */
+    private static String[] chunks() {
+        String[] words = ANSWER.split(" ");
+        for (int i = 0; i < words.length - 1; i++) words[i] = words[i] + " ";
+        return words;
+    }
+
+    /** Nội dung user có thể là chuỗi hoặc mảng part (text + image_url khi gửi ảnh). */
+    private static String userText(JsonNode content) {
+        if (content.isTextual()) return content.asText();
+        StringBuilder sb = new StringBuilder();
+        content.forEach(part -> {
+            if ("text".equals(part.path("type").asText())) sb.append(part.path("text").asText());
+        });
+        return sb.toString();
+    }
+
+    private static boolean containsAny(String text, String[] words) {
+        for (String w : words) {
+            if (text.contains(w)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "chat completions stub: " + latency + ", chunkDelay=" + chunkDelay.toMillis() + "ms";
+    }
+}
@@ -0,0 +1,146 @@
+package iuh.fit.se.loadtest.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flask {@code gemini-service} giả: {@code /gemini/search/search} và {@code /gemini/index/search-by-image-multi}.
+ * Phản hồi là document sản phẩm lớn kiểu Mongo (nhiều variant/ảnh, mô tả dài), độ trễ theo {@link LatencyProfile};
+ * request "lỗi" nhận 503.
+ */
+public final class StubGeminiSearchServer implements AutoCloseable {
+
+    public static final String CONTEXT = "/gemini";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+    private final LatencyProfile search;
+    private final LatencyProfile image;
+
+    private final LongAdder searchRequests = new LongAdder();
+    private final LongAdder imageRequests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public StubGeminiSearchServer(LatencyProfile search, LatencyProfile image) throws IOException {
+        this.search = search;
+        this.image = image;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext(CONTEXT + "/search/search", this::semanticSearch);
+        server.createContext(CONTEXT + "/index/search-by-image-multi", this::imageSearch);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Giá trị cho {@code spring.cloud.openfeign.client.config.gemini-service.url}. */
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + CONTEXT;
+    }
+
+    public long searchRequests() {
+        return searchRequests.sum();
+    }
+
+    public long imageRequests() {
+        return imageRequests.sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    private void semanticSearch(HttpExchange exchange) throws IOException {
+        searchRequests.increment();
+        int topK;
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonNode req = mapper.readTree(in);
+            topK = req.path("top_k").asInt(req.path("topK").asInt(10));
+        }
+        respond(exchange, search, "text", Math.max(1, topK));
+    }
+
+    private void imageSearch(HttpExchange exchange) throws IOException {
+        imageRequests.increment();
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        respond(exchange, image, "image", 5);
+    }
+
+    private void respond(HttpExchange exchange, LatencyProfile profile, String type, int count) throws IOException {
+        LatencyProfile.sleep(profile.sample());
+        if (profile.shouldFail()) {
+            failures.increment();
+            write(exchange, 503, "{\"success\":false,\"error\":\"stub failure\"}".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        write(exchange, 200, bodies.computeIfAbsent(type + ":" + count,
+                k -> searchResponse(type, count).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void write(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /** Cùng dạng phản hồi của Flask; điểm tương đồng giảm dần từ 0.95. */
+    static String searchResponse(String type, int count) {
+        String description = "Chất liệu cotton 100%, form rộng, phù hợp đi học và đi chơi. ".repeat(12);
+        StringBuilder sb = new StringBuilder(count * 4096);
+        sb.append("{\"success\":true,\"query\":\"stub\",\"search_type\":\"").append(type)
+                .append("\",\"total_results\":").append(count).append(",\"results\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"product\":{")
+                    .append("\"_id\":{\"$oid\":\"65f0c0ffee").append(String.format("%014d", i)).append("\"},")
+                    .append("\"name\":\"Áo hoodie nỉ bông mẫu ").append(i).append("\",")
+                    .append("\"description\":\"").append(description).append("\",")
+                    .append("\"percentDiscount\":").append(i % 30).append(',')
+                    .append("\"status\":\"AVAILABLE\",\"sellerId\":\"seller-").append(i % 17).append("\",")
+                    .append("\"variants\":[");
+            for (int v = 0; v < 12; v++) {
+                if (v > 0) sb.append(',');
+                sb.append("{\"size\":\"").append("SMLX".charAt(v % 4)).append("\",\"color\":\"màu ").append(v)
+                        .append("\",\"price\":").append(199000 + v * 10000)
+                        .append(",\"stock\":").append(v * 3).append('}');
+            }
+            sb.append("],\"images\":[");
+            for (int m = 1; m <= 8; m++) {
+                if (m > 1) sb.append(',');
+                sb.append("{\"url\":\"https://cdn.example.com/p/").append(i).append('/').append(m)
+                        .append(".jpg\",\"position\":").append(m).append('}');
+            }
+            sb.append("]},\"similarity_score\":").append(0.95 - i * 0.01)
+                    .append(",\"matched_text\":\"áo hoodie nỉ\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "gemini-service stub: search " + search + ", image " + image;
+    }
+}
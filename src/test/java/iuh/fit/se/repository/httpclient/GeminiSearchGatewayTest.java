@@ -0,0 +1,214 @@
+package iuh.fit.se.repository.httpclient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iuh.fit.se.dto.request.SearchRequest;
+import iuh.fit.se.dto.response.SearchByImageResponse;
+import iuh.fit.se.dto.response.SearchResponse;
+import iuh.fit.se.exception.AppException;
+import iuh.fit.se.exception.ErrorCode;
+import iuh.fit.se.service.metrics.ChatMetrics;
+import iuh.fit.se.util.ResilientOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Kiểm tra circuit breaker / bulkhead / hedge của {@link GeminiSearchGateway} với một Flask giả
+ * (HttpServer cục bộ) có độ trễ cấu hình theo từng request.
+ */
+class GeminiSearchGatewayTest {
+
+    private static final String OK_BODY = "{\"success\":true,\"query\":\"ao\",\"total_results\":0,\"results\":[]}";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile IntFunction<Duration> latency = i -> Duration.ZERO;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private GeminiClient client;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.createContext("/gemini" + GeminiClient.SEARCH_PATH, exchange -> {
+            int index = requests.getAndIncrement();
+            try {
+                Thread.sleep(latency.apply(index).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = OK_BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        client = new StubGeminiClient(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/gemini"));
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void breakerOpensOnSlowUpstreamAndFailsFast() {
+        latency = i -> Duration.ofMillis(500);
+        ResilientOperation semantic = operation(settings(Duration.ofMillis(100), 8, ResilientOperation.Hedge.disabled()));
+        GeminiSearchGateway gateway = gateway(semantic);
+
+        for (int i = 0; i < 4; i++) {
+            AppException e = assertThrows(AppException.class, () -> gateway.semanticSearch(request()));
+            assertEquals(ErrorCode.EXTERNAL_SERVICE_TIMEOUT, e.getErrorCode());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, semantic.state());
+
+        int sent = requests.get();
+        long start = System.nanoTime();
+        AppException e = assertThrows(AppException.class, () -> gateway.semanticSearch(request()));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(ErrorCode.EXTERNAL_SERVICE_UNAVAILABLE, e.getErrorCode());
+        assertTrue(elapsedMs < 50, "open breaker should fail fast, took " + elapsedMs + "ms");
+        assertEquals(sent, requests.get(), "open breaker must not reach the upstream");
+    }
+
+    @Test
+    void bulkheadRejectsCallsBeyondLimit() throws Exception {
+        latency = i -> Duration.ofMillis(300);
+        ResilientOperation semantic = operation(settings(Duration.ofSeconds(2), 2, ResilientOperation.Hedge.disabled()));
+        GeminiSearchGateway gateway = gateway(semantic);
+
+        List<Future<ErrorCode>> calls = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            calls.add(executor.submit(() -> {
+                try {
+                    gateway.semanticSearch(request());
+                    return null;
+                } catch (AppException e) {
+                    return e.getErrorCode();
+                }
+            }));
+            Thread.sleep(20);
+        }
+
+        List<ErrorCode> outcomes = new ArrayList<>();
+        for (Future<ErrorCode> f : calls) outcomes.add(f.get(5, TimeUnit.SECONDS));
+        assertEquals(2, outcomes.stream().filter(c -> c == null).count());
+        assertTrue(outcomes.contains(ErrorCode.SERVER_BUSY));
+        assertEquals(CircuitBreaker.State.CLOSED, semantic.state(), "bulkhead rejections are not upstream failures");
+    }
+
+    @Test
+    void hedgedRequestWinsWhenFirstAttemptStalls() {
+        // Request đầu tiên treo 1.5s, các request sau trả ngay
+        latency = i -> i == 0 ? Duration.ofMillis(1500) : Duration.ZERO;
+        var hedge = new ResilientOperation.Hedge(true, 0.95, Duration.ofMillis(50), Duration.ofMillis(100));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ResilientOperation semantic = new ResilientOperation(GeminiSearchGateway.SEMANTIC_SEARCH,
+                settings(Duration.ofSeconds(3), 4, hedge), executor).bindTo(registry);
+        GeminiSearchGateway gateway = gateway(semantic);
+
+        long start = System.nanoTime();
+        SearchResponse response = gateway.semanticSearch(request());
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(response.getSuccess());
+        assertTrue(elapsedMs < 1000, "hedge should answer before the stalled attempt, took " + elapsedMs + "ms");
+        assertEquals(2, requests.get());
+        assertEquals(1.0, registry.get("gemini.hedge.requests").functionCounter().count());
+        assertEquals(1.0, registry.get("gemini.hedge.wins").functionCounter().count());
+    }
+
+    /* ------------ Helpers ------------ */
+
+    private ResilientOperation operation(ResilientOperation.Settings settings) {
+        return new ResilientOperation(GeminiSearchGateway.SEMANTIC_SEARCH, settings, executor)
+                .bindTo(new SimpleMeterRegistry());
+    }
+
+    private GeminiSearchGateway gateway(ResilientOperation semantic) {
+        ResilientOperation image = operation(settings(Duration.ofSeconds(1), 1, ResilientOperation.Hedge.disabled()));
+        return new GeminiSearchGateway(client, semantic, image, () -> { },
+                new ChatMetrics(new SimpleMeterRegistry()), null);
+    }
+
+    private static ResilientOperation.Settings settings(Duration timeout, int maxConcurrent,
+                                                        ResilientOperation.Hedge hedge) {
+        CircuitBreakerConfig breaker = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofSeconds(30))
+                .build();
+        return new ResilientOperation.Settings(timeout, maxConcurrent, Duration.ZERO, breaker, hedge);
+    }
+
+    private static SearchRequest request() {
+        return SearchRequest.builder().query("áo hoodie").topK(10).build();
+    }
+
+    /** GeminiClient tối giản gọi Flask giả bằng JDK HttpClient (chỉ semantic search). */
+    private final class StubGeminiClient implements GeminiClient {
+        private final URI base;
+        private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        StubGeminiClient(URI base) {
+            this.base = base;
+        }
+
+        @Override
+        public SearchResponse semanticSearch(SearchRequest request) {
+            try {
+                HttpRequest req = HttpRequest.newBuilder(URI.create(base + GeminiClient.SEARCH_PATH))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(request)))
+                        .build();
+                String body = http.send(req, HttpResponse.BodyHandlers.ofString()).body();
+                return mapper.readValue(body, SearchResponse.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public SearchByImageResponse searchByImageUpload(MultipartFile image, Integer topK, Integer candidateK,
+                                                         Integer perProductRerank, Double minSimilarity) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package iuh.fit.se.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iuh.fit.se.dto.ProductSearchPayload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Index từ khoá sản phẩm chạy hoàn toàn offline: nạp file mongoexport, tìm không dấu / theo mã,
+ * gộp RRF với kết quả semantic và thay thế semantic khi gemini-service không trả gì.
+ */
+class ProductSearchIndexTest {
+
+    private static final String CATALOG = """
+            {"_id":{"$oid":"p-hoodie"},"name":"Áo hoodie nỉ đen unisex","percentDiscount":10,"variants":[{"price":350000}],"images":[{"url":"/img/hoodie.jpg"}]}
+            {"_id":{"$oid":"p-af1"},"name":"Giày Nike Air Force 1 '07 trắng","variants":[{"price":2650000}],"images":["/img/af1.mp4","/img/af1.jpg"]}
+            {"_id":{"$oid":"p-tee"},"name":"Áo thun cotton trắng","variants":[{"price":150000}]}
+            {"_id":{"$oid":"p-khoac"},"name":"Áo khoác gió chống nước","variants":[{"price":420000}]}
+            """;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ProductSearchIndex index;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new ProductSearchIndex(new ObjectMapper(), registry, true, "", "", true, 20, 60, 0.75);
+        Path export = dir.resolve("products.json");
+        Files.writeString(export, CATALOG, StandardCharsets.UTF_8);
+        assertEquals(4, index.importCatalog(export));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void importsProductCardsAndSearchesWithoutDiacritics() {
+        List<ProductSearchPayload.Item> hits = index.search("ao hoodie den", 5);
+
+        assertEquals("p-hoodie", hits.get(0).id);
+        ProductSearchPayload.Item hoodie = hits.get(0);
+        assertEquals("Áo hoodie nỉ đen unisex", hoodie.name);
+        assertEquals(350000.0, hoodie.price);
+        assertEquals(10.0, hoodie.discount);
+        assertEquals("/img/hoodie.jpg", hoodie.imageUrl);
+        assertEquals("/products/p-hoodie", hoodie.url);
+    }
+
+    @Test
+    void matchesBrandModelAndExactId() {
+        assertEquals("p-af1", index.search("Nike AF1 air force 1 07", 5).get(0).id);
+        assertEquals("/img/af1.jpg", index.search("air force", 5).get(0).imageUrl);
+        assertEquals("p-khoac", index.search("p-khoac", 5).get(0).id);
+        assertTrue(index.search("laptop gaming", 5).isEmpty());
+    }
+
+    @Test
+    void fallsBackToLexicalWhenSemanticIsEmpty() {
+        List<ProductSearchPayload.Item> ranked = index.rank("áo khoác chống nước", List.of(), 4);
+
+        assertEquals(List.of("p-khoac"), ranked.stream().map(i -> i.id).toList());
+        assertEquals(1.0, registry.get("chat.product.search").tag("source", "lexical").counter().count());
+    }
+
+    @Test
+    void fusesSemanticAndLexicalRankings() {
+        // Semantic xếp áo thun trước, từ khoá chỉ khớp hoodie → hoodie có mặt ở cả hai danh sách nên lên đầu
+        List<ProductSearchPayload.Item> semantic = List.of(card("p-tee"), card("p-hoodie"));
+        List<ProductSearchPayload.Item> ranked = index.rank("hoodie", semantic, 4);
+
+        assertEquals(List.of("p-hoodie", "p-tee"), ranked.stream().map(i -> i.id).toList());
+        assertEquals(1.0, registry.get("chat.product.search").tag("source", "hybrid").counter().count());
+    }
+
+    @Test
+    void partialMatchesDoNotAddProductsSemanticFilteredOut() {
+        // "áo" xuất hiện trong cả bốn tên; chỉ hoodie khớp đủ "áo hoodie"
+        assertEquals(List.of("p-hoodie"), index.search("áo hoodie", 5).stream().map(i -> i.id).toList());
+
+        // Áo thun / áo khoác không được chen vào giữa kết quả semantic
+        List<ProductSearchPayload.Item> semantic = List.of(card("x-1"), card("x-2"));
+        assertEquals(List.of("x-1", "p-hoodie", "x-2"),
+                index.rank("áo hoodie", semantic, 4).stream().map(i -> i.id).toList());
+
+        // áo thun khớp 3/4 âm tiết: chỉ đẩy hạng khi semantic đã trả nó, không tự chen vào
+        assertEquals(List.of("x-1"),
+                index.rank("áo thun trắng nam", List.of(card("x-1")), 4).stream().map(i -> i.id).toList());
+        assertEquals(List.of("p-tee", "x-1"),
+                index.rank("áo thun trắng nam", List.of(card("x-1"), card("p-tee")), 4).stream().map(i -> i.id).toList());
+    }
+
+    @Test
+    void keepsSemanticOrderWhenNothingMatchesLexically() {
+        List<ProductSearchPayload.Item> semantic = List.of(card("x-1"), card("x-2"), card("x-3"));
+
+        assertEquals(List.of("x-1", "x-2"),
+                index.rank("đồ bơi", semantic, 2).stream().map(i -> i.id).toList());
+    }
+
+    private static ProductSearchPayload.Item card(String id) {
+        ProductSearchPayload.Item item = new ProductSearchPayload.Item();
+        item.id = id;
+        item.name = id;
+        return item;
+    }
+}
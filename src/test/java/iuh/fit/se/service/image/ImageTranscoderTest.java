@@ -0,0 +1,55 @@
+package iuh.fit.se.service.image;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Ảnh điện thoại 12 MP được decode có subsampling (không dựng full bitmap) rồi thu về cạnh dài {@code maxEdge}.
+ */
+class ImageTranscoderTest {
+
+    @Test
+    void decodesPhoneSizedPhotoWithSubsampling() throws IOException {
+        ImageTranscoder transcoder = new ImageTranscoder(1024, 0.85f, 50_000_000L);
+
+        ImageTranscoder.Result result = transcoder.transcode(jpeg(4032, 3024));
+
+        assertEquals(4032, result.sourceWidth());
+        assertEquals(1344, result.decodedWidth(), "4032 px / step 3");
+        assertEquals(1008, result.decodedHeight());
+        assertEquals(1024, result.width());
+        assertEquals(768, result.height());
+        assertTrue(result.resized());
+    }
+
+    @Test
+    void decodedLongEdgeStaysWithinOneToTwoTimesTarget() {
+        for (int longEdge : new int[]{1024, 1500, 2047, 2048, 3000, 4032, 8000}) {
+            int step = ImageTranscoder.subsampling(longEdge, 1024);
+            int decoded = (longEdge + step - 1) / step;
+            assertTrue(decoded >= 1024 && decoded < 2048, longEdge + " → step " + step + " → " + decoded);
+        }
+        assertEquals(1, ImageTranscoder.subsampling(800, 1024));
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(new Color(0x3366CC));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.ORANGE);
+        g.fillOval(width / 4, height / 4, width / 2, height / 2);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, "jpg", out);
+        return out.toByteArray();
+    }
+}
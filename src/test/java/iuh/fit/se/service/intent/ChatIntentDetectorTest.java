@@ -0,0 +1,68 @@
+package iuh.fit.se.service.intent;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Âm tiết ngắn chỉ khớp khi đúng dấu (áo/ảo, ghế/ghé, tìm/tim/tím, giống/giọng);
+ * cụm nhiều âm tiết vẫn khớp khi người dùng gõ không dấu.
+ */
+class ChatIntentDetectorTest {
+
+    private final ChatIntentDetector detector = new ChatIntentDetector();
+
+    @Test
+    void shortAccentedKeywordsDoNotMatchOtherTones() {
+        assertFalse(isProduct("ảo thật đấy"));
+        assertFalse(isProduct("mưa ào ào luôn"));
+        assertFalse(isProduct("mai mình ghé qua nhé"));
+        assertFalse(isProduct("dạo này hay bị đau tim"));
+        assertFalse(isProduct("màu tím đẹp ghê"));
+        assertFalse(detector.isImageSearch("giọng hát hay quá"));
+    }
+
+    @Test
+    void productKeywordsStillMatch() {
+        assertTrue(isProduct("tìm áo hoodie đen"));
+        assertTrue(isProduct("có ghế gỗ không"));
+        assertTrue(isProduct("ao thun trang size M"));
+        assertTrue(isProduct("tim kiem giay the thao"));
+        assertTrue(detector.isImageSearch("tìm cái giống hình này"));
+        assertTrue(detector.isImageSearch("san pham tuong tu"));
+    }
+
+    @Test
+    void decomposedInputMatchesAccentedKeywords() {
+        // NFD: dấu là ký tự tổ hợp đứng sau nguyên âm (copy từ macOS/iOS)
+        assertTrue(isProduct("ti\u0300m a\u0301o hoodie"));
+        assertTrue(isProduct("co\u0301 gh\u00ea\u0301 go\u0302\u0303 kh\u00f4ng"));
+        assertTrue(detector.isImageSearch("gio\u0302\u0301ng hi\u0300nh na\u0300y"));
+        assertFalse(isProduct("ma\u0300u ti\u0301m \u0111e\u0323p"));
+    }
+
+    @Test
+    void greetingsAreSmallTalkUnlessTheyAskForSomething() {
+        assertTrue(isSmallTalk("Xin chào, hôm nay bạn thế nào?"));
+        assertTrue(isSmallTalk("cảm ơn nhé"));
+        assertTrue(isSmallTalk("hello"));
+        assertFalse(isSmallTalk("chào shop, tìm áo hoodie đen"));
+        assertFalse(isSmallTalk("cảm ơn, cho hỏi chính sách đổi trả"));
+        assertFalse(isSmallTalk("chiều nay trời mưa không"));
+    }
+
+    @Test
+    void policyQuestionIsNotProductSearch() {
+        int mask = detector.detect("áo mua rồi có được đổi trả không");
+        assertTrue(detector.isPolicy(mask));
+        assertFalse(detector.isProductSearch(mask));
+    }
+
+    private boolean isSmallTalk(String message) {
+        return detector.isSmallTalk(detector.detect(message));
+    }
+
+    private boolean isProduct(String message) {
+        return detector.isProductSearch(detector.detect(message));
+    }
+}
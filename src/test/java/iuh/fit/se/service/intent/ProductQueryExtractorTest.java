@@ -0,0 +1,44 @@
+package iuh.fit.se.service.intent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chỉ lệnh tra cứu rõ ràng mới được độ tin cậy cao (bỏ qua LLM); câu hỏi cách làm, tìm hiểu,
+ * hỏi đơn hàng dù mở đầu bằng "tìm"/"xem"/"mua" vẫn phải để LLM xử lý.
+ */
+class ProductQueryExtractorTest {
+
+    private final ProductQueryExtractor extractor = new ProductQueryExtractor();
+
+    @Test
+    void explicitLookupIsHighConfidence() {
+        ProductQueryExtractor.Extraction e = extractor.extract("Shop ơi tìm giúp mình 3 cái áo hoodie đen nhé").orElseThrow();
+
+        assertEquals("áo hoodie đen", e.query());
+        assertEquals(3, e.limit());
+        assertEquals(ProductQueryExtractor.HIGH, e.confidence());
+        assertEquals(ProductQueryExtractor.HIGH, extractor.extract("xem giày nike trắng").orElseThrow().confidence());
+        assertEquals(ProductQueryExtractor.HIGH, extractor.extract("mua áo khoác gió").orElseThrow().confidence());
+        assertEquals(ProductQueryExtractor.HIGH, extractor.extract("tìm áo phong cách hàn quốc").orElseThrow().confidence());
+    }
+
+    @Test
+    void bareCommandsThatAreNotLookupsStayBelowHigh() {
+        assertNotHigh("tìm hiểu về thương hiệu này");
+        assertNotHigh("mua hàng như thế nào");
+        assertNotHigh("mua hàng thế nào vậy");
+        assertNotHigh("xem đơn hàng của tôi");
+        assertNotHigh("xem lại giỏ");
+        assertNotHigh("tìm cách đổi size");
+        assertNotHigh("mua làm sao shop");
+    }
+
+    private void assertNotHigh(String message) {
+        Optional<ProductQueryExtractor.Extraction> e = extractor.extract(message);
+        e.ifPresent(x -> assertTrue(x.confidence() < ProductQueryExtractor.HIGH, message + " → " + x));
+    }
+}
@@ -0,0 +1,188 @@
+package iuh.fit.se.service.tool;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationHandler;
+import io.micrometer.observation.ObservationRegistry;
+import iuh.fit.se.service.metrics.ChatMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.ToolContext;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.tool.DefaultToolCallingManager;
+import org.springframework.ai.model.tool.ToolCallingChatOptions;
+import org.springframework.ai.model.tool.ToolExecutionResult;
+import org.springframework.ai.tool.ToolCallback;
+import org.springframework.ai.tool.definition.ToolDefinition;
+import org.springframework.ai.tool.execution.DefaultToolExecutionExceptionProcessor;
+import org.springframework.ai.tool.observation.ToolCallingObservationContext;
+import org.springframework.ai.tool.resolution.StaticToolCallbackResolver;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hai tool chậm (backend khác nhau) trong cùng một tin nhắn assistant phải chạy chồng lên nhau,
+ * kết quả giữ đúng thứ tự tool call và tool quá timeout chỉ làm hỏng kết quả của chính nó.
+ */
+class ParallelToolCallingManagerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, ChatMetrics.Route> routes = new ConcurrentHashMap<>();
+    private final List<String> observed = new CopyOnWriteArrayList<>();
+    private final ObservationRegistry observations = ObservationRegistry.create();
+    private ParallelToolCallingManager manager;
+
+    @AfterEach
+    void close() {
+        if (manager != null) manager.close();
+    }
+
+    @Test
+    void independentToolCallsOverlapAndKeepOrder() {
+        manager = manager(Map.of());
+        Prompt prompt = prompt(
+                sleepingTool("policy_search", Duration.ofMillis(400)),
+                sleepingTool("searchProducts", Duration.ofMillis(400)));
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt, toolCalls("policy_search", "searchProducts"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 700, "tools should overlap, took " + elapsedMs + " ms");
+        List<ToolResponseMessage.ToolResponse> responses = responses(result);
+        assertEquals(List.of("call-0", "call-1"), responses.stream().map(ToolResponseMessage.ToolResponse::id).toList());
+        assertEquals("policy_search:ok", responses.get(0).responseData());
+        assertEquals("searchProducts:ok", responses.get(1).responseData());
+        assertFalse(result.returnDirect());
+        assertEquals(ChatMetrics.Route.POLICY, routes.get("policy_search"), "route should follow the tool call");
+        assertEquals(2.0, registry.get("chat.tool.batch").summary().totalAmount());
+    }
+
+    @Test
+    void slowToolTimesOutWithoutFailingTheOthers() {
+        manager = manager(Map.of("searchProducts", Duration.ofMillis(150)));
+        Prompt prompt = prompt(
+                sleepingTool("policy_search", Duration.ofMillis(50)),
+                sleepingTool("searchProducts", Duration.ofSeconds(5)));
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt, toolCalls("policy_search", "searchProducts"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 1_000, "timed out tool should be abandoned, took " + elapsedMs + " ms");
+        List<ToolResponseMessage.ToolResponse> responses = responses(result);
+        assertEquals("policy_search:ok", responses.get(0).responseData());
+        assertTrue(responses.get(1).responseData().contains("timed out"), responses.get(1).responseData());
+        assertEquals(1.0, registry.get("chat.tool.timeout").tag("tool", "searchProducts").counter().count());
+    }
+
+    @Test
+    void singleToolCallIsAlsoBoundByItsTimeout() {
+        manager = manager(Map.of("searchProducts", Duration.ofMillis(150)));
+        Prompt prompt = prompt(sleepingTool("searchProducts", Duration.ofSeconds(5)));
+
+        long start = System.nanoTime();
+        ToolExecutionResult result = manager.executeToolCalls(prompt, toolCalls("searchProducts"));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(elapsedMs < 1_000, "single tool call should time out too, took " + elapsedMs + " ms");
+        assertTrue(responses(result).get(0).responseData().contains("timed out"));
+        assertEquals(1.0, registry.get("chat.tool.timeout").tag("tool", "searchProducts").counter().count());
+    }
+
+    @Test
+    void eachToolCallIsObservedLikeTheDefaultManager() {
+        observations.observationConfig().observationHandler(new ObservationHandler<ToolCallingObservationContext>() {
+            @Override
+            public void onStop(ToolCallingObservationContext context) {
+                observed.add(context.getToolDefinition().name() + "=" + context.getToolCallResult());
+            }
+
+            @Override
+            public boolean supportsContext(Observation.Context context) {
+                return context instanceof ToolCallingObservationContext;
+            }
+        });
+        manager = manager(Map.of());
+
+        manager.executeToolCalls(prompt(
+                        sleepingTool("policy_search", Duration.ofMillis(10)),
+                        sleepingTool("searchProducts", Duration.ofMillis(10))),
+                toolCalls("policy_search", "searchProducts"));
+
+        assertEquals(List.of("policy_search=policy_search:ok", "searchProducts=searchProducts:ok"),
+                observed.stream().sorted().toList());
+    }
+
+    private ParallelToolCallingManager manager(Map<String, Duration> timeouts) {
+        var resolver = new StaticToolCallbackResolver(List.of());
+        var processor = new DefaultToolExecutionExceptionProcessor(false);
+        var sequential = DefaultToolCallingManager.builder()
+                .toolCallbackResolver(resolver)
+                .toolExecutionExceptionProcessor(processor)
+                .build();
+        return new ParallelToolCallingManager(sequential, resolver, processor, new ChatMetrics(registry), registry,
+                observations, true, 8, Duration.ofSeconds(2), timeouts);
+    }
+
+    private static Prompt prompt(ToolCallback... tools) {
+        ToolCallingChatOptions options = ToolCallingChatOptions.builder()
+                .toolCallbacks(tools)
+                .toolContext(Map.of(ChatMetrics.TOOL_CONTEXT_KEY, ChatMetrics.Route.POLICY))
+                .build();
+        return new Prompt(List.<Message>of(new UserMessage("đổi trả và áo thun")), options);
+    }
+
+    private static ChatResponse toolCalls(String... names) {
+        List<AssistantMessage.ToolCall> calls = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            calls.add(new AssistantMessage.ToolCall("call-" + i, "function", names[i], "{}"));
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("", Map.of(), calls))));
+    }
+
+    private static List<ToolResponseMessage.ToolResponse> responses(ToolExecutionResult result) {
+        List<Message> history = result.conversationHistory();
+        return ((ToolResponseMessage) history.get(history.size() - 1)).getResponses();
+    }
+
+    private ToolCallback sleepingTool(String name, Duration latency) {
+        ToolDefinition definition = ToolDefinition.builder().name(name).description(name).inputSchema("{}").build();
+        return new ToolCallback() {
+            @Override
+            public ToolDefinition getToolDefinition() {
+                return definition;
+            }
+
+            @Override
+            public String call(String toolInput) {
+                return call(toolInput, null);
+            }
+
+            @Override
+            public String call(String toolInput, ToolContext toolContext) {
+                routes.put(name, ChatMetrics.currentRoute());
+                try {
+                    Thread.sleep(latency.toMillis());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return name + ":interrupted";
+                }
+                return name + ":ok";
+            }
+        };
+    }
+}
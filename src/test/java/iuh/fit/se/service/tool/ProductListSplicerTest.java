@@ -0,0 +1,59 @@
+package iuh.fit.se.service.tool;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Lượt chat có cả tool chính sách và tool sản phẩm không được trả thẳng: câu trả lời chính sách của model
+ * phải còn nguyên, chỉ khối product_list được lấy từ kết quả tool.
+ */
+class ProductListSplicerTest {
+
+    private static final String TOOL_RESULT =
+            "{\"type\":\"product_list\",\"message\":\"Tìm thấy 1 sản phẩm\",\"items\":[{\"id\":\"p1\",\"name\":\"Áo hoodie\"}]}";
+
+    @Test
+    void mixedPolicyAndProductTurnKeepsThePolicyAnswer() {
+        String policy = "Áo hoodie được đổi trả trong 7 ngày nếu còn tem mác. Dưới đây là các mẫu mới:";
+
+        String reply = ProductListSplicer.splice(policy, TOOL_RESULT);
+
+        assertEquals(policy + "\n\n" + TOOL_RESULT, reply);
+    }
+
+    @Test
+    void replacesTheProductListBlockTheModelCopied() {
+        String model = "Được đổi trong 7 ngày.\n{\"type\":\"product_list\",\"items\":[{\"id\":\"p1\",\"name\":\"Ao hodie\"}]}\nCần gì thêm cứ hỏi nhé!";
+
+        String reply = ProductListSplicer.splice(model, TOOL_RESULT);
+
+        assertEquals("Được đổi trong 7 ngày.\n" + TOOL_RESULT + "\nCần gì thêm cứ hỏi nhé!", reply);
+    }
+
+    @Test
+    void skipsOtherJsonBeforeTheProductListBlock() {
+        String model = "Ví dụ {\"size\":\"M\"} nhé.\n{\"type\":\"product_list\",\"items\":[]}";
+
+        String reply = ProductListSplicer.splice(model, TOOL_RESULT);
+
+        assertEquals("Ví dụ {\"size\":\"M\"} nhé.\n" + TOOL_RESULT, reply);
+    }
+
+    @Test
+    void emptyOrProductOnlyReplyReturnsToolResult() {
+        assertEquals(TOOL_RESULT, ProductListSplicer.splice(null, TOOL_RESULT));
+        assertEquals(TOOL_RESULT, ProductListSplicer.splice("  \n", TOOL_RESULT));
+        assertEquals(TOOL_RESULT, ProductListSplicer.splice("{\"type\":\"product_list\",\"items\":[]}", TOOL_RESULT));
+        // product_list bị cắt giữa chừng
+        assertEquals(TOOL_RESULT, ProductListSplicer.splice("{\"type\":\"product_list\",\"items\":[{\"id\":", TOOL_RESULT));
+    }
+
+    @Test
+    void truncatedProductListAfterTextKeepsTheText() {
+        String reply = ProductListSplicer.splice("Chính sách: đổi trong 7 ngày.\n{\"type\":\"product_list\",\"items\":[{\"i",
+                TOOL_RESULT);
+
+        assertEquals("Chính sách: đổi trong 7 ngày.\n\n" + TOOL_RESULT, reply);
+    }
+}
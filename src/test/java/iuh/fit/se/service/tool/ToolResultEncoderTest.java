@@ -0,0 +1,58 @@
+package iuh.fit.se.service.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iuh.fit.se.util.TokenEstimator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Số token "tiết kiệm" được tính từ độ dài bản pretty ước lượng (không serialize lần hai) - phải sát với
+ * bản pretty thật của Jackson; meter chỉ đăng ký một lần cho mỗi tool.
+ */
+class ToolResultEncoderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] SAMPLES = {
+            "{\"type\":\"product_list\",\"message\":\"Tìm thấy 2 sản phẩm cho: \\\"áo {hoodie}, đen\\\"\","
+                    + "\"items\":[{\"id\":\"p-1\",\"name\":\"Áo hoodie nỉ đen\",\"price\":350000.0,\"discount\":10.0,"
+                    + "\"url\":\"/products/p-1\",\"imageUrl\":\"https://cdn.example.com/p-1.jpg\"},"
+                    + "{\"id\":\"p-2\",\"name\":\"Áo thun cotton\",\"price\":150000.0,\"discount\":0.0,"
+                    + "\"url\":\"/products/p-2\",\"imageUrl\":null}]}",
+            "{\"passages\":[{\"code\":\"REFUND\",\"title\":\"Hoàn tiền\",\"version\":3,\"section\":\"Điều 2\","
+                    + "\"text\":\"Hoàn tiền trong 7 ngày, nếu hàng lỗi: sai mẫu.\"}]}"
+    };
+
+    @Test
+    void prettyEstimateIsCloseToJacksonPrettyPrinter() throws Exception {
+        for (String sample : SAMPLES) {
+            JsonNode tree = MAPPER.readTree(sample);
+            // Độ dài không tính xuống dòng (CRLF trên Windows) để so sánh không phụ thuộc hệ điều hành
+            String pretty = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(tree);
+            long lines = pretty.lines().count();
+            long actual = pretty.lines().mapToLong(String::length).sum() + lines - 1;
+
+            long estimate = ToolResultEncoder.estimatePrettyChars(MAPPER.writeValueAsString(tree));
+            assertEquals(actual, estimate, actual * 0.15, sample);
+        }
+    }
+
+    @Test
+    void recordsSavingsOncePerToolMeter() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ToolResultEncoder encoder = new ToolResultEncoder("compact", registry);
+        Object value = MAPPER.readTree(SAMPLES[0]);
+
+        String encoded = encoder.encode("searchProducts", value, false);
+        encoder.encode("searchProducts", value, false);
+
+        int pretty = TokenEstimator.forChars(ToolResultEncoder.estimatePrettyChars(encoded));
+        int saved = pretty - TokenEstimator.estimate(encoded);
+        assertTrue(saved > 0);
+        assertEquals(2.0 * saved, registry.get("chat.tool.result.tokens.saved").tag("tool", "searchProducts").counter().count());
+        assertEquals(2, registry.get("chat.tool.result.tokens").tag("tool", "searchProducts").summary().count());
+        assertEquals(1, registry.find("chat.tool.result.tokens.saved").counters().size());
+    }
+}
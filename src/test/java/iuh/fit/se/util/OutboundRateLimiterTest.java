@@ -0,0 +1,62 @@
+package iuh.fit.se.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 429 trong lúc có người đang ngủ tới slot đã giữ: người đó không được bắn trong cửa sổ Retry-After.
+ */
+class OutboundRateLimiterTest {
+
+    private static final OutboundRateLimiter.Settings SETTINGS = new OutboundRateLimiter.Settings(
+            10, 1, 10, 0.1, 0.5, Duration.ofSeconds(5), 10, Duration.ofMillis(100), 0, 0);
+
+    @Test
+    void throttleDelaysCallersAlreadyWaitingForASlot() throws Exception {
+        OutboundRateLimiter limiter = new OutboundRateLimiter("test", SETTINGS);
+        limiter.acquire(); // slot kế tiếp: +100ms
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            Future<Long> waiter = threads.submit(() -> {
+                limiter.acquire();
+                return System.nanoTime();
+            });
+            waitUntilQueued(limiter);
+
+            limiter.onThrottled(Duration.ofMillis(500));
+            long firedAfter = TimeUnit.NANOSECONDS.toMillis(waiter.get(5, TimeUnit.SECONDS) - start);
+
+            assertTrue(firedAfter >= 500, "waiter fired " + firedAfter + "ms after start, inside the Retry-After window");
+        }
+    }
+
+    @Test
+    void newCallersStartAfterThePause() {
+        OutboundRateLimiter limiter = new OutboundRateLimiter("test", SETTINGS);
+        long start = System.nanoTime();
+        limiter.onThrottled(Duration.ofMillis(300));
+
+        limiter.acquire();
+        limiter.acquire();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Hết pause 300ms, rồi một khoảng 1/rate (rate đã giảm còn 5/s → 200ms) cho lời gọi thứ hai
+        assertTrue(elapsed >= 500, "second call after " + elapsed + "ms");
+    }
+
+    private static void waitUntilQueued(OutboundRateLimiter limiter) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (limiter.queued() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, limiter.queued());
+    }
+}
@@ -0,0 +1,60 @@
+package iuh.fit.se.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Loader ném Error (không phải RuntimeException) vẫn phải đánh thức các lời gọi đang chờ cùng key
+ * và không để lại entry hỏng trong cache.
+ */
+class SingleFlightCacheTest {
+
+    @Test
+    void loaderErrorReleasesCoalescedWaiters() throws Exception {
+        SingleFlightCache<String, String> cache = SingleFlightCache.bySize("test", 100, Duration.ofMinutes(1));
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = threads.submit(() -> cache.get("k", () -> {
+                loading.countDown();
+                await(release);
+                throw new StackOverflowError("boom");
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            Future<String> waiter = threads.submit(() -> cache.get("k", () -> "unused"));
+
+            Thread.sleep(100);
+            release.countDown();
+
+            assertInstanceOf(StackOverflowError.class,
+                    assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS)).getCause());
+            assertInstanceOf(StackOverflowError.class,
+                    assertThrows(Exception.class, () -> waiter.get(5, TimeUnit.SECONDS)).getCause());
+        }
+
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("ok", cache.get("k", () -> {
+            loads.incrementAndGet();
+            return "ok";
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
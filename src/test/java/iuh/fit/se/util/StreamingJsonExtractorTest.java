@@ -0,0 +1,46 @@
+package iuh.fit.se.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Object đầu tiên không phải thứ listener cần (VD: JSON ví dụ trong câu trả lời) thì product_list phía sau
+ * vẫn phải được tách ra, kể cả khi bị chia qua nhiều chunk.
+ */
+class StreamingJsonExtractorTest {
+
+    @Test
+    void keepsScanningAfterAnObjectTheListenerSkips() {
+        List<String> events = new ArrayList<>();
+        StreamingJsonExtractor extractor = new StreamingJsonExtractor(new StreamingJsonExtractor.Listener() {
+            @Override
+            public void onText(String text) {
+                events.add("text:" + text);
+            }
+
+            @Override
+            public boolean onObject(String json) {
+                boolean productList = json.contains("product_list");
+                events.add((productList ? "list:" : "skip:") + json);
+                return productList;
+            }
+        });
+
+        extractor.feed("Size {\"size\":\"M\"} hợp, ");
+        extractor.feed("mẫu đây: {\"type\":\"product_");
+        extractor.feed("list\",\"items\":[]} {\"x\":1}");
+        extractor.finish();
+
+        assertEquals(List.of(
+                "text:Size ",
+                "skip:{\"size\":\"M\"}",
+                "text: hợp, ",
+                "text:mẫu đây: ",
+                "list:{\"type\":\"product_list\",\"items\":[]}",
+                "text: {\"x\":1}"), events);
+    }
+}